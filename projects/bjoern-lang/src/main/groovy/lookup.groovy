@@ -1,18 +1,32 @@
 package bjoernsteps;
 
+// full-text query on repr, comment and esil, e.g., 'repr:call*'. Not
+// available if the database was imported without full-text index.
 queryNodeIndex = { luceneQuery ->
 
-	queryStr = 'SELECT * FROM V WHERE [addr,childNum,code,comment,esil,key,nodeType,repr] LUCENE "' + luceneQuery + '"';
+	queryStr = 'SELECT * FROM V WHERE [comment,esil,repr] LUCENE "' + luceneQuery + '"';
 	query = new com.orientechnologies.orient.core.sql.OCommandSQL(queryStr);
 	g.getRawGraph().command(query).execute().toList()._().transform{ g.v(it.getIdentity()) }
 }
 
+// nodes matching a condition on key, addr or nodeType, which are indexed
+queryNodes = { condition, Object... params ->
+
+	queryStr = 'SELECT * FROM V WHERE ' + condition;
+	query = new com.orientechnologies.orient.core.sql.OCommandSQL(queryStr);
+	g.getRawGraph().command(query).execute(params).toList()._().transform{ g.v(it.getIdentity()) }
+}
+
+getNodesOfType = { nodeType ->
+ queryNodes('nodeType = ?', nodeType)
+}
+
 getCallsTo = { callee ->
- query = String.format('nodeType:Instr AND repr:call*')
- queryNodeIndex(query).filter{ it.repr.contains(callee) }
+ queryNodes('nodeType = ? AND repr LIKE ?', 'Instr', 'call%')
+ .filter{ it.repr.contains(callee) }
 }
 
 getFunctions = { name ->
- queryNodeIndex('nodeType:Func')
+ getNodesOfType('Func')
  .filter{ it.repr.contains(name) }
 }
@@ -7,21 +7,24 @@ import bjoern.structures.BjoernNodeProperties;
 public class BjoernConstants
 {
 
+	/**
+	 * The properties covered by the full-text index. Key, address and node
+	 * type have indices of their own and are queried with `=`.
+	 */
+
 	private static final String[] INDEX_KEYS = {
-			BjoernNodeProperties.ADDR, BjoernNodeProperties.CHILD_NUM,
-			BjoernNodeProperties.CODE, BjoernNodeProperties.COMMENT,
-			BjoernNodeProperties.ESIL, BjoernNodeProperties.KEY,
-			BjoernNodeProperties.TYPE, BjoernNodeProperties.REPR
+			BjoernNodeProperties.COMMENT, BjoernNodeProperties.ESIL,
+			BjoernNodeProperties.REPR
 	};
 
-	public static final String INDEX_NAME = "[" +
-			BjoernNodeProperties.ADDR + "," + BjoernNodeProperties.CHILD_NUM + ","
-			+ BjoernNodeProperties.CODE + "," + BjoernNodeProperties.COMMENT + ","
-			+ BjoernNodeProperties.ESIL +  "," + BjoernNodeProperties.KEY + ","
-			+ BjoernNodeProperties.TYPE + "," + BjoernNodeProperties.REPR +"]";
+	public static final String INDEX_NAME = "[" + String.join(",", INDEX_KEYS)
+			+ "]";
 
 
 	public static final OCommandSQL LUCENE_QUERY = new OCommandSQL(
 			"SELECT * FROM V WHERE " + INDEX_NAME + " LUCENE ?");
 
+	public static final OCommandSQL NODE_TYPE_QUERY = new OCommandSQL(
+			"SELECT * FROM V WHERE " + BjoernNodeProperties.TYPE + " = ?");
+
 }
@@ -16,15 +16,15 @@ public class LookupOperations
 	public static Iterable<Vertex> getAllFunctions(OrientGraphNoTx graph)
 	{
 		Iterable<Vertex> functions = graph.command(
-				BjoernConstants.LUCENE_QUERY).execute("nodeType:" + NodeTypes.FUNCTION);
+				BjoernConstants.NODE_TYPE_QUERY).execute(NodeTypes.FUNCTION);
 		return functions;
 	}
 
 	public static Iterable<Function> getFunctions(OrientGraphNoTx graph)
 	{
 		boolean parallel = true;
-		Iterable<Vertex> functions = graph.command(BjoernConstants.LUCENE_QUERY)
-				.execute("nodeType:" + NodeTypes.FUNCTION);
+		Iterable<Vertex> functions = graph.command(BjoernConstants.NODE_TYPE_QUERY)
+				.execute(NodeTypes.FUNCTION);
 		return StreamSupport.stream(functions.spliterator(), parallel).map(Function::new)
 				.collect(Collectors.toList());
 	}
@@ -2,7 +2,10 @@ package bjoern.pluginlib.plugintypes;
 
 import java.io.IOException;
 
+import org.json.JSONObject;
+
 import bjoern.pluginlib.BjoernProject;
+import bjoern.r2interface.AnalysisProfile;
 import bjoern.r2interface.Radare;
 import octopus.lib.connectors.OrientDBConnector;
 
@@ -13,6 +16,21 @@ public abstract class RadareProjectPlugin extends BjoernProjectPlugin
 	private BjoernProject project;
 	private OrientDBConnector orientConnector = new OrientDBConnector();
 
+	/**
+	 * The setting "analysis" selects the analysis profile of radare, see
+	 * `AnalysisProfile`. With "lazy", plugins must call
+	 * `Radare.analyzeFunctionAt` before inspecting a function.
+	 */
+
+	@Override
+	public void configure(JSONObject settings)
+	{
+		super.configure(settings);
+		if (settings.has("analysis"))
+			getRadare().setAnalysisProfile(
+					AnalysisProfile.fromName(settings.getString("analysis")));
+	}
+
 	@Override
 	public void beforeExecution() throws Exception
 	{
@@ -16,9 +16,17 @@ public class Instruction extends OctopusNode implements Comparable<Instruction>
 		super(vertex, NodeTypes.INSTRUCTION);
 	}
 
+	/**
+	 * Returns the address, which is a long, or a decimal string in
+	 * databases imported before properties were typed.
+	 */
+
 	public long getAddress()
 	{
-		return Long.parseLong(getProperty(BjoernNodeProperties.ADDR).toString());
+		Object address = getProperty(BjoernNodeProperties.ADDR);
+		if (address instanceof Number)
+			return ((Number) address).longValue();
+		return Long.parseLong(address.toString());
 	}
 
 	public String getEsilCode()
@@ -29,16 +37,7 @@ public class Instruction extends OctopusNode implements Comparable<Instruction>
 	@Override
 	public int compareTo(Instruction instruction)
 	{
-		if (this.getAddress() < instruction.getAddress())
-		{
-			return -1;
-		} else if (this.getAddress() > instruction.getAddress())
-		{
-			return 1;
-		} else
-		{
-			return 0;
-		}
+		return Long.compare(this.getAddress(), instruction.getAddress());
 	}
 
 	public String getCode()
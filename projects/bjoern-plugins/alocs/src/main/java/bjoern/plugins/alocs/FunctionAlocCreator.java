@@ -1,6 +1,7 @@
 package bjoern.plugins.alocs;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,30 +39,44 @@ public class FunctionAlocCreator {
 	public void createAlocsForFunction(Vertex function) throws IOException
 	{
 		functionVertex = function;
+		// a no-op unless radare analyzes functions lazily
+		radare.analyzeFunctionAt(addressOf(function));
 		memAccessEvaluator.initializeForFunction(function);
 		createAlocsForAllInstructions();
 	}
 
+	private static Long addressOf(Vertex function)
+	{
+		Object addr = function.getProperty(BjoernNodeProperties.ADDR);
+		if (addr instanceof Number)
+			return ((Number) addr).longValue();
+		return Long.valueOf(addr.toString());
+	}
+
 	private void createAlocsForAllInstructions() throws IOException
 	{
 		List<Instruction> instructions = Traversals.functionToInstructions(functionVertex);
+
+		// Registers read and written are requested for all instructions
+		// at once, which saves a round-trip to radare per instruction.
+		List<Long> addresses = new ArrayList<Long>(instructions.size());
 		for(Instruction instr : instructions){
-			createAlocsForInstruction(instr);
+			addresses.add(instr.getAddress());
 		}
-	}
+		List<List<String>> registersRead = radare.getRegistersRead(addresses);
+		List<List<String>> registersWritten = radare.getRegistersWritten(addresses);
 
-	private void createAlocsForInstruction(Instruction instr) throws IOException
-	{
-		long address = instr.getAddress();
-		createAlocsForRegisters(instr, address);
-		createAlocsForMemoryAccesses(instr, address);
+		for(int i = 0; i < instructions.size(); i++){
+			Instruction instr = instructions.get(i);
+			createAlocsForRegisters(instr, registersRead.get(i), registersWritten.get(i));
+			createAlocsForMemoryAccesses(instr, instr.getAddress());
+		}
 	}
 
-	private void createAlocsForRegisters(Instruction instr, long address) throws IOException
+	private void createAlocsForRegisters(Instruction instr, List<String> registersRead,
+			List<String> registersWritten) throws IOException
 	{
-		List<String> registersRead = radare.getRegistersRead(Long.toUnsignedString(address));
 		createAlocsForRegisterList(instr, registersRead, EdgeTypes.READ);
-		List<String> registersWritten = radare.getRegistersWritten(Long.toUnsignedString(address));
 		createAlocsForRegisterList(instr, registersWritten, EdgeTypes.WRITE);
 	}
 
@@ -88,10 +103,10 @@ public class FunctionAlocCreator {
 
 	private Vertex createAloc(String alocName) throws IOException
 	{
-		String functionAddr = functionVertex.getProperty("addr");
+		Object functionAddr = functionVertex.getProperty(BjoernNodeProperties.ADDR);
 		String subType = subTypeFromAlocName(alocName);
 
-		Map<String, String> properties = new HashMap<String,String>();
+		Map<String, Object> properties = new HashMap<String, Object>();
 		properties.put(BjoernNodeProperties.ADDR, functionAddr);
 		properties.put(BjoernNodeProperties.TYPE, NodeTypes.ALOC);
 		properties.put(BjoernNodeProperties.SUBTYPE, subType);
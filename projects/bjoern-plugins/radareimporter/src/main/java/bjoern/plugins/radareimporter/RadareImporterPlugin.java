@@ -1,6 +1,9 @@
 package bjoern.plugins.radareimporter;
 
+import org.json.JSONObject;
+
 import bjoern.input.radare.RadareExporter;
+import bjoern.input.radare.inputModule.AnalysisCache;
 import bjoern.pluginlib.BjoernProject;
 import bjoern.pluginlib.plugintypes.BjoernProjectPlugin;
 import octopus.server.components.orientdbImporter.ImportCSVRunnable;
@@ -8,12 +11,70 @@ import octopus.server.components.orientdbImporter.ImportJob;
 
 public class RadareImporterPlugin extends BjoernProjectPlugin {
 
+	/**
+	 * If set, nodes and edges are written to CSV files in the project
+	 * directory, which are then imported. Otherwise, they are imported
+	 * directly. The CSV files are useful for debugging.
+	 */
+
+	private boolean writeCSVFiles = false;
+
+	/**
+	 * Number of threads that import nodes and edges, whether they are
+	 * written to CSV files or not.
+	 */
+
+	private int importWorkers = 1;
+
+	/**
+	 * Whether a full-text index is created, which analysis-only projects
+	 * can do without.
+	 */
+
+	private boolean fullTextIndex = true;
+
+	/**
+	 * Whether analysis results are taken from and stored in the analysis
+	 * cache in the home directory of the server's user. Off by default, as
+	 * the cache takes up to `AnalysisCache.DEFAULT_MAX_SIZE` on disk.
+	 */
+
+	private boolean useAnalysisCache = false;
+
+	@Override
+	public void configure(JSONObject settings)
+	{
+		super.configure(settings);
+		writeCSVFiles = settings.optBoolean("writeCSV", false);
+		importWorkers = settings.optInt("importWorkers", 1);
+		fullTextIndex = settings.optBoolean("fullTextIndex", true);
+		useAnalysisCache = settings.optBoolean("analysisCache", false);
+	}
+
 	@Override
 	public void execute() throws Exception
 	{
 		raiseIfDatabaseForProjectExists();
-		extractCSVFilesFromBinary();
-		importCSVFilesIntoDatabase();
+		if (writeCSVFiles)
+		{
+			extractCSVFilesFromBinary();
+			importCSVFilesIntoDatabase();
+		}
+		else
+		{
+			importBinaryIntoDatabase();
+		}
+	}
+
+	private void importBinaryIntoDatabase() throws Exception
+	{
+		BjoernProject bjoernProject = (BjoernProject) getBjoernProjectConnector().getWrapper();
+
+		String pathToBinary = bjoernProject.getPathToBinary();
+		String pathToProjectDir = bjoernProject.getPathToProjectDir();
+		String dbName = bjoernProject.getDatabaseName();
+		RadareExporter radareExporter = createExporter();
+		radareExporter.exportToDatabase(pathToBinary, pathToProjectDir, null, dbName);
 	}
 
 	private void extractCSVFilesFromBinary()
@@ -22,10 +83,22 @@ public class RadareImporterPlugin extends BjoernProjectPlugin {
 
 		String pathToBinary = bjoernProject.getPathToBinary();
 		String pathToProjectDir = bjoernProject.getPathToProjectDir();
-		RadareExporter radareExporter = new RadareExporter();
+		RadareExporter radareExporter = createExporter();
 		radareExporter.tryToExport(pathToBinary, pathToProjectDir, null);
 	}
 
+	private RadareExporter createExporter()
+	{
+		RadareExporter radareExporter = new RadareExporter();
+		radareExporter.setFullTextIndex(fullTextIndex);
+		radareExporter.setImportWorkers(importWorkers);
+		if (useAnalysisCache)
+			radareExporter.setAnalysisCache(new AnalysisCache(
+					AnalysisCache.DEFAULT_DIRECTORY,
+					AnalysisCache.DEFAULT_MAX_SIZE));
+		return radareExporter;
+	}
+
 	private void importCSVFilesIntoDatabase()
 	{
 		ImportJob importJob = createImportJobForProject();
@@ -39,7 +112,8 @@ public class RadareImporterPlugin extends BjoernProjectPlugin {
 		String dbName = bjoernProject.getDatabaseName();
 		String nodeFilename = bjoernProject.getNodeFilename();
 		String edgeFilename = bjoernProject.getEdgeFilename();
-		return new ImportJob(nodeFilename, edgeFilename, dbName);
+		return new ImportJob(nodeFilename, edgeFilename, dbName, importWorkers,
+				fullTextIndex);
 	}
 
 }
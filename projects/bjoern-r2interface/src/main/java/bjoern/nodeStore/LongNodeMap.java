@@ -0,0 +1,124 @@
+package bjoern.nodeStore;
+
+import java.util.Arrays;
+
+/**
+ * A map from addresses to nodes, implemented as open-addressing hash table
+ * with linear probing on parallel arrays. Unlike a `HashMap<Long, Node>`,
+ * it neither boxes addresses nor allocates entries, which makes lookups
+ * allocation-free and takes a fraction of the memory.
+ *
+ * Null values are not supported: a null value marks an empty slot.
+ */
+
+public class LongNodeMap
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private long[] keys;
+	private Node[] values;
+	private int size;
+	private int mask;
+	private int maxSize;
+
+	public LongNodeMap()
+	{
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the node associated with `address` or null if there is none.
+	 */
+
+	public Node get(long address)
+	{
+		int slot = hash(address) & mask;
+		Node value;
+		while ((value = values[slot]) != null)
+		{
+			if (keys[slot] == address)
+				return value;
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Associates `node` with `address` and returns the node previously
+	 * associated with it, or null.
+	 */
+
+	public Node put(long address, Node node)
+	{
+		if (node == null)
+			throw new IllegalArgumentException("Null nodes are not supported");
+
+		int slot = hash(address) & mask;
+		Node value;
+		while ((value = values[slot]) != null)
+		{
+			if (keys[slot] == address)
+			{
+				values[slot] = node;
+				return value;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = address;
+		values[slot] = node;
+		if (++size > maxSize)
+			grow();
+		return null;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		Node[] oldValues = values;
+		allocate(2 * oldValues.length);
+
+		for (int i = 0; i < oldValues.length; i++)
+		{
+			if (oldValues[i] == null)
+				continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (values[slot] != null)
+				slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		values = new Node[capacity];
+		mask = capacity - 1;
+		// keep the table at most three quarters full
+		maxSize = capacity / 4 * 3;
+	}
+
+	/**
+	 * Spreads the bits of an address, since addresses are often aligned
+	 * and their low bits would otherwise select few slots.
+	 */
+
+	private static int hash(long address)
+	{
+		long h = address * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
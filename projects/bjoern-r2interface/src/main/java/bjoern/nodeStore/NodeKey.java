@@ -27,6 +27,11 @@ public class NodeKey {
 		this.type = type;
 	}
 
+	public String getType()
+	{
+		return type;
+	}
+
 	public void setAddress(Long address)
 	{
 		this.address = address;
@@ -44,4 +49,14 @@ public class NodeKey {
 		return this.address;
 	}
 
+	/**
+	 * Returns the counter that distinguishes alternatives of a node, or
+	 * null for the first node.
+	 */
+
+	public Integer getCounter()
+	{
+		return counter;
+	}
+
 }
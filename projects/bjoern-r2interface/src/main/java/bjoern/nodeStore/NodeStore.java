@@ -1,21 +1,35 @@
 package bjoern.nodeStore;
 
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 
 /**
  * Keeps track of nodes for different addresses, ensuring loosely that each node
  * is associated with exactly one address.
+ *
+ * Each export uses its own node store (see `ExportContext`), so that
+ * several binaries can be exported concurrently.
+ *
+ * Nodes of the types in `NodeType` are kept in one `LongNodeMap` per type,
+ * so that looking them up does not allocate. Nodes of other types are
+ * kept in a hash map.
  */
 
 public class NodeStore
 {
-	static HashMap<NodeStoreKey, Node> addrToNode = new HashMap<NodeStoreKey, Node>();
+	private final LongNodeMap[] nodesByType = new LongNodeMap[NodeType.values().length];
+	private final HashMap<NodeStoreKey, Node> otherNodes = new HashMap<NodeStoreKey, Node>();
 
-	public static void clearCache()
+	public NodeStore()
 	{
-		removeAllNodes();
+		for (int i = 0; i < nodesByType.length; i++)
+			nodesByType[i] = new LongNodeMap();
+	}
+
+	public void clearCache()
+	{
+		for (LongNodeMap nodes : nodesByType)
+			nodes.clear();
+		otherNodes.clear();
 	}
 
 	/**
@@ -23,27 +37,26 @@ public class NodeStore
 	 * is already registered for this pair.
 	 */
 
-	public static void addNode(Node node)
+	public void addNode(Node node)
 	{
 		if (node == null)
 			return;
 
-		NodeStoreKey key = new NodeStoreKey(node.getAddress(), node.getType());
-
-		if (addrToNode.get(key) != null)
-			throw new RuntimeException("Duplicate node");
-
-		addrToNode.put(key, node);
-	}
-
-	private static void removeAllNodes()
-	{
-		for (Iterator<Map.Entry<NodeStoreKey, Node>> it = addrToNode.entrySet()
-				.iterator(); it.hasNext();)
+		long address = node.getAddress();
+		NodeType type = NodeType.fromTypeName(node.getType());
+		if (type == null)
 		{
-			Map.Entry<NodeStoreKey, Node> entry = it.next();
-			it.remove();
+			NodeStoreKey key = new NodeStoreKey(address, node.getType());
+			if (otherNodes.get(key) != null)
+				throw new RuntimeException("Duplicate node");
+			otherNodes.put(key, node);
+			return;
 		}
+
+		LongNodeMap nodes = nodesByType[type.ordinal()];
+		if (nodes.get(address) != null)
+			throw new RuntimeException("Duplicate node");
+		nodes.put(address, node);
 	}
 
 	/**
@@ -51,8 +64,24 @@ public class NodeStore
 	 * such node exists.
 	 */
 
-	public static Node getNodeForAddressAndType(long address, String type)
+	public Node getNodeForAddressAndType(long address, NodeType type)
+	{
+		return nodesByType[type.ordinal()].get(address);
+	}
+
+	public Node getNodeForAddressAndType(long address, String type)
+	{
+		NodeType nodeType = NodeType.fromTypeName(type);
+		if (nodeType == null)
+			return otherNodes.get(new NodeStoreKey(address, type));
+		return getNodeForAddressAndType(address, nodeType);
+	}
+
+	public int size()
 	{
-		return addrToNode.get(new NodeStoreKey(address, type));
+		int size = otherNodes.size();
+		for (LongNodeMap nodes : nodesByType)
+			size += nodes.size();
+		return size;
 	}
 }
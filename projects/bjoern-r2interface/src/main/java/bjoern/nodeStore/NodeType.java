@@ -0,0 +1,59 @@
+package bjoern.nodeStore;
+
+/**
+ * The node types of `NodeTypes` as enum, so that data structures can be
+ * indexed by type ordinal instead of hashing type strings.
+ */
+
+public enum NodeType
+{
+	BASIC_BLOCK(NodeTypes.BASIC_BLOCK),
+	INSTRUCTION(NodeTypes.INSTRUCTION),
+	FUNCTION(NodeTypes.FUNCTION),
+	LOCAL_VAR(NodeTypes.LOCAL_VAR),
+	ARG(NodeTypes.ARG),
+	FLAG(NodeTypes.FLAG),
+	ALOC(NodeTypes.ALOC),
+	ROOT(NodeTypes.ROOT);
+
+	private static final NodeType[] VALUES = values();
+
+	private final String typeName;
+
+	NodeType(String typeName)
+	{
+		this.typeName = typeName;
+	}
+
+	/**
+	 * Returns the type string used in node keys and properties.
+	 */
+
+	public String getTypeName()
+	{
+		return typeName;
+	}
+
+	/**
+	 * Returns the type of the given type string, or null if it is not one
+	 * of `NodeTypes`.
+	 */
+
+	public static NodeType fromTypeName(String typeName)
+	{
+		// type strings are nearly always the constants of NodeTypes, so
+		// the identity check usually succeeds without comparing characters
+		for (NodeType type : VALUES)
+		{
+			if (type.typeName == typeName)
+				return type;
+		}
+		for (NodeType type : VALUES)
+		{
+			if (type.typeName.equals(typeName))
+				return type;
+		}
+		return null;
+	}
+
+}
@@ -5,8 +5,8 @@ public class NodeTypes
 	public static final String BASIC_BLOCK = "BB";
 	public static final String INSTRUCTION = "Instr";
 	public static final String FUNCTION = "Func";
-	public static final Object LOCAL_VAR = "Local";
-	public static final Object ARG = "Arg";
+	public static final String LOCAL_VAR = "var";
+	public static final String ARG = "arg";
 	public static final String FLAG = "Flag";
 	public static final String ALOC = "Aloc";
 	public static String ROOT = "Root";
@@ -0,0 +1,61 @@
+package bjoern.r2interface;
+
+/**
+ * Determines how much analysis radare performs when a binary is loaded.
+ *
+ * QUICK, FULL and DEEP correspond to radare's `aa`, `aaa` and `aaaa`. LAZY
+ * performs no analysis up front: functions are taken from the symbol table
+ * and each function is analyzed via `af` when it is first requested (see
+ * `Radare.analyzeFunctionAt`).
+ *
+ * LAZY has the following limits:
+ *
+ * - Only functions with a symbol are found. If the binary has no function
+ *   symbols, e.g., because it is stripped, the functions reachable by
+ *   calls from its entry points are analyzed instead, which misses
+ *   functions only reached indirectly.
+ * - An export still analyzes every function it finds, so it only saves
+ *   the passes of `aa` over the whole binary, not the analysis of the
+ *   functions themselves.
+ * - Cross references are only known for analyzed functions.
+ * - Plugins must call `Radare.analyzeFunctionAt` before they inspect a
+ *   function.
+ * - With several workers, all functions are analyzed by the main radare
+ *   instance before workers extract their contents, see
+ *   `RadareInputModule`.
+ */
+
+public enum AnalysisProfile
+{
+	QUICK("aa"),
+	FULL("aaa"),
+	DEEP("aaaa"),
+	LAZY(null);
+
+	public final String command;
+
+	AnalysisProfile(String command)
+	{
+		this.command = command;
+	}
+
+	public boolean isLazy()
+	{
+		return command == null;
+	}
+
+	/**
+	 * Returns the profile of the given name, ignoring case.
+	 */
+
+	public static AnalysisProfile fromName(String name)
+	{
+		for (AnalysisProfile profile : values())
+		{
+			if (profile.name().equalsIgnoreCase(name))
+				return profile;
+		}
+		throw new IllegalArgumentException("Unknown analysis profile: " + name);
+	}
+
+}
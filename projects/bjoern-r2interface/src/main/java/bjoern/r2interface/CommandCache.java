@@ -0,0 +1,142 @@
+package bjoern.r2interface;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoizes replies to side-effect-free radare commands.
+ *
+ * Only the queries plugins issue over and over are cached: registers read
+ * and written by an instruction (`aear @`, `aeaw @`), the disassembly of
+ * a single instruction (`pd 1 @`) and reads of configuration variables
+ * (`e key`). Other read-only commands pass through without affecting the
+ * cache. Any other command may change radare's state and therefore
+ * empties the cache.
+ *
+ * The cache holds at most `MAX_ENTRIES` replies and evicts the least
+ * recently used one when full. Long replies are never cached.
+ */
+
+class CommandCache
+{
+	private static final int MAX_ENTRIES = 64 * 1024;
+	private static final int MAX_REPLY_LENGTH = 4 * 1024;
+
+	private static final List<String> CACHEABLE_PREFIXES = Arrays.asList(
+			"aear @", "aeaw @", "pd 1 @");
+
+	private static final List<String> READ_ONLY_COMMANDS = Arrays.asList(
+			"aflj", "isj", "ax", "f", "?V");
+
+	private static final List<String> READ_ONLY_PREFIXES = Arrays.asList(
+			"agj ", "afvj @", "pdf @");
+
+	private final Map<String, String> replies = new LinkedHashMap<String, String>(
+			1024, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+		{
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private long hits = 0;
+	private long misses = 0;
+	private long invalidations = 0;
+
+	public static boolean isCacheable(String cmd)
+	{
+		for (String prefix : CACHEABLE_PREFIXES)
+		{
+			if (cmd.startsWith(prefix))
+				return true;
+		}
+		return isConfigurationRead(cmd);
+	}
+
+	private static boolean isConfigurationRead(String cmd)
+	{
+		return cmd.startsWith("e ") && cmd.indexOf('=') == -1;
+	}
+
+	private static boolean isRegisterRead(String cmd)
+	{
+		return cmd.startsWith("ar ") && cmd.indexOf('=') == -1;
+	}
+
+	private static boolean isReadOnly(String cmd)
+	{
+		if (isCacheable(cmd) || isRegisterRead(cmd))
+			return true;
+
+		if (READ_ONLY_COMMANDS.contains(cmd))
+			return true;
+
+		for (String prefix : READ_ONLY_PREFIXES)
+		{
+			if (cmd.startsWith(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the cached reply to `cmd` or null if there is none.
+	 */
+
+	public String get(String cmd)
+	{
+		String reply = replies.get(cmd);
+		if (reply == null)
+			misses++;
+		else
+			hits++;
+		return reply;
+	}
+
+	public void put(String cmd, String reply)
+	{
+		if (reply.length() <= MAX_REPLY_LENGTH)
+			replies.put(cmd, reply);
+	}
+
+	/**
+	 * Must be called for every command sent to radare, cached or not.
+	 */
+
+	public void commandIssued(String cmd)
+	{
+		if (isReadOnly(cmd) || replies.isEmpty())
+			return;
+
+		replies.clear();
+		invalidations++;
+	}
+
+	public long getHits()
+	{
+		return hits;
+	}
+
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	public long getInvalidations()
+	{
+		return invalidations;
+	}
+
+	public double getHitRate()
+	{
+		long lookups = hits + misses;
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	}
+
+}
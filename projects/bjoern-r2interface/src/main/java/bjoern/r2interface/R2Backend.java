@@ -0,0 +1,27 @@
+package bjoern.r2interface;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The other end of an R2Pipe: commands are written to the command stream,
+ * one per line, and replies are read from the reply stream, each
+ * terminated by a zero byte (as with `radare2 -q0`). The first reply is
+ * sent on startup, before any command has been issued.
+ *
+ * Usually, this is a radare2 process. For offline tests and benchmarks,
+ * replies can be served from a previously recorded session instead (see
+ * `R2Backends`).
+ */
+
+public interface R2Backend extends Closeable
+{
+	public OutputStream getCommandStream();
+
+	public InputStream getReplyStream();
+
+	@Override
+	public void close() throws IOException;
+}
@@ -0,0 +1,13 @@
+package bjoern.r2interface;
+
+import java.io.IOException;
+
+/**
+ * Creates the backend of a radare instance for a binary, see
+ * `R2Backends.create`.
+ */
+
+public interface R2BackendFactory
+{
+	public R2Backend create(String filename) throws IOException;
+}
@@ -0,0 +1,100 @@
+package bjoern.r2interface;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the backend for a new radare instance.
+ *
+ * By default, radare2 is started as a child process. If the system
+ * property `bjoern.r2.record` is set, all commands and replies of all
+ * instances are additionally recorded into the session file it names. If
+ * `bjoern.r2.replay` is set instead, no process is started, and replies
+ * are served from the session file it names. This allows exporter and
+ * plugins to be tested and benchmarked without radare2.
+ */
+
+public class R2Backends
+{
+	private static final Logger logger = LoggerFactory
+			.getLogger(R2Backends.class);
+
+	public static final String RECORD_PROPERTY = "bjoern.r2.record";
+	public static final String REPLAY_PROPERTY = "bjoern.r2.replay";
+
+	private static final Map<Path, R2Session.Writer> writers = new HashMap<Path, R2Session.Writer>();
+	private static final Map<Path, R2Session> sessions = new HashMap<Path, R2Session>();
+
+	public static R2Backend create(String filename) throws IOException
+	{
+		String replay = System.getProperty(REPLAY_PROPERTY);
+		if (replay != null)
+			return new R2ReplayBackend(getSession(Paths.get(replay)));
+
+		R2Backend backend = new R2ProcessBackend(filename);
+
+		String record = System.getProperty(RECORD_PROPERTY);
+		if (record != null)
+			return new R2RecordingBackend(backend, getWriter(Paths.get(record)), false);
+
+		return backend;
+	}
+
+	/**
+	 * Sessions are loaded once and then shared by all instances, each of
+	 * which replays them independently.
+	 */
+
+	private static synchronized R2Session getSession(Path path) throws IOException
+	{
+		R2Session session = sessions.get(path);
+		if (session == null)
+		{
+			logger.info("Replaying r2 session {}", path);
+			session = R2Session.load(path);
+			sessions.put(path, session);
+		}
+		return session;
+	}
+
+	/**
+	 * All instances record into the same writer, which is closed when the
+	 * JVM exits.
+	 */
+
+	private static synchronized R2Session.Writer getWriter(Path path) throws IOException
+	{
+		R2Session.Writer writer = writers.get(path);
+		if (writer == null)
+		{
+			logger.info("Recording r2 session to {}", path);
+			writer = new R2Session.Writer(path);
+			writers.put(path, writer);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> closeWriter(path)));
+		}
+		return writer;
+	}
+
+	private static synchronized void closeWriter(Path path)
+	{
+		R2Session.Writer writer = writers.remove(path);
+		if (writer == null)
+			return;
+
+		try
+		{
+			writer.close();
+		}
+		catch (IOException e)
+		{
+			logger.error("Cannot close r2 session {}", path, e);
+		}
+	}
+
+}
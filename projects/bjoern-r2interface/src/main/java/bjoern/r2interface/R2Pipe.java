@@ -6,6 +6,12 @@ package bjoern.r2interface;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,83 +20,129 @@ class R2Pipe
 {
 	private static final Logger logger = LoggerFactory.getLogger(R2Pipe.class);
 
-	public final String R2_LOC = "radare2";
-	private final Process process;
+	private static final int MAX_COMMANDS_IN_FLIGHT = 1024;
+	private static final int MAX_BYTES_IN_FLIGHT = 32 * 1024;
+
+	private final R2Backend backend;
 	private OutputStream stdin;
-	private InputStream stdout;
-	private StreamGobbler errorGobbler;
+	private R2ReplyReader stdout;
 
 	public R2Pipe(String filename) throws IOException
 	{
-		process = spawnR2Process(filename);
-		connectProcessPipes();
+		this(R2Backends.create(filename));
+	}
+
+	public R2Pipe(R2Backend backend) throws IOException
+	{
+		this.backend = backend;
+		stdin = backend.getCommandStream();
+		stdout = new R2ReplyReader(backend.getReplyStream());
 		readUpToZeroByte();
 	}
 
-	private void connectProcessPipes()
+	public String cmd(String cmd) throws IOException
 	{
-		stdin = process.getOutputStream();
-		stdout = process.getInputStream();
-		errorGobbler = new StreamGobbler(process.getErrorStream(), "ERROR");
-		errorGobbler.start();
+		cmdNoResponse(cmd);
+		return readUpToZeroByte();
 	}
 
-	private Process spawnR2Process(String filename) throws IOException
+	public void cmdNoResponse(String cmd) throws IOException
 	{
-		try
-		{
-			return Runtime.getRuntime().exec(R2_LOC + " -q0 " + filename);
-		}
-		catch (IOException e)
+		logger.info("r2 command: {}", cmd);
+		writeCommand(cmd);
+		stdin.flush();
+	}
+
+	/**
+	 * Issues all `cmds` and returns their replies in the same order.
+	 *
+	 * Commands are sent ahead of the reply currently being read, so that
+	 * radare never waits for the next command. To avoid a deadlock between
+	 * radare blocking on a full stdout and us blocking on a full stdin, the
+	 * number and total size of commands in flight is bounded.
+	 */
+
+	public List<String> cmdPipelined(List<String> cmds) throws IOException
+	{
+		logger.info("r2 pipelined commands: {}", cmds.size());
+
+		List<String> replies = new ArrayList<String>(cmds.size());
+		Deque<Integer> inFlight = new ArrayDeque<Integer>();
+		Iterator<String> it = cmds.iterator();
+		int bytesInFlight = 0;
+
+		while (it.hasNext() || !inFlight.isEmpty())
 		{
-			throw new IOException("Cannot find `radare2` on path.");
+			boolean wrote = false;
+			while (it.hasNext() && inFlight.size() < MAX_COMMANDS_IN_FLIGHT
+					&& bytesInFlight < MAX_BYTES_IN_FLIGHT)
+			{
+				String cmd = it.next();
+				logger.debug("r2 command: {}", cmd);
+				int nBytes = writeCommand(cmd);
+				inFlight.add(nBytes);
+				bytesInFlight += nBytes;
+				wrote = true;
+			}
+			if (wrote)
+				stdin.flush();
+
+			replies.add(readUpToZeroByte());
+			bytesInFlight -= inFlight.remove();
 		}
+
+		return replies;
 	}
 
-	public String cmd(String cmd) throws IOException
+	private int writeCommand(String cmd) throws IOException
+	{
+		byte[] bytes = (cmd + "\n").getBytes(StandardCharsets.UTF_8);
+		stdin.write(bytes);
+		return bytes.length;
+	}
+
+	/**
+	 * Like `cmd`, but returns the reply as a view into a buffer that is
+	 * reused for the next reply.
+	 */
+
+	public CharSequence cmdAsCharSequence(String cmd) throws IOException
 	{
 		cmdNoResponse(cmd);
-		return readUpToZeroByte();
+		return stdout.readReplyAsCharSequence();
 	}
 
-	public void cmdNoResponse(String cmd) throws IOException
+	/**
+	 * Like `cmd`, but returns a stream over the reply, which can be parsed
+	 * while radare is still producing it. Whatever is left of the reply is
+	 * skipped when the stream is closed or the next reply is read.
+	 */
+
+	public InputStream cmdAsStream(String cmd) throws IOException
 	{
-		logger.info("r2 command: {}", cmd);
-		cmd += "\n";
+		cmdNoResponse(cmd);
+		return readReplyAsStream();
+	}
 
-		stdin.write((cmd).getBytes());
-		stdin.flush();
+	public InputStream readReplyAsStream() throws IOException
+	{
+		return stdout.openReplyStream();
 	}
 
 	public String readUpToZeroByte() throws IOException
 	{
-		StringBuffer sb = new StringBuffer();
-		byte[] b = new byte[1];
-		while (stdout.read(b) == 1)
-		{
-			if (b[0] == '\0')
-				break;
-			sb.append((char) b[0]);
-		}
-		return sb.toString();
+		return stdout.readUpToZeroByte();
 	}
 
 	public String readNextLine() throws IOException
 	{
-		StringBuffer sb = new StringBuffer();
-		byte[] b = new byte[1];
-		while (stdout.read(b) == 1)
-		{
-			if (b[0] == '\n' || b[0] == '\0')
-				break;
-			sb.append((char) b[0]);
-		}
-		return sb.toString();
+		return stdout.readNextLine();
 	}
 
 	public void quit() throws Exception
 	{
 		cmd("q");
+		backend.close();
 	}
 
 }
\ No newline at end of file
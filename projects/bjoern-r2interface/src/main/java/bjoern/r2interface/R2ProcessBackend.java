@@ -0,0 +1,55 @@
+package bjoern.r2interface;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Runs radare2 as a child process.
+ */
+
+class R2ProcessBackend implements R2Backend
+{
+	public static final String R2_LOC = "radare2";
+
+	private final Process process;
+	private final StreamGobbler errorGobbler;
+
+	public R2ProcessBackend(String filename) throws IOException
+	{
+		process = spawnR2Process(filename);
+		errorGobbler = new StreamGobbler(process.getErrorStream(), "ERROR");
+		errorGobbler.start();
+	}
+
+	private Process spawnR2Process(String filename) throws IOException
+	{
+		try
+		{
+			return Runtime.getRuntime().exec(R2_LOC + " -q0 " + filename);
+		}
+		catch (IOException e)
+		{
+			throw new IOException("Cannot find `radare2` on path.");
+		}
+	}
+
+	@Override
+	public OutputStream getCommandStream()
+	{
+		return process.getOutputStream();
+	}
+
+	@Override
+	public InputStream getReplyStream()
+	{
+		return process.getInputStream();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		process.getOutputStream().close();
+	}
+
+}
@@ -0,0 +1,172 @@
+package bjoern.r2interface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Passes commands and replies through to another backend and records
+ * each command along with its reply.
+ *
+ * Commands and replies are matched by position: radare replies to
+ * commands in the order they are issued, so the n-th reply belongs to the
+ * n-th command. This also holds for pipelined commands.
+ */
+
+public class R2RecordingBackend implements R2Backend
+{
+	private final R2Backend backend;
+	private final R2Session.Writer writer;
+	private final boolean closeWriter;
+
+	private final Deque<String> pendingCommands = new ArrayDeque<String>();
+
+	private final RecordingOutputStream commandStream;
+	private final RecordingInputStream replyStream;
+
+	/**
+	 * If `closeWriter` is set, `writer` is closed along with this backend.
+	 */
+
+	public R2RecordingBackend(R2Backend backend, R2Session.Writer writer,
+			boolean closeWriter)
+	{
+		this.backend = backend;
+		this.writer = writer;
+		this.closeWriter = closeWriter;
+		this.commandStream = new RecordingOutputStream(backend.getCommandStream());
+		this.replyStream = new RecordingInputStream(backend.getReplyStream());
+
+		pendingCommands.add(R2Session.STARTUP);
+	}
+
+	@Override
+	public OutputStream getCommandStream()
+	{
+		return commandStream;
+	}
+
+	@Override
+	public InputStream getReplyStream()
+	{
+		return replyStream;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		backend.close();
+		if (closeWriter)
+			writer.close();
+	}
+
+	private void commandWritten(byte[] cmd)
+	{
+		pendingCommands.add(new String(cmd, StandardCharsets.UTF_8));
+	}
+
+	private void replyRead(byte[] reply) throws IOException
+	{
+		String cmd = pendingCommands.poll();
+		// replies without command, e.g., after `q`, are not recorded
+		if (cmd != null)
+			writer.write(cmd, reply);
+	}
+
+	private class RecordingOutputStream extends FilterOutputStream
+	{
+		private final ByteArrayOutputStream currentCommand = new ByteArrayOutputStream();
+
+		RecordingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			record((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			for (int i = off; i < off + len; i++)
+				record(b[i]);
+		}
+
+		private void record(byte b)
+		{
+			if (b != '\n')
+			{
+				currentCommand.write(b);
+				return;
+			}
+			commandWritten(currentCommand.toByteArray());
+			currentCommand.reset();
+		}
+	}
+
+	private class RecordingInputStream extends FilterInputStream
+	{
+		private final ByteArrayOutputStream currentReply = new ByteArrayOutputStream();
+
+		RecordingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = in.read();
+			if (b != -1)
+				record((byte) b);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int nRead = in.read(b, off, len);
+			for (int i = off; i < off + nRead; i++)
+				record(b[i]);
+			return nRead;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			// skipping would hide bytes from the recording
+			byte[] b = new byte[(int) Math.min(n, 8192)];
+			int nRead = read(b, 0, b.length);
+			return Math.max(nRead, 0);
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		private void record(byte b) throws IOException
+		{
+			if (b != '\0')
+			{
+				currentReply.write(b);
+				return;
+			}
+			replyRead(currentReply.toByteArray());
+			currentReply.reset();
+		}
+	}
+
+}
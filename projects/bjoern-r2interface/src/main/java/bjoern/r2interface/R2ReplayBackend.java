@@ -0,0 +1,135 @@
+package bjoern.r2interface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves replies from a recorded session instead of running radare.
+ *
+ * If a command has been recorded several times, its replies are served in
+ * the order they were recorded, and the last one is repeated once they
+ * are used up. A command that has not been recorded at all fails with an
+ * IOException, as a replay cannot tell what radare would have replied.
+ * Only `q` may be unrecorded, as radare exits on it.
+ */
+
+public class R2ReplayBackend implements R2Backend
+{
+	private final R2Session session;
+	private final Map<String, Integer> nextReplyIndex = new HashMap<String, Integer>();
+
+	private final Deque<byte[]> pendingReplies = new ArrayDeque<byte[]>();
+
+	private final OutputStream commandStream = new CommandOutputStream();
+	private final InputStream replyStream = new ReplyInputStream();
+
+	public R2ReplayBackend(R2Session session) throws IOException
+	{
+		this.session = session;
+		commandReceived(R2Session.STARTUP);
+	}
+
+	@Override
+	public OutputStream getCommandStream()
+	{
+		return commandStream;
+	}
+
+	@Override
+	public InputStream getReplyStream()
+	{
+		return replyStream;
+	}
+
+	@Override
+	public void close()
+	{
+	}
+
+	private void commandReceived(String cmd) throws IOException
+	{
+		List<byte[]> replies = session.getReplies(cmd);
+		if (replies.isEmpty())
+		{
+			if (!cmd.equals("q"))
+				throw new IOException("No recorded reply for r2 command: " + cmd);
+			pendingReplies.add(new byte[] { 0 });
+			return;
+		}
+
+		Integer index = nextReplyIndex.get(cmd);
+		if (index == null)
+			index = 0;
+		nextReplyIndex.put(cmd, index + 1);
+
+		byte[] reply = replies.get(Math.min(index, replies.size() - 1));
+		pendingReplies.add(reply);
+		pendingReplies.add(new byte[] { 0 });
+	}
+
+	private class CommandOutputStream extends OutputStream
+	{
+		private final ByteArrayOutputStream currentCommand = new ByteArrayOutputStream();
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (b != '\n')
+			{
+				currentCommand.write(b);
+				return;
+			}
+			commandReceived(new String(currentCommand.toByteArray(),
+					StandardCharsets.UTF_8));
+			currentCommand.reset();
+		}
+	}
+
+	/**
+	 * Returns end of stream when no reply is pending, which is what a
+	 * radare process that has exited would do.
+	 */
+
+	private class ReplyInputStream extends InputStream
+	{
+		private int position = 0;
+
+		@Override
+		public int read()
+		{
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if (len == 0)
+				return 0;
+
+			byte[] current = pendingReplies.peek();
+			while (current != null && position == current.length)
+			{
+				pendingReplies.remove();
+				position = 0;
+				current = pendingReplies.peek();
+			}
+			if (current == null)
+				return -1;
+
+			int nCopied = Math.min(len, current.length - position);
+			System.arraycopy(current, position, b, off, nCopied);
+			position += nCopied;
+			return nCopied;
+		}
+	}
+
+}
@@ -0,0 +1,278 @@
+package bjoern.r2interface;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits the output of radare into replies. When started with `-q0`,
+ * radare terminates the reply to each command with a zero byte. Some
+ * replies (e.g., the flag list) are additionally consumed line by line.
+ *
+ * Output is read from the underlying stream in large chunks and scanned
+ * for delimiters in place. All buffers are reused across replies, so
+ * reading a reply does not allocate anything beyond the final String, and
+ * not even that when using `readReplyAsCharSequence` or `openReplyStream`.
+ */
+
+class R2ReplyReader
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream in;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+
+	private byte[] frame = new byte[BUFFER_SIZE];
+	private int frameLength = 0;
+
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	private ReplyInputStream openStream;
+
+	public R2ReplyReader(InputStream in)
+	{
+		this.in = in;
+	}
+
+	/**
+	 * Reads up to and including the next zero byte and returns everything
+	 * before it.
+	 */
+
+	public String readUpToZeroByte() throws IOException
+	{
+		readFrame(false);
+		return new String(frame, 0, frameLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads up to and including the next newline or zero byte, whichever
+	 * comes first, and returns everything before it.
+	 */
+
+	public String readNextLine() throws IOException
+	{
+		readFrame(true);
+		return new String(frame, 0, frameLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Like `readUpToZeroByte`, but decodes the reply into a buffer owned by
+	 * this reader. The returned sequence is only valid until the next reply
+	 * is read.
+	 */
+
+	public CharSequence readReplyAsCharSequence() throws IOException
+	{
+		readFrame(false);
+		return decodeFrame();
+	}
+
+	/**
+	 * Returns a stream over the bytes of the next reply, excluding the
+	 * terminating zero byte. Bytes are passed through as they arrive from
+	 * radare, so a reply can be parsed while it is still being produced.
+	 * Closing the stream skips whatever is left of the reply. The stream
+	 * must be closed before the next reply is read.
+	 */
+
+	public InputStream openReplyStream() throws IOException
+	{
+		closeOpenStream();
+		openStream = new ReplyInputStream();
+		return openStream;
+	}
+
+	private void readFrame(boolean stopAtNewline) throws IOException
+	{
+		closeOpenStream();
+		frameLength = 0;
+
+		while (true)
+		{
+			if (position == limit && !fillBuffer())
+				return;
+
+			int end = findDelimiter(stopAtNewline);
+			if (end == -1)
+			{
+				appendToFrame(position, limit - position);
+				position = limit;
+				continue;
+			}
+
+			appendToFrame(position, end - position);
+			// skip the delimiter itself
+			position = end + 1;
+			return;
+		}
+	}
+
+	private int findDelimiter(boolean stopAtNewline)
+	{
+		byte[] buf = buffer;
+		int end = limit;
+
+		if (stopAtNewline)
+		{
+			for (int i = position; i < end; i++)
+			{
+				byte b = buf[i];
+				if (b == '\0' || b == '\n')
+					return i;
+			}
+			return -1;
+		}
+
+		for (int i = position; i < end; i++)
+		{
+			if (buf[i] == '\0')
+				return i;
+		}
+		return -1;
+	}
+
+	private void appendToFrame(int offset, int length)
+	{
+		if (length == 0)
+			return;
+
+		int required = frameLength + length;
+		if (required > frame.length)
+		{
+			byte[] newFrame = new byte[Math.max(required, frame.length * 2)];
+			System.arraycopy(frame, 0, newFrame, 0, frameLength);
+			frame = newFrame;
+		}
+		System.arraycopy(buffer, offset, frame, frameLength, length);
+		frameLength = required;
+	}
+
+	private CharSequence decodeFrame()
+	{
+		// UTF-8 never needs more chars than bytes
+		if (chars.capacity() < frameLength)
+			chars = CharBuffer.allocate(Math.max(frameLength, chars.capacity() * 2));
+
+		chars.clear();
+		decoder.reset();
+		decoder.decode(ByteBuffer.wrap(frame, 0, frameLength), chars, true);
+		decoder.flush(chars);
+		chars.flip();
+		return chars;
+	}
+
+	/**
+	 * Returns false if the end of the stream has been reached.
+	 */
+
+	private boolean fillBuffer() throws IOException
+	{
+		int nRead = in.read(buffer, 0, buffer.length);
+		if (nRead <= 0)
+		{
+			position = limit = 0;
+			return false;
+		}
+		position = 0;
+		limit = nRead;
+		return true;
+	}
+
+	private void closeOpenStream() throws IOException
+	{
+		if (openStream != null)
+			openStream.close();
+	}
+
+	private class ReplyInputStream extends InputStream
+	{
+		private boolean endOfReply = false;
+
+		@Override
+		public int read() throws IOException
+		{
+			if (!ensureAvailable())
+				return -1;
+
+			byte b = buffer[position++];
+			if (b == '\0')
+			{
+				endOfReply = true;
+				return -1;
+			}
+			return b & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+				return 0;
+			if (!ensureAvailable())
+				return -1;
+
+			int end = Math.min(limit, position + len);
+			for (int i = position; i < end; i++)
+			{
+				if (buffer[i] == '\0')
+				{
+					end = i;
+					endOfReply = true;
+					break;
+				}
+			}
+
+			int nCopied = end - position;
+			System.arraycopy(buffer, position, b, off, nCopied);
+			position = endOfReply ? end + 1 : end;
+
+			if (nCopied == 0)
+				return -1;
+			return nCopied;
+		}
+
+		private boolean ensureAvailable() throws IOException
+		{
+			if (endOfReply)
+				return false;
+			if (position == limit && !fillBuffer())
+			{
+				endOfReply = true;
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (openStream != this)
+				return;
+			openStream = null;
+
+			while (ensureAvailable())
+			{
+				int end = findDelimiter(false);
+				if (end == -1)
+				{
+					position = limit;
+					continue;
+				}
+				position = end + 1;
+				endOfReply = true;
+			}
+		}
+	}
+
+}
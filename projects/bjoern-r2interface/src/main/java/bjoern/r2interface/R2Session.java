@@ -0,0 +1,147 @@
+package bjoern.r2interface;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The commands issued to radare and the replies received, as recorded by
+ * `R2RecordingBackend` and replayed by `R2ReplayBackend`.
+ *
+ * Sessions are stored as gzip-compressed sequences of records, each
+ * consisting of a command and its reply, both prefixed by their length.
+ * The reply radare sends on startup is recorded with the empty command.
+ *
+ * Commands that save or load projects name a file, which usually differs
+ * between recording and replay, e.g., if it is in a temporary directory.
+ * Their replies are therefore kept under the command alone.
+ */
+
+public class R2Session
+{
+	private static final String MAGIC = "bjoern-r2-session-1";
+
+	static final String STARTUP = "";
+
+	private static final List<String> FILE_COMMANDS = Arrays.asList("Ps ",
+			"Po ");
+
+	private final Map<String, List<byte[]>> replies = new HashMap<String, List<byte[]>>();
+
+	/**
+	 * Returns the replies to `cmd` in the order they were recorded.
+	 */
+
+	public List<byte[]> getReplies(String cmd)
+	{
+		List<byte[]> repliesToCmd = replies.get(keyOf(cmd));
+		if (repliesToCmd == null)
+			return Collections.emptyList();
+		return repliesToCmd;
+	}
+
+	public void addReply(String cmd, byte[] reply)
+	{
+		String key = keyOf(cmd);
+		List<byte[]> repliesToCmd = replies.get(key);
+		if (repliesToCmd == null)
+		{
+			repliesToCmd = new ArrayList<byte[]>(1);
+			replies.put(key, repliesToCmd);
+		}
+		repliesToCmd.add(reply);
+	}
+
+	private static String keyOf(String cmd)
+	{
+		for (String prefix : FILE_COMMANDS)
+		{
+			if (cmd.startsWith(prefix))
+				return prefix.trim();
+		}
+		return cmd;
+	}
+
+	public static R2Session load(Path path) throws IOException
+	{
+		R2Session session = new R2Session();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(path)))))
+		{
+			if (!MAGIC.equals(in.readUTF()))
+				throw new IOException("Not an r2 session file: " + path);
+
+			while (true)
+			{
+				byte[] cmd;
+				try
+				{
+					cmd = readBytes(in);
+				}
+				catch (EOFException ex)
+				{
+					break;
+				}
+				byte[] reply = readBytes(in);
+				session.addReply(new String(cmd, StandardCharsets.UTF_8), reply);
+			}
+		}
+
+		return session;
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Appends records to a session file. A writer may be shared by several
+	 * radare instances, in which case their records are interleaved.
+	 */
+
+	public static class Writer
+	{
+		private final DataOutputStream out;
+
+		public Writer(Path path) throws IOException
+		{
+			out = new DataOutputStream(new BufferedOutputStream(
+					new GZIPOutputStream(Files.newOutputStream(path))));
+			out.writeUTF(MAGIC);
+		}
+
+		public synchronized void write(String cmd, byte[] reply) throws IOException
+		{
+			byte[] cmdBytes = cmd.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(cmdBytes.length);
+			out.write(cmdBytes);
+			out.writeInt(reply.length);
+			out.write(reply);
+		}
+
+		public synchronized void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+}
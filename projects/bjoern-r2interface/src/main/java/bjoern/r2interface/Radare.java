@@ -1,13 +1,23 @@
 package bjoern.r2interface;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,16 +25,32 @@ import bjoern.nodeStore.NodeKey;
 import bjoern.nodeStore.NodeTypes;
 import bjoern.r2interface.architectures.Architecture;
 import bjoern.r2interface.architectures.X64Architecture;
+import bjoern.r2interface.creators.JSONStreamReader;
+import bjoern.r2interface.creators.JSONUtils;
+import bjoern.r2interface.creators.RadareFunctionContentCreator;
+import bjoern.r2interface.creators.RadareFunctionCreator;
 import bjoern.r2interface.exceptions.InvalidRadareFunction;
 import bjoern.structures.annotations.Flag;
 import bjoern.structures.edges.CallRef;
 import bjoern.structures.edges.EdgeTypes;
 import bjoern.structures.edges.Xref;
+import bjoern.structures.interpretations.Function;
+import bjoern.structures.interpretations.FunctionContent;
 
 public class Radare
 {
 	R2Pipe r2Pipe;
 
+	private final CommandCache commandCache = new CommandCache();
+
+	private AnalysisProfile analysisProfile = AnalysisProfile.FULL;
+
+	/**
+	 * Functions analyzed on demand when using `AnalysisProfile.LAZY`.
+	 */
+
+	private final Set<Long> analyzedFunctions = new HashSet<Long>();
+
 	private static final Logger logger = LoggerFactory.getLogger(Radare.class);
 
 	public void loadBinary(String filename) throws IOException
@@ -33,73 +59,340 @@ public class Radare
 		setRadareOptions();
 	}
 
+	/**
+	 * Like `loadBinary`, but talks to `backend` instead of a radare process
+	 * started for a binary, e.g., to replay a recorded session.
+	 */
+
+	public void connect(R2Backend backend) throws IOException
+	{
+		r2Pipe = new R2Pipe(backend);
+		setRadareOptions();
+	}
+
+	public void setAnalysisProfile(AnalysisProfile analysisProfile)
+	{
+		this.analysisProfile = analysisProfile;
+	}
+
+	public AnalysisProfile getAnalysisProfile()
+	{
+		return analysisProfile;
+	}
+
+	/**
+	 * Analyzes the binary as specified by the analysis profile. Nothing is
+	 * analyzed up front when using `AnalysisProfile.LAZY`.
+	 */
+
 	public void analyzeBinary() throws IOException
 	{
-		r2Pipe.cmd("aaa");
+		if (analysisProfile.isLazy())
+			return;
+
+		long start = System.currentTimeMillis();
+		cmd(analysisProfile.command);
+		logger.info("Analysis ({}) took {} ms", analysisProfile.command,
+				System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Analyzes the function at `addr` if the analysis profile is
+	 * `AnalysisProfile.LAZY` and the function has not been analyzed yet.
+	 * Plugins should call this before touching a function.
+	 */
+
+	public void analyzeFunctionAt(Long addr) throws IOException
+	{
+		if (!analysisProfile.isLazy() || !analyzedFunctions.add(addr))
+			return;
+
+		cmd("af @" + Long.toUnsignedString(addr));
+	}
+
+	/**
+	 * Batch version of `analyzeFunctionAt`, see `cmdBatch`.
+	 */
+
+	public void analyzeFunctionsAt(List<Long> addrs) throws IOException
+	{
+		if (!analysisProfile.isLazy())
+			return;
+
+		List<String> cmds = new ArrayList<String>();
+		for (Long addr : addrs)
+		{
+			if (analyzedFunctions.add(addr))
+				cmds.add("af @" + Long.toUnsignedString(addr));
+		}
+
+		if (!cmds.isEmpty())
+			cmdBatch(cmds);
+	}
+
+	public String getVersion() throws IOException
+	{
+		return cmd("?V").trim();
 	}
 
 	private void setRadareOptions() throws IOException
 	{
-		r2Pipe.cmd("e scr.color = false");
-		r2Pipe.cmd("e asm.bytes = false");
-		r2Pipe.cmd("e asm.lines = false");
-		r2Pipe.cmd("e asm.fcnlines = false");
-		r2Pipe.cmd("e asm.xrefs = false");
-		r2Pipe.cmd("e asm.lbytes = false");
-		r2Pipe.cmd("e asm.indentspace = 0");
+		cmd("e scr.color = false");
+		cmd("e asm.bytes = false");
+		cmd("e asm.lines = false");
+		cmd("e asm.fcnlines = false");
+		cmd("e asm.xrefs = false");
+		cmd("e asm.lbytes = false");
+		cmd("e asm.indentspace = 0");
 	}
 
 	public void saveProject(String projectFilename) throws IOException
 	{
-		r2Pipe.cmd("Ps " + projectFilename);
+		cmd("Ps " + projectFilename);
 	}
 
 	public void loadProject(String projectFilename) throws IOException
 	{
-		r2Pipe.cmd("Po " + projectFilename);
+		cmd("Po " + projectFilename);
 		// This is a workaround: for some reason, when loading a
 		// project, r2 goes out of quiet mode
-		r2Pipe.cmd("e scr.interactive = false");
-		r2Pipe.cmd("e scr.prompt = false");
-		r2Pipe.cmd("e scr.color = false");
+		cmd("e scr.interactive = false");
+		cmd("e scr.prompt = false");
+		cmd("e scr.color = false");
 	}
 
 	public Architecture getArchitecture() throws IOException
 	{
-		String arch = r2Pipe.cmd("e asm.arch");
-		String bits = r2Pipe.cmd("e asm.bits");
+		String arch = cmd("e asm.arch");
+		String bits = cmd("e asm.bits");
 
 		// TODO: Actually take a look at `arch` and `bits`
 		// to decide which architecture to return
 		return new X64Architecture();
 	}
 
-	public JSONArray getJSONFunctions() throws IOException
+	/**
+	 * Passes each function listed by `aflj` to `consumer` as soon as it has
+	 * been read from the pipe, so that the listing is never held in memory
+	 * as a whole.
+	 */
+
+	public void forEachFunction(Consumer<Function> consumer) throws IOException
+	{
+		if (analysisProfile.isLazy())
+		{
+			if (forEachFunctionSymbol(consumer) == 0)
+				forEachFunctionFromEntryPoints(consumer);
+			return;
+		}
+
+		forEachAnalyzedFunction(consumer);
+	}
+
+	private void forEachAnalyzedFunction(Consumer<Function> consumer)
+			throws IOException
+	{
+		try (Reader reader = openReplyReader("aflj"))
+		{
+			JSONStreamReader jsonReader = new JSONStreamReader(reader);
+			jsonReader.beginArray();
+			while (jsonReader.hasNext())
+			{
+				JSONObject jsonFunction = jsonReader.nextObject();
+				consumer.accept(RadareFunctionCreator.createFromJSON(jsonFunction));
+			}
+		}
+	}
+
+	/**
+	 * Passes a function for each function symbol listed by `isj` and
+	 * returns their number. This does not require the binary to be
+	 * analyzed.
+	 */
+
+	private int forEachFunctionSymbol(Consumer<Function> consumer)
+			throws IOException
 	{
-		String str = r2Pipe.cmd("aflj");
-		return new JSONArray(str);
+		int nSymbols = 0;
+		try (Reader reader = openReplyReader("isj"))
+		{
+			JSONStreamReader jsonReader = new JSONStreamReader(reader);
+			jsonReader.beginArray();
+			while (jsonReader.hasNext())
+			{
+				JSONObject jsonSymbol = jsonReader.nextObject();
+				if (!"FUNC".equals(jsonSymbol.optString("type")))
+					continue;
+
+				Long addr = JSONUtils.getLongFromObject(jsonSymbol, "vaddr");
+				if (addr == null || addr == 0)
+					continue;
+
+				Function function = new Function(addr);
+				function.setName(jsonSymbol.optString("name"));
+				consumer.accept(function);
+				nSymbols++;
+			}
+		}
+		return nSymbols;
 	}
 
-	public JSONObject getJSONFunctionContentAt(Long addr)
+	/**
+	 * Finds the functions of a binary without function symbols, e.g., a
+	 * stripped binary, by analyzing the functions at its entry points and
+	 * the functions they call. Passes all functions found, which need not
+	 * be analyzed again.
+	 */
+
+	private void forEachFunctionFromEntryPoints(Consumer<Function> consumer)
+			throws IOException
+	{
+		List<Long> entryPoints = getEntryPoints();
+		logger.info("No function symbols, analyzing from {} entry points",
+				entryPoints.size());
+
+		cmd("e anal.calls = true");
+		for (Long addr : entryPoints)
+			analyzeFunctionAt(addr);
+		cmd("e anal.calls = false");
+
+		forEachAnalyzedFunction(function -> {
+			analyzedFunctions.add(function.getAddress());
+			consumer.accept(function);
+		});
+	}
+
+	/**
+	 * Returns the addresses of the entry points listed by `iej`.
+	 */
+
+	private List<Long> getEntryPoints() throws IOException
+	{
+		List<Long> entryPoints = new ArrayList<Long>();
+		JSONArray jsonEntries = new JSONArray(cmd("iej"));
+		for (int i = 0; i < jsonEntries.length(); i++)
+		{
+			Long addr = JSONUtils.getLongFromObject(
+					jsonEntries.getJSONObject(i), "vaddr");
+			if (addr != null && addr != 0)
+				entryPoints.add(addr);
+		}
+		return entryPoints;
+	}
+
+	/**
+	 * Returns the content of the function at `addr`, created from its graph
+	 * as obtained via `agj` and its variables and arguments as obtained via
+	 * `afvj`. Instructions contain their ESIL representation, so this is
+	 * all that is needed to create the content of a function. Both commands
+	 * are pipelined, so this costs a single round-trip, and the graph is
+	 * decoded while it is being read from the pipe. With a lazy analysis
+	 * profile, the function is analyzed first if necessary.
+	 *
+	 * The content is detached from the NodeStore, see
+	 * `RadareFunctionContentCreator.createDetachedContentFromJSON`.
+	 *
+	 * Returns null if radare's reply cannot be parsed.
+	 */
+
+	public FunctionContent getFunctionContentAt(Long addr)
 			throws InvalidRadareFunction, IOException
 	{
+		analyzeFunctionAt(addr);
 
-		String jsonStr = r2Pipe.cmd("agj " + Long.toUnsignedString(addr));
+		String addrStr = Long.toUnsignedString(addr);
+		cmdNoResponse("agj " + addrStr);
+		cmdNoResponse("afvj @" + addrStr);
 
-		JSONArray jsonArray;
-		try
+		FunctionContent content = null;
+		try (Reader reader = new InputStreamReader(r2Pipe.readReplyAsStream(),
+				StandardCharsets.UTF_8))
 		{
-			jsonArray = new JSONArray(jsonStr);
+			content = readFunctionContent(new JSONStreamReader(reader), addr);
 		}
 		catch (JSONException ex)
 		{
 			return null;
 		}
+		finally
+		{
+			// The reply to `afvj` has to be consumed in any case
+			String varsStr = r2Pipe.readUpToZeroByte();
+			if (content != null)
+				RadareFunctionContentCreator.addVariablesFromJSON(content,
+						parseVariables(varsStr));
+		}
+
+		return content;
+	}
 
-		if (jsonArray.length() != 1)
+	/**
+	 * `agj` returns an array, which must hold exactly one function.
+	 */
+
+	private FunctionContent readFunctionContent(JSONStreamReader jsonReader,
+			Long addr) throws InvalidRadareFunction
+	{
+		jsonReader.beginArray();
+		if (!jsonReader.hasNext())
 			throw new InvalidRadareFunction();
 
-		return jsonArray.getJSONObject(0);
+		FunctionContent content = RadareFunctionContentCreator
+				.createDetachedContentFromStream(jsonReader, addr);
+
+		if (jsonReader.hasNext())
+			throw new InvalidRadareFunction();
+
+		return content;
+	}
+
+	/**
+	 * Depending on its version, radare returns variables either as an
+	 * array, or as an object holding arrays for stack-, base pointer- and
+	 * register-based variables. We always return a flat array.
+	 */
+
+	private JSONArray parseVariables(String varsStr)
+	{
+		JSONArray retval = new JSONArray();
+		Object vars;
+		try
+		{
+			vars = new JSONTokener(varsStr).nextValue();
+		}
+		catch (JSONException ex)
+		{
+			return retval;
+		}
+
+		if (vars instanceof JSONArray)
+			return (JSONArray) vars;
+
+		if (!(vars instanceof JSONObject))
+			return retval;
+
+		JSONObject varsObj = (JSONObject) vars;
+		for (String kind : Arrays.asList("bp", "sp", "reg"))
+		{
+			JSONArray varsOfKind = varsObj.optJSONArray(kind);
+			if (varsOfKind == null)
+				continue;
+			for (int i = 0; i < varsOfKind.length(); i++)
+				retval.put(varsOfKind.get(i));
+		}
+		return retval;
+	}
+
+	/**
+	 * Issues `cmd` and returns a reader over the reply, so that JSON replies
+	 * can be parsed without first building a String of the entire reply.
+	 */
+
+	private Reader openReplyReader(String cmd) throws IOException
+	{
+		commandCache.commandIssued(cmd);
+		InputStream stream = r2Pipe.cmdAsStream(cmd);
+		return new InputStreamReader(stream, StandardCharsets.UTF_8);
 	}
 
 	public String getDisassemblyForFunctionAt(Long addr)
@@ -108,23 +401,115 @@ public class Radare
 		// It would be much nicer if we could obtain an array representing the
 		// disassembly as opposed to a single string.
 		String cmd = "pdf @" + Long.toUnsignedString(addr);
-		return r2Pipe.cmd(cmd);
+		return cmd(cmd);
 	}
 
 	public String getDisassemblyForInstructionAt(Long addr) throws IOException
 	{
 		String cmd = "pd 1 @" + Long.toUnsignedString(addr);
-		return r2Pipe.cmd(cmd).trim();
+		return cmd(cmd).trim();
+	}
+
+	/**
+	 * Batch version of `getDisassemblyForInstructionAt`. All commands are
+	 * pipelined, so this costs about one round-trip instead of one per
+	 * address.
+	 */
+
+	public List<String> getDisassemblyForInstructionsAt(List<Long> addrs)
+			throws IOException
+	{
+		List<String> cmds = new ArrayList<String>(addrs.size());
+		for (Long addr : addrs)
+			cmds.add("pd 1 @" + Long.toUnsignedString(addr));
+
+		List<String> replies = cmdBatch(cmds);
+		for (int i = 0; i < replies.size(); i++)
+			replies.set(i, replies.get(i).trim());
+		return replies;
+	}
+
+	/**
+	 * Issues all `cmds` without waiting for individual replies and returns
+	 * the replies in the order of `cmds`.
+	 */
+
+	public List<String> cmdBatch(List<String> cmds) throws IOException
+	{
+		for (String cmd : cmds)
+		{
+			if (!CommandCache.isCacheable(cmd))
+			{
+				commandCache.commandIssued(cmd);
+				return r2Pipe.cmdPipelined(cmds);
+			}
+		}
+
+		// Only commands that are not cached are sent to radare
+		List<String> replies = new ArrayList<String>(cmds.size());
+		List<String> misses = new ArrayList<String>();
+		for (String cmd : cmds)
+		{
+			String reply = commandCache.get(cmd);
+			replies.add(reply);
+			if (reply == null)
+				misses.add(cmd);
+		}
+
+		if (misses.isEmpty())
+			return replies;
+
+		Iterator<String> missReplies = r2Pipe.cmdPipelined(misses).iterator();
+		for (int i = 0; i < replies.size(); i++)
+		{
+			if (replies.get(i) != null)
+				continue;
+			String reply = missReplies.next();
+			commandCache.put(cmds.get(i), reply);
+			replies.set(i, reply);
+		}
+		return replies;
+	}
+
+	/**
+	 * Sends `cmd` to radare unless its reply is cached, see `CommandCache`.
+	 */
+
+	private String cmd(String cmd) throws IOException
+	{
+		if (!CommandCache.isCacheable(cmd))
+		{
+			commandCache.commandIssued(cmd);
+			return r2Pipe.cmd(cmd);
+		}
+
+		String reply = commandCache.get(cmd);
+		if (reply == null)
+		{
+			reply = r2Pipe.cmd(cmd);
+			commandCache.put(cmd, reply);
+		}
+		return reply;
+	}
+
+	private void cmdNoResponse(String cmd) throws IOException
+	{
+		commandCache.commandIssued(cmd);
+		r2Pipe.cmdNoResponse(cmd);
 	}
 
 	public void shutdown() throws Exception
 	{
+		logger.info("Command cache: {} hits, {} misses ({} % hit rate), {} invalidations",
+				commandCache.getHits(), commandCache.getMisses(),
+				Math.round(commandCache.getHitRate() * 100),
+				commandCache.getInvalidations());
 		r2Pipe.quit();
 	}
 
 	public void askForFlags() throws IOException
 	{
-		r2Pipe.cmdNoResponse("f");
+		cmdNoResponse("f");
 	}
 
 	public Flag getNextFlag() throws IOException
@@ -159,7 +544,7 @@ public class Radare
 
 	public void askForCrossReferences() throws IOException
 	{
-		r2Pipe.cmdNoResponse("ax");
+		cmdNoResponse("ax");
 		// skip first line
 		r2Pipe.readNextLine();
 	}
@@ -181,29 +566,29 @@ public class Radare
 
 	public void enableEsil() throws IOException
 	{
-		r2Pipe.cmd("e asm.esil=true");
+		cmd("e asm.esil=true");
 	}
 
 	public void disableEsil() throws IOException
 	{
-		r2Pipe.cmd("e asm.esil=false");
+		cmd("e asm.esil=false");
 	}
 
 	public void resetEsilState() throws IOException
 	{
-		r2Pipe.cmd("ar0");
-		r2Pipe.cmd("aei");
-		r2Pipe.cmd("aeim");
+		cmd("ar0");
+		cmd("aei");
+		cmd("aeim");
 	}
 
 	public String runEsilCode(String esilCode) throws IOException
 	{
-		return r2Pipe.cmd(String.format("\"ae %s\"", esilCode));
+		return cmd(String.format("\"ae %s\"", esilCode));
 	}
 
 	public String getRegisterValue(String registerStr) throws IOException
 	{
-		return r2Pipe.cmd(String.format("ar %s", registerStr));
+		return cmd(String.format("ar %s", registerStr));
 	}
 
 	private List<Xref> createXrefsFromLine(String line)
@@ -260,10 +645,46 @@ public class Radare
 		return cmdAndSplitResultAtWhitespace(cmd);
 	}
 
+	/**
+	 * Batch version of `getRegistersWritten`, see `cmdBatch`.
+	 */
+
+	public List<List<String>> getRegistersWritten(List<Long> addrs) throws IOException
+	{
+		return cmdBatchAndSplitResultsAtWhitespace("aeaw @ ", addrs);
+	}
+
+	/**
+	 * Batch version of `getRegistersRead`, see `cmdBatch`.
+	 */
+
+	public List<List<String>> getRegistersRead(List<Long> addrs) throws IOException
+	{
+		return cmdBatchAndSplitResultsAtWhitespace("aear @ ", addrs);
+	}
+
+	private List<List<String>> cmdBatchAndSplitResultsAtWhitespace(
+			String cmdPrefix, List<Long> addrs) throws IOException
+	{
+		List<String> cmds = new ArrayList<String>(addrs.size());
+		for (Long addr : addrs)
+			cmds.add(cmdPrefix + Long.toUnsignedString(addr));
+
+		List<List<String>> retval = new ArrayList<List<String>>(addrs.size());
+		for (String reply : cmdBatch(cmds))
+			retval.add(splitAtWhitespace(reply));
+		return retval;
+	}
+
 
 	private List<String> cmdAndSplitResultAtWhitespace(String cmd) throws IOException
 	{
-		String registers = r2Pipe.cmd(cmd).trim();
+		return splitAtWhitespace(cmd(cmd));
+	}
+
+	private List<String> splitAtWhitespace(String reply)
+	{
+		String registers = reply.trim();
 		if(registers.length() == 0)
 			return new LinkedList<String>();
 
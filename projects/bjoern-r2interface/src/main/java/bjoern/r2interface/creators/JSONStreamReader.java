@@ -0,0 +1,155 @@
+package bjoern.r2interface.creators;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * A pull parser for large JSON replies of radare such as `aflj` or `agj`.
+ *
+ * Arrays and objects can be entered via `beginArray`/`beginObject` and
+ * traversed element by element via `hasNext`, so that only the element
+ * currently being processed is held in memory. Elements themselves are
+ * returned as regular org.json objects via `nextValue`.
+ *
+ * Example:
+ *
+ * reader.beginArray();
+ * while (reader.hasNext())
+ *     process(reader.nextObject());
+ */
+
+public class JSONStreamReader
+{
+	private final JSONTokener tokener;
+
+	/**
+	 * For each array or object entered, whether its first element is
+	 * still to be read.
+	 */
+
+	private final Deque<Boolean> atFirstElement = new ArrayDeque<Boolean>();
+
+	public JSONStreamReader(Reader reader)
+	{
+		this.tokener = new JSONTokener(reader);
+	}
+
+	public JSONStreamReader(String str)
+	{
+		this.tokener = new JSONTokener(str);
+	}
+
+	public void beginArray() throws JSONException
+	{
+		expect('[');
+		atFirstElement.push(true);
+	}
+
+	public void beginObject() throws JSONException
+	{
+		expect('{');
+		atFirstElement.push(true);
+	}
+
+	/**
+	 * Returns true if the innermost array or object entered has another
+	 * element. Otherwise, consumes the closing bracket and returns false.
+	 */
+
+	public boolean hasNext() throws JSONException
+	{
+		if (atFirstElement.isEmpty())
+			throw tokener.syntaxError("Not inside of an array or object");
+
+		char c = tokener.nextClean();
+		if (c == ']' || c == '}')
+		{
+			atFirstElement.pop();
+			return false;
+		}
+
+		if (atFirstElement.peek())
+		{
+			atFirstElement.pop();
+			atFirstElement.push(false);
+			tokener.back();
+			return true;
+		}
+
+		if (c != ',')
+			throw tokener.syntaxError("Expected ',' or closing bracket");
+		return true;
+	}
+
+	/**
+	 * Reads the key of the next member of an object including the
+	 * subsequent colon. Must be preceded by a call to `hasNext`.
+	 */
+
+	public String nextKey() throws JSONException
+	{
+		char c = tokener.nextClean();
+		if (c != '"' && c != '\'')
+			throw tokener.syntaxError("Expected a key");
+		String key = tokener.nextString(c);
+		expect(':');
+		return key;
+	}
+
+	/**
+	 * Returns the next value, i.e., a string, number, boolean, null,
+	 * JSONObject or JSONArray.
+	 */
+
+	public Object nextValue() throws JSONException
+	{
+		return tokener.nextValue();
+	}
+
+	public JSONObject nextObject() throws JSONException
+	{
+		Object value = nextValue();
+		if (!(value instanceof JSONObject))
+			throw tokener.syntaxError("Expected an object");
+		return (JSONObject) value;
+	}
+
+	public JSONArray nextArray() throws JSONException
+	{
+		Object value = nextValue();
+		if (!(value instanceof JSONArray))
+			throw tokener.syntaxError("Expected an array");
+		return (JSONArray) value;
+	}
+
+	public void skipValue() throws JSONException
+	{
+		nextValue();
+	}
+
+	/**
+	 * Returns the first character of the next value without consuming it,
+	 * e.g., '[' if the next value is an array.
+	 */
+
+	public char peek() throws JSONException
+	{
+		char c = tokener.nextClean();
+		tokener.back();
+		return c;
+	}
+
+	private void expect(char expected) throws JSONException
+	{
+		char c = tokener.nextClean();
+		if (c != expected)
+			throw tokener.syntaxError("Expected '" + expected + "'");
+	}
+
+}
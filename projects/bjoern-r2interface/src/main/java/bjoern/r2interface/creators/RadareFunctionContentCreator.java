@@ -1,112 +1,173 @@
 package bjoern.r2interface.creators;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import bjoern.nodeStore.NodeKey;
 import bjoern.nodeStore.NodeStore;
+import bjoern.nodeStore.NodeType;
 import bjoern.nodeStore.NodeTypes;
-import bjoern.r2interface.exceptions.BasicBlockWithoutAddress;
+import bjoern.structures.annotations.VariableOrArgument;
 import bjoern.structures.edges.EdgeTypes;
 import bjoern.structures.interpretations.BasicBlock;
+import bjoern.structures.interpretations.DisassembledFunction;
+import bjoern.structures.interpretations.DisassemblyLine;
 import bjoern.structures.interpretations.FunctionContent;
 
 public class RadareFunctionContentCreator
 {
 
 	public static FunctionContent createContentFromJSON(
+			JSONObject jsonFunctionContent, Long address, NodeStore nodeStore)
+	{
+		FunctionContent content = createDetachedContentFromJSON(
+				jsonFunctionContent, address);
+		registerBasicBlocksInNodeStore(content, nodeStore);
+		return content;
+	}
+
+	/**
+	 * Creates the content of a function without consulting the NodeStore.
+	 * Basic blocks are always created from `jsonFunctionContent`, and it is
+	 * up to the caller to register them via `registerBasicBlocksInNodeStore`
+	 * later on. This allows function contents to be created concurrently,
+	 * while the NodeStore is only touched by a single thread.
+	 */
+
+	public static FunctionContent createDetachedContentFromJSON(
 			JSONObject jsonFunctionContent, Long address)
 	{
-		FunctionContent content = new FunctionContent(address);
+		FunctionContent content = createEmptyContent(address);
 
-		initFunctionProperties(content, jsonFunctionContent);
-		createBasicBlocks(content, jsonFunctionContent);
-		createEdges(content, jsonFunctionContent);
+		JSONArray blocks = jsonFunctionContent.getJSONArray("blocks");
+		int numberOfBlocks = blocks.length();
+		for (int i = 0; i < numberOfBlocks; i++)
+			addBlockFromJSON(content, blocks.getJSONObject(i));
+
+		addVariablesFromJSON(content, jsonFunctionContent.optJSONArray("vars"));
 
 		return content;
 	}
 
-	private static void initFunctionProperties(FunctionContent content,
-			JSONObject jsonFunctionContent)
-	{
-		// TODO: Any properties we cannot obtain from the function overview can
-		// be added here.
-	}
+	/**
+	 * Streaming version of `createDetachedContentFromJSON`: reads a single
+	 * function object as contained in the reply to `agj` from `reader`.
+	 * Basic blocks, their edges and their instructions are created as soon
+	 * as the respective block has been read, so only a single block is
+	 * held in memory as JSON at any time.
+	 */
 
-	private static void createBasicBlocks(FunctionContent content,
-			JSONObject jsonFunctionContent)
+	public static FunctionContent createDetachedContentFromStream(
+			JSONStreamReader reader, Long address)
 	{
-		JSONArray blocks = jsonFunctionContent.getJSONArray("blocks");
-		int numberOfBlocks = blocks.length();
+		FunctionContent content = createEmptyContent(address);
 
-		for (int i = 0; i < numberOfBlocks; i++)
+		reader.beginObject();
+		while (reader.hasNext())
 		{
-			JSONObject block = blocks.getJSONObject(i);
-			try
-			{
-				createBasicBlock(content, block);
-			}
-			catch (BasicBlockWithoutAddress e)
+			String key = reader.nextKey();
+			if (key.equals("blocks") && reader.peek() == '[')
 			{
-				System.err.println("Skipping basic block without address");
-				continue;
+				reader.beginArray();
+				while (reader.hasNext())
+					addBlockFromJSON(content, reader.nextObject());
 			}
+			else if (key.equals("vars") && reader.peek() == '[')
+				addVariablesFromJSON(content, reader.nextArray());
+			else
+				reader.skipValue();
 		}
+
+		return content;
 	}
 
-	private static void createBasicBlock(FunctionContent content,
-			JSONObject jsonBlock) throws BasicBlockWithoutAddress
-	{
+	/**
+	 * Adds variables and arguments as contained in the reply to `afvj`.
+	 */
 
-		Long address = JSONUtils.getLongFromObject(jsonBlock, "offset");
-		if (address == null)
-			throw new BasicBlockWithoutAddress();
-
-		BasicBlock node = createBlockOrTakeExisting(jsonBlock, address);
-		content.registerBasicBlock(address, node);
+	public static void addVariablesFromJSON(FunctionContent content,
+			JSONArray vars)
+	{
+		if (vars == null)
+			return;
 
+		for (int i = 0; i < vars.length(); i++)
+		{
+			VariableOrArgument varOrArg = RadareVariableOrArgumentCreator
+					.createFromJSON(vars.getJSONObject(i));
+			content.addVariableOrArgument(varOrArg);
+		}
 	}
 
-	private static BasicBlock createBlockOrTakeExisting(JSONObject block,
-			Long address)
+	/**
+	 * Replaces basic blocks of `content` by blocks already present in
+	 * `nodeStore` and adds all remaining blocks to the store.
+	 */
+
+	public static void registerBasicBlocksInNodeStore(FunctionContent content,
+			NodeStore nodeStore)
 	{
-		BasicBlock node;
-		node = (BasicBlock) NodeStore.getNodeForAddressAndType(address,
-				NodeTypes.BASIC_BLOCK);
+		List<BasicBlock> blocks = new ArrayList<BasicBlock>(
+				content.getBasicBlocks());
 
-		if (node == null)
+		for (BasicBlock block : blocks)
 		{
-			node = RadareBasicBlockCreator.createFromJSON(block);
-			NodeStore.addNode(node);
+			Long address = block.getAddress();
+			BasicBlock node = (BasicBlock) nodeStore.getNodeForAddressAndType(
+					address, NodeType.BASIC_BLOCK);
+
+			if (node == null)
+				nodeStore.addNode(block);
+			else
+				content.addBasicBlock(address, node);
 		}
-		return node;
 	}
 
-	private static void createEdges(FunctionContent content,
-			JSONObject jsonFunctionContent)
+	private static FunctionContent createEmptyContent(Long address)
 	{
-		JSONArray blocks = jsonFunctionContent.getJSONArray("blocks");
-		int numberOfBlocks = blocks.length();
-		for (int i = 0; i < numberOfBlocks; i++)
-		{
-			JSONObject jsonBlock = blocks.getJSONObject(i);
-			createEdgesForBlock(content, jsonBlock);
-		}
+		FunctionContent content = new FunctionContent(address);
+
+		DisassembledFunction disassembledFunction = new DisassembledFunction();
+		disassembledFunction.setFuncAddress(address);
+		content.setDisassembledFunction(disassembledFunction);
+
+		return content;
 	}
 
-	private static void createEdgesForBlock(FunctionContent content,
+	/**
+	 * Creates the basic block, its outgoing edges and its disassembly lines
+	 * (including ESIL and comments) in a single pass over `jsonBlock`.
+	 */
+
+	private static void addBlockFromJSON(FunctionContent content,
 			JSONObject jsonBlock)
 	{
+		Long address = JSONUtils.getLongFromObject(jsonBlock, "offset");
+		if (address == null)
+		{
+			System.err.println("Skipping basic block without address");
+			return;
+		}
+
+		BasicBlock node = RadareBasicBlockCreator.createFromJSON(jsonBlock);
+		content.registerBasicBlock(address, node);
 
+		createEdgesForBlock(content, node.createKey(), jsonBlock);
+		createDisassemblyLinesForBlock(content, jsonBlock);
+	}
 
-		NodeKey fromBlockKey = getBasicBlockForJSONBlock(jsonBlock).createKey();
+	private static void createEdgesForBlock(FunctionContent content,
+			NodeKey fromBlockKey, JSONObject jsonBlock)
+	{
 		NodeKey jumpBlockKey = getJumpTargetKey(jsonBlock, "jump");
 		NodeKey failBlockKey = getJumpTargetKey(jsonBlock, "fail");
 
 		if(jumpBlockKey == null)
 			return;
 
-
 		if (failBlockKey == null)
 			content.addEdge(fromBlockKey, jumpBlockKey , EdgeTypes.CFLOW);
 		else
@@ -114,21 +175,22 @@ public class RadareFunctionContentCreator
 			content.addEdge(fromBlockKey, jumpBlockKey, EdgeTypes.CFLOW_TRUE);
 			content.addEdge(fromBlockKey, failBlockKey, EdgeTypes.CFLOW_FALSE);
 		}
-
 	}
 
-	private static BasicBlock getBasicBlockForJSONBlock(JSONObject block)
+	private static void createDisassemblyLinesForBlock(FunctionContent content,
+			JSONObject jsonBlock)
 	{
-		Long blockAddr = JSONUtils.getLongFromObject(block, "offset");
-		assert (blockAddr != null);
-
-		BasicBlock fromBlock = (BasicBlock) NodeStore.getNodeForAddressAndType(
-				blockAddr, NodeTypes.BASIC_BLOCK);
-
-		if (fromBlock == null)
-			throw new RuntimeException("From-node not in store.");
+		JSONArray ops = jsonBlock.optJSONArray("ops");
+		if (ops == null)
+			return;
 
-		return fromBlock;
+		for (int i = 0; i < ops.length(); i++)
+		{
+			DisassemblyLine line = RadareInstructionCreator
+					.createDisassemblyLineFromJSON(ops.getJSONObject(i));
+			if (line.getAddr() != null)
+				content.addDisassemblyLine(line);
+		}
 	}
 
 	private static NodeKey getJumpTargetKey(JSONObject block, String type)
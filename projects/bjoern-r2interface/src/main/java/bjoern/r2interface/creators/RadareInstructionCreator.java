@@ -1,5 +1,8 @@
 package bjoern.r2interface.creators;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 import org.json.JSONObject;
 
 import bjoern.structures.interpretations.DisassemblyLine;
@@ -21,6 +24,47 @@ public class RadareInstructionCreator
 		return retval;
 	}
 
+	/**
+	 * Creates a disassembly line from an instruction as contained in the
+	 * reply to `agj`/`pdfj`. Comments are base64-encoded by radare.
+	 */
+
+	public static DisassemblyLine createDisassemblyLineFromJSON(JSONObject jsonObj)
+	{
+		DisassemblyLine line = new DisassemblyLine();
+
+		line.setAddr(JSONUtils.getLongFromObject(jsonObj, "offset"));
+
+		String disasm = JSONUtils.getStringFromObject(jsonObj, "disasm");
+		if (disasm == null)
+			disasm = JSONUtils.getStringFromObject(jsonObj, "opcode");
+		if (disasm != null)
+			line.setInstruction(disasm.trim());
+
+		String comment = JSONUtils.getStringFromObject(jsonObj, "comment");
+		if (comment != null)
+			line.setComment(decodeComment(comment));
+
+		line.setEsil(JSONUtils.getStringFromObject(jsonObj, "esil"));
+		line.setType(JSONUtils.getStringFromObject(jsonObj, "type"));
+
+		return line;
+	}
+
+	private static String decodeComment(String comment)
+	{
+		try
+		{
+			byte[] decoded = Base64.getDecoder().decode(comment);
+			return new String(decoded, StandardCharsets.UTF_8).trim();
+		}
+		catch (IllegalArgumentException ex)
+		{
+			// older versions of radare do not encode comments
+			return comment.trim();
+		}
+	}
+
 	public static Instruction createFromDisassemblyLine(DisassemblyLine line)
 	{
 		Instruction retval = new Instruction();
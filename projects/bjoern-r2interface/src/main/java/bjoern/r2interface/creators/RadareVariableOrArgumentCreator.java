@@ -0,0 +1,56 @@
+package bjoern.r2interface.creators;
+
+import org.json.JSONObject;
+
+import bjoern.nodeStore.NodeTypes;
+import bjoern.structures.annotations.VariableOrArgument;
+
+public class RadareVariableOrArgumentCreator
+{
+
+	/**
+	 * Creates a variable or argument from an entry of the reply to `afvj`.
+	 * Depending on radare's version, the location of the variable is either
+	 * given as a string (e.g., "rbp-0x8") or as an object holding base
+	 * register and offset.
+	 */
+
+	public static VariableOrArgument createFromJSON(JSONObject jsonVar)
+	{
+		VariableOrArgument retval = new VariableOrArgument();
+
+		retval.setType(getVarOrArg(jsonVar));
+		retval.setVarType(JSONUtils.getStringFromObject(jsonVar, "type"));
+		retval.setName(JSONUtils.getStringFromObject(jsonVar, "name"));
+		retval.setRegPlusOffset(getRegPlusOffset(jsonVar));
+
+		return retval;
+	}
+
+	private static String getVarOrArg(JSONObject jsonVar)
+	{
+		String kind = JSONUtils.getStringFromObject(jsonVar, "kind");
+		if ("var".equals(kind))
+			return NodeTypes.LOCAL_VAR;
+		// register-based variables are arguments passed in registers
+		return NodeTypes.ARG;
+	}
+
+	private static String getRegPlusOffset(JSONObject jsonVar)
+	{
+		Object ref = jsonVar.opt("ref");
+		if (!(ref instanceof JSONObject))
+			return (ref == null) ? null : ref.toString();
+
+		JSONObject refObj = (JSONObject) ref;
+		String base = JSONUtils.getStringFromObject(refObj, "base");
+		Long offset = JSONUtils.getLongFromObject(refObj, "offset");
+		if (offset == null)
+			return base;
+
+		if (offset < 0)
+			return base + "-0x" + Long.toHexString(-offset);
+		return base + "+0x" + Long.toHexString(offset);
+	}
+
+}
@@ -1,5 +1,6 @@
 package bjoern.structures.interpretations;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -38,6 +39,11 @@ public class DisassembledFunction
 		return disassembly.getLineForAddr(addr);
 	}
 
+	public Collection<DisassemblyLine> getLines()
+	{
+		return disassembly.getLines();
+	}
+
 	public long getAddress()
 	{
 		return this.funcAddress;
@@ -1,5 +1,6 @@
 package bjoern.structures.interpretations;
 
+import java.util.Collection;
 import java.util.HashMap;
 
 public class Disassembly {
@@ -16,4 +17,9 @@ public class Disassembly {
 		return addrToLine.get(addr);
 	}
 
+	public Collection<DisassemblyLine> getLines()
+	{
+		return addrToLine.values();
+	}
+
 }
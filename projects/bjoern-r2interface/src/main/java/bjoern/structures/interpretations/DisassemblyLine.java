@@ -6,6 +6,8 @@ public class DisassemblyLine
 	private Long addr;
 	private String instruction;
 	private String comment;
+	private String esil;
+	private String type;
 
 	public void setAddr(Long addr)
 	{
@@ -22,6 +24,21 @@ public class DisassemblyLine
 		this.comment = comment;
 	}
 
+	public void setEsil(String esil)
+	{
+		this.esil = esil;
+	}
+
+	/**
+	 * Sets the type of operation as determined by radare, e.g., "call",
+	 * "ucall" or "jmp".
+	 */
+
+	public void setType(String type)
+	{
+		this.type = type;
+	}
+
 	public Long getAddr()
 	{
 		return addr;
@@ -37,4 +54,19 @@ public class DisassemblyLine
 		return comment;
 	}
 
+	public String getEsil()
+	{
+		return esil;
+	}
+
+	public String getType()
+	{
+		return type;
+	}
+
+	public boolean isCall()
+	{
+		return type != null && type.contains("call");
+	}
+
 }
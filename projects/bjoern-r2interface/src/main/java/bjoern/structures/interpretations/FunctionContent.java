@@ -15,7 +15,6 @@ public class FunctionContent
 	HashMap<Long, BasicBlock> basicBlocks = new HashMap<Long, BasicBlock>();
 	List<DirectedEdge> edges = new LinkedList<DirectedEdge>();
 	DisassembledFunction disassembledFunction = new DisassembledFunction();
-	private DisassembledFunction disassembledEsilFunction = new DisassembledFunction();
 
 	public FunctionContent(long functionAddr)
 	{
@@ -42,9 +41,9 @@ public class FunctionContent
 		return disassembledFunction.getLineForAddr(addr);
 	}
 
-	public DisassemblyLine getDisassemblyEsilLineForAddr(long addr)
+	public Collection<DisassemblyLine> getDisassemblyLines()
 	{
-		return disassembledEsilFunction.getLineForAddr(addr);
+		return disassembledFunction.getLines();
 	}
 
 	public List<VariableOrArgument> getVariablesAndArguments()
@@ -81,14 +80,19 @@ public class FunctionContent
 	}
 
 
-	public void setDisassembledFunction(DisassembledFunction func)
+	public void addDisassemblyLine(DisassemblyLine line)
 	{
-		disassembledFunction = func;
+		disassembledFunction.addLine(line);
 	}
 
-	public void setDisassembledEsilFunction(DisassembledFunction func)
+	public void addVariableOrArgument(VariableOrArgument varOrArg)
 	{
-		disassembledEsilFunction = func;
+		disassembledFunction.addVarOrArg(varOrArg);
+	}
+
+	public void setDisassembledFunction(DisassembledFunction func)
+	{
+		disassembledFunction = func;
 	}
 
 	
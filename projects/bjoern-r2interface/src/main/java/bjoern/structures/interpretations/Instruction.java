@@ -23,7 +23,7 @@ public class Instruction extends Node
 		this.stringRepr = stringRepr;
 	}
 
-	public Object getBytes()
+	public String getBytes()
 	{
 		return this.bytes;
 	}
@@ -0,0 +1,110 @@
+package bjoern.nodeStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NodeStoreTests
+{
+
+	private static Node node(long address, String type)
+	{
+		Node node = new Node();
+		node.setAddr(address);
+		node.setType(type);
+		return node;
+	}
+
+	@Test
+	public void testLongNodeMapMatchesHashMap()
+	{
+		Random random = new Random(42);
+		LongNodeMap map = new LongNodeMap();
+		Map<Long, Node> expected = new HashMap<Long, Node>();
+
+		for (int i = 0; i < 100000; i++)
+		{
+			// aligned and negative addresses stress the hash function
+			long address = (random.nextInt(50000) - 1000) * 16L;
+			Node node = node(address, NodeTypes.INSTRUCTION);
+			assertSame(expected.put(address, node), map.put(address, node));
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Node> entry : expected.entrySet())
+			assertSame(entry.getValue(), map.get(entry.getKey()));
+		assertNull(map.get(1));
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(0));
+	}
+
+	@Test
+	public void testNodesAreKeptPerType()
+	{
+		NodeStore store = new NodeStore();
+		Node block = node(4096, NodeTypes.BASIC_BLOCK);
+		Node instruction = node(4096, NodeTypes.INSTRUCTION);
+		Node other = node(4096, "Other");
+		store.addNode(block);
+		store.addNode(instruction);
+		store.addNode(other);
+
+		assertSame(block, store.getNodeForAddressAndType(4096, NodeType.BASIC_BLOCK));
+		// type strings need not be the constants of NodeTypes
+		assertSame(instruction, store.getNodeForAddressAndType(4096,
+				new String(NodeTypes.INSTRUCTION)));
+		assertSame(other, store.getNodeForAddressAndType(4096, "Other"));
+		assertNull(store.getNodeForAddressAndType(4097, NodeType.BASIC_BLOCK));
+		assertNull(store.getNodeForAddressAndType(4096, NodeType.FUNCTION));
+		assertEquals(3, store.size());
+
+		store.clearCache();
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	public void testTypeNamesMatchNodeTypes()
+	{
+		// variables and arguments are typed "var" and "arg" by
+		// RadareVariableOrArgumentCreator and in packed node keys
+		assertEquals("var", NodeType.LOCAL_VAR.getTypeName());
+		assertEquals("arg", NodeType.ARG.getTypeName());
+		assertSame(NodeType.LOCAL_VAR, NodeType.fromTypeName("var"));
+		assertSame(NodeType.ARG, NodeType.fromTypeName("arg"));
+		assertNull(NodeType.fromTypeName("Local"));
+
+		for (NodeType type : NodeType.values())
+			assertSame(type, NodeType.fromTypeName(
+					new String(type.getTypeName())));
+	}
+
+	@Test
+	public void testVariablesAreKeptPerType()
+	{
+		NodeStore store = new NodeStore();
+		Node var = node(4096, "var");
+		Node arg = node(4096, "arg");
+		store.addNode(var);
+		store.addNode(arg);
+
+		assertSame(var, store.getNodeForAddressAndType(4096, NodeType.LOCAL_VAR));
+		assertSame(arg, store.getNodeForAddressAndType(4096, NodeType.ARG));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testDuplicateNodesAreRejected()
+	{
+		NodeStore store = new NodeStore();
+		store.addNode(node(4096, NodeTypes.BASIC_BLOCK));
+		store.addNode(node(4096, NodeTypes.BASIC_BLOCK));
+	}
+
+}
@@ -0,0 +1,69 @@
+package bjoern.r2interface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CommandCacheTests
+{
+
+	@Test
+	public void testCacheableCommands()
+	{
+		assertTrue(CommandCache.isCacheable("aear @ 4096"));
+		assertTrue(CommandCache.isCacheable("aeaw @ 4096"));
+		assertTrue(CommandCache.isCacheable("pd 1 @4096"));
+		assertTrue(CommandCache.isCacheable("e asm.arch"));
+
+		assertFalse(CommandCache.isCacheable("e asm.esil=true"));
+		assertFalse(CommandCache.isCacheable("pdf @4096"));
+		assertFalse(CommandCache.isCacheable("aei"));
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		CommandCache cache = new CommandCache();
+
+		assertNull(cache.get("aear @ 1"));
+		cache.put("aear @ 1", "rax");
+		assertEquals("rax", cache.get("aear @ 1"));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testReadOnlyCommandsKeepCache()
+	{
+		CommandCache cache = new CommandCache();
+		cache.put("e asm.arch", "x86");
+
+		cache.commandIssued("agj 4096");
+		cache.commandIssued("ar rax");
+		cache.commandIssued("pd 1 @1");
+
+		assertEquals("x86", cache.get("e asm.arch"));
+		assertEquals(0, cache.getInvalidations());
+	}
+
+	@Test
+	public void testStateChangingCommandsInvalidateCache()
+	{
+		CommandCache cache = new CommandCache();
+
+		for (String cmd : new String[] { "e asm.bits = 32", "Po project",
+				"af @4096", "aeim", "\"ae 1,rax,=\"" })
+		{
+			cache.put("e asm.arch", "x86");
+			cache.commandIssued(cmd);
+			assertNull(cmd, cache.get("e asm.arch"));
+		}
+
+		assertEquals(5, cache.getInvalidations());
+	}
+
+}
@@ -0,0 +1,94 @@
+package bjoern.r2interface;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class R2ReplyReaderTests
+{
+
+	private static R2ReplyReader readerFor(String str)
+	{
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		return new R2ReplyReader(new ByteArrayInputStream(bytes));
+	}
+
+	private static String readAll(InputStream stream) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[3];
+		int nRead;
+		while ((nRead = stream.read(b)) != -1)
+			out.write(b, 0, nRead);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testReadUpToZeroByte() throws IOException
+	{
+		R2ReplyReader reader = readerFor("first\nreply\0second\0");
+
+		assertEquals("first\nreply", reader.readUpToZeroByte());
+		assertEquals("second", reader.readUpToZeroByte());
+		assertEquals("", reader.readUpToZeroByte());
+	}
+
+	@Test
+	public void testReadNextLine() throws IOException
+	{
+		R2ReplyReader reader = readerFor("0x10 1 a\n0x20 1 b\n\0next\0");
+
+		assertEquals("0x10 1 a", reader.readNextLine());
+		assertEquals("0x20 1 b", reader.readNextLine());
+		assertEquals("", reader.readNextLine());
+		assertEquals("next", reader.readUpToZeroByte());
+	}
+
+	@Test
+	public void testMultiByteCharacters() throws IOException
+	{
+		R2ReplyReader reader = readerFor("str.grüße → €\0");
+		assertEquals("str.grüße → €", reader.readUpToZeroByte());
+	}
+
+	@Test
+	public void testReplyLargerThanBuffer() throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			sb.append(i % 10);
+		String reply = sb.toString();
+
+		R2ReplyReader reader = readerFor(reply + "\0" + reply + "\0");
+
+		assertEquals(reply, reader.readUpToZeroByte());
+		assertEquals(reply, reader.readReplyAsCharSequence().toString());
+	}
+
+	@Test
+	public void testReplyStream() throws IOException
+	{
+		R2ReplyReader reader = readerFor("[1,2,3]\0{}\0");
+
+		assertEquals("[1,2,3]", readAll(reader.openReplyStream()));
+		assertEquals("{}", reader.readReplyAsCharSequence().toString());
+	}
+
+	@Test
+	public void testUnreadPartOfReplyStreamIsSkipped() throws IOException
+	{
+		R2ReplyReader reader = readerFor("[1,2,3]\n\0next\0");
+
+		InputStream stream = reader.openReplyStream();
+		assertEquals('[', stream.read());
+		assertEquals("next", reader.readUpToZeroByte());
+		assertEquals(-1, stream.read());
+	}
+
+}
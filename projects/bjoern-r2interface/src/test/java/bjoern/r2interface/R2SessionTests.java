@@ -0,0 +1,112 @@
+package bjoern.r2interface;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class R2SessionTests
+{
+	private Path sessionFile;
+
+	@Before
+	public void createSessionFile() throws IOException
+	{
+		sessionFile = Files.createTempFile("r2session", ".gz");
+	}
+
+	@After
+	public void deleteSessionFile() throws IOException
+	{
+		Files.deleteIfExists(sessionFile);
+	}
+
+	private static byte[] bytes(String str)
+	{
+		return str.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A session standing in for radare while recording.
+	 */
+
+	private static R2Session createOriginalSession()
+	{
+		R2Session session = new R2Session();
+		session.addReply(R2Session.STARTUP, bytes("banner"));
+		session.addReply("e asm.bits", bytes("64\n"));
+		session.addReply("pd 1 @1", bytes("0x1 nop"));
+		session.addReply("pd 1 @2", bytes("0x2 ret"));
+		session.addReply("ar rax", bytes("0x0"));
+		session.addReply("ar rax", bytes("0x1"));
+		session.addReply("Ps /tmp/recording/radareProject", bytes(""));
+		return session;
+	}
+
+	private void record() throws Exception
+	{
+		R2Session.Writer writer = new R2Session.Writer(sessionFile);
+		R2Backend original = new R2ReplayBackend(createOriginalSession());
+		R2Pipe pipe = new R2Pipe(new R2RecordingBackend(original, writer, true));
+
+		pipe.cmd("e asm.bits");
+		pipe.cmdPipelined(Arrays.asList("pd 1 @1", "pd 1 @2"));
+		pipe.cmd("ar rax");
+		pipe.cmd("ar rax");
+		pipe.cmd("Ps /tmp/recording/radareProject");
+		pipe.quit();
+	}
+
+	@Test
+	public void testReplayRecordedSession() throws Exception
+	{
+		record();
+
+		R2Pipe pipe = new R2Pipe(new R2ReplayBackend(R2Session.load(sessionFile)));
+
+		assertEquals("64\n", pipe.cmd("e asm.bits"));
+		List<String> replies = pipe.cmdPipelined(Arrays.asList("pd 1 @2", "pd 1 @1"));
+		assertEquals("0x2 ret", replies.get(0));
+		assertEquals("0x1 nop", replies.get(1));
+	}
+
+	@Test
+	public void testRepeatedCommands() throws Exception
+	{
+		record();
+
+		R2Pipe pipe = new R2Pipe(new R2ReplayBackend(R2Session.load(sessionFile)));
+
+		assertEquals("0x0", pipe.cmd("ar rax"));
+		assertEquals("0x1", pipe.cmd("ar rax"));
+		assertEquals("0x1", pipe.cmd("ar rax"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownCommandsFail() throws Exception
+	{
+		record();
+
+		R2Pipe pipe = new R2Pipe(new R2ReplayBackend(R2Session.load(sessionFile)));
+		pipe.cmd("ar rbx");
+	}
+
+	@Test
+	public void testProjectsMayBeSavedElsewhere() throws Exception
+	{
+		record();
+
+		R2Pipe pipe = new R2Pipe(new R2ReplayBackend(R2Session.load(sessionFile)));
+		assertEquals("", pipe.cmd("Ps /tmp/replay/radareProject"));
+		pipe.quit();
+	}
+
+}
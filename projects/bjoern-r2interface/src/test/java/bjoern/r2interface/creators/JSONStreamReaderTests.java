@@ -0,0 +1,116 @@
+package bjoern.r2interface.creators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import bjoern.structures.edges.DirectedEdge;
+import bjoern.structures.edges.EdgeTypes;
+import bjoern.structures.interpretations.FunctionContent;
+
+public class JSONStreamReaderTests
+{
+
+	@Test
+	public void testArrayElements()
+	{
+		JSONStreamReader reader = new JSONStreamReader(
+				"[ {\"offset\": 1}, {\"offset\": 2} ]");
+
+		List<Long> offsets = new ArrayList<Long>();
+		reader.beginArray();
+		while (reader.hasNext())
+			offsets.add(reader.nextObject().getLong("offset"));
+
+		assertEquals(2, offsets.size());
+		assertEquals(Long.valueOf(1), offsets.get(0));
+		assertEquals(Long.valueOf(2), offsets.get(1));
+	}
+
+	@Test
+	public void testEmptyArray()
+	{
+		JSONStreamReader reader = new JSONStreamReader("[]");
+		reader.beginArray();
+		assertFalse(reader.hasNext());
+	}
+
+	@Test
+	public void testNestedObject()
+	{
+		JSONStreamReader reader = new JSONStreamReader(
+				"{\"name\": \"main\", \"blocks\": [[1], [2, 3]], \"size\": 10}");
+
+		List<String> keys = new ArrayList<String>();
+		int nBlocks = 0;
+
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String key = reader.nextKey();
+			keys.add(key);
+			if (key.equals("blocks"))
+			{
+				reader.beginArray();
+				while (reader.hasNext())
+				{
+					reader.nextArray();
+					nBlocks++;
+				}
+			}
+			else
+				reader.skipValue();
+		}
+
+		assertEquals(3, keys.size());
+		assertEquals("size", keys.get(2));
+		assertEquals(2, nBlocks);
+	}
+
+	@Test(expected = JSONException.class)
+	public void testMissingComma()
+	{
+		JSONStreamReader reader = new JSONStreamReader("[{} {}]");
+		reader.beginArray();
+		assertTrue(reader.hasNext());
+		reader.nextValue();
+		reader.hasNext();
+	}
+
+	@Test
+	public void testFunctionContentFromStream()
+	{
+		String agj = "{\"name\": \"main\", \"offset\": 16, \"blocks\": ["
+				+ "{\"offset\": 16, \"jump\": 32, \"fail\": 24, \"ops\": ["
+				+ "{\"offset\": 16, \"opcode\": \"test eax, eax\", \"esil\": \"eax,eax,&\"},"
+				+ "{\"offset\": 18, \"opcode\": \"je 0x20\", \"esil\": \"zf,?{,32,rip,=,}\"}]},"
+				+ "{\"offset\": 24, \"jump\": 32, \"ops\": ["
+				+ "{\"offset\": 24, \"opcode\": \"nop\", \"esil\": \"\"}]},"
+				+ "{\"offset\": 32, \"ops\": ["
+				+ "{\"offset\": 32, \"opcode\": \"ret\", \"esil\": \"rsp,[8],rip,=\"}]}"
+				+ "]}";
+
+		FunctionContent content = RadareFunctionContentCreator
+				.createDetachedContentFromStream(new JSONStreamReader(agj), 16L);
+
+		assertEquals(3, content.getBasicBlocks().size());
+		assertNotNull(content.getBasicBlockAtAddress(24));
+
+		List<DirectedEdge> edges = content.getEdges();
+		assertEquals(3, edges.size());
+		assertEquals(EdgeTypes.CFLOW_TRUE, edges.get(0).getType());
+		assertEquals(EdgeTypes.CFLOW_FALSE, edges.get(1).getType());
+		assertEquals(EdgeTypes.CFLOW, edges.get(2).getType());
+
+		assertEquals("zf,?{,32,rip,=,}",
+				content.getDisassemblyLineForAddr(18).getEsil());
+	}
+
+}
@@ -33,11 +33,11 @@ public class GraphOperations
 		graph.addEdge(0, src.getBaseVertex(), dst.getBaseVertex(), edgeType);
 	}
 
-	public static Vertex addNode(Graph graph, Map<String, String> properties)
+	public static Vertex addNode(Graph graph, Map<String, ?> properties)
 	{
 		Vertex newVertex = graph.addVertex(0);
 
-		for (Entry<String, String> entrySet : properties.entrySet())
+		for (Entry<String, ?> entrySet : properties.entrySet())
 		{
 			newVertex.setProperty(entrySet.getKey(), entrySet.getValue());
 		}
@@ -45,8 +45,15 @@ public class ImportCSVHandler extends OServerCommandAbstract
 		String[] urlParts = checkSyntax(
 				iRequest.url,
 				4,
-				"Syntax error: importcsv/<nodeFilename>/<edgeFilename>/<dbName>/");
+				"Syntax error: importcsv/<nodeFilename>/<edgeFilename>/<dbName>/[<numberOfWorkers>/[<fullTextIndex>/]]");
 
+		if (urlParts.length > 5)
+			return new ImportJob(urlParts[1], urlParts[2], urlParts[3],
+					Integer.parseInt(urlParts[4]),
+					Boolean.parseBoolean(urlParts[5]));
+		if (urlParts.length > 4)
+			return new ImportJob(urlParts[1], urlParts[2], urlParts[3],
+					Integer.parseInt(urlParts[4]));
 		return new ImportJob(urlParts[1], urlParts[2], urlParts[3]);
 	}
 
@@ -24,17 +24,18 @@ public class ImportCSVRunnable implements Runnable
 	public void run()
 	{
 
-		CSVBatchImporter csvBatchImporter = new CSVBatchImporter();
+		CSVBatchImporter csvBatchImporter = importJob.createImporter();
 
 		String nodeFilename = importJob.getNodeFilename();
 		String edgeFilename = importJob.getEdgeFilename();
 
-		String dbName = importJob.getDbName();
-
 		try
 		{
-			csvBatchImporter.setDbName(dbName);
-			csvBatchImporter.importCSVFiles(nodeFilename, edgeFilename);
+			// a sharded export is imported by passing its manifest
+			if (importJob.isSharded())
+				csvBatchImporter.importShards(nodeFilename);
+			else
+				csvBatchImporter.importCSVFiles(nodeFilename, edgeFilename);
 		}
 		catch (IOException e)
 		{
@@ -1,16 +1,86 @@
 package octopus.server.components.orientdbImporter;
 
+import orientdbimporter.CSVBatchImporter;
+import orientdbimporter.CSVParallelImporter;
+import orientdbimporter.ShardManifest;
+
 public class ImportJob
 {
 	private final String nodeFilename;
 	private final String edgeFilename;
 	private final String dbName;
+	private final int numberOfWorkers;
+	private final boolean fullTextIndex;
 
 	public ImportJob(String nodeFilename, String edgeFilename, String dbName)
+	{
+		this(nodeFilename, edgeFilename, dbName, 1);
+	}
+
+	/**
+	 * Creates a job that is imported by `numberOfWorkers` threads in
+	 * parallel, see `CSVParallelImporter`.
+	 */
+
+	public ImportJob(String nodeFilename, String edgeFilename, String dbName,
+			int numberOfWorkers)
+	{
+		this(nodeFilename, edgeFilename, dbName, numberOfWorkers, true);
+	}
+
+	/**
+	 * Creates a job that creates a full-text index on the imported nodes
+	 * only if `fullTextIndex` is set, see `VertexIndexes`.
+	 */
+
+	public ImportJob(String nodeFilename, String edgeFilename, String dbName,
+			int numberOfWorkers, boolean fullTextIndex)
 	{
 		this.nodeFilename = nodeFilename;
 		this.edgeFilename = edgeFilename;
 		this.dbName = dbName;
+		this.numberOfWorkers = numberOfWorkers;
+		this.fullTextIndex = fullTextIndex;
+	}
+
+	/**
+	 * Creates a job for rows that are not read from files but passed to
+	 * the importer directly, see `createImporter`.
+	 */
+
+	public ImportJob(String dbName, int numberOfWorkers, boolean fullTextIndex)
+	{
+		this(null, null, dbName, numberOfWorkers, fullTextIndex);
+	}
+
+	/**
+	 * Returns whether the node filename of this job is the manifest of a
+	 * sharded export, see `ShardManifest`.
+	 */
+
+	public boolean isSharded()
+	{
+		return nodeFilename != null
+				&& nodeFilename.endsWith(ShardManifest.FILENAME);
+	}
+
+	/**
+	 * Creates an importer into the database of this job with the options of
+	 * this job, which imports with several workers if requested. Shards are
+	 * always imported concurrently, one worker per shard.
+	 */
+
+	public CSVBatchImporter createImporter()
+	{
+		CSVBatchImporter importer;
+		if (numberOfWorkers > 1 || isSharded())
+			importer = new CSVParallelImporter(numberOfWorkers);
+		else
+			importer = new CSVBatchImporter();
+
+		importer.setDbName(dbName);
+		importer.setFullTextIndex(fullTextIndex);
+		return importer;
 	}
 
 	public String getNodeFilename()
@@ -29,4 +99,14 @@ public class ImportJob
 		return dbName;
 	}
 
+	public int getNumberOfWorkers()
+	{
+		return numberOfWorkers;
+	}
+
+	public boolean hasFullTextIndex()
+	{
+		return fullTextIndex;
+	}
+
 }
\ No newline at end of file
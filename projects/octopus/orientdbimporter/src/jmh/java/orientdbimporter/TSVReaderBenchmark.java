@@ -0,0 +1,140 @@
+package orientdbimporter;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.opencsv.CSVReader;
+
+/**
+ * Compares the rows per second read from a `nodes.csv` file by opencsv's
+ * `CSVReader`, as the importer used to read them, with `TSVReader`, both
+ * creating strings for all fields and only looking at command and key, as
+ * the importer does for rows of existing nodes. One operation reads one
+ * row; readers start over at the end of the file. Run with, e.g.,
+ * `gradle jmh -Pargs="TSVReaderBenchmark -p sizeMB=4096"` for a file of
+ * several GB, which is written once per fork. Rows are written as the
+ * exporter writes instructions.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TSVReaderBenchmark
+{
+	@Param({ "256" })
+	public int sizeMB;
+
+	private Path outputDir;
+	private Path nodeFile;
+
+	private CSVReader csvReader;
+	private TSVReader tsvReader;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		outputDir = Files.createTempDirectory("benchmark");
+		nodeFile = outputDir.resolve("nodes.csv");
+
+		long address = 0x8048000;
+		long size = 0;
+		try (BufferedWriter out = Files.newBufferedWriter(nodeFile,
+				StandardCharsets.UTF_8))
+		{
+			out.write("command\tkey\tnodeType\taddr\tchildNum\trepr\tcode"
+					+ "\tcomment\tesil\n");
+			while (size < sizeMB * 1024L * 1024L)
+			{
+				address += 2;
+				String line = CSVCommands.ADD + "\tInstr_" + address + "\tInstr\t"
+						+ address + "\t" + (address & 0xF)
+						+ "\tmov dword [ebp - 0xc], eax\t8945f4"
+						+ "\t\"; var int local_c, \"\"x\"\"\"\teax,0xc,ebp,-,=[4]\n";
+				out.write(line);
+				size += line.length();
+			}
+		}
+
+		csvReader = openCSVReader();
+		tsvReader = new TSVReader(nodeFile.toString());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		csvReader.close();
+		tsvReader.close();
+		Files.delete(nodeFile);
+		Files.delete(outputDir);
+	}
+
+	private CSVReader openCSVReader() throws IOException
+	{
+		return new CSVReader(new InputStreamReader(
+				new FileInputStream(nodeFile.toFile()), StandardCharsets.UTF_8),
+				'\t');
+	}
+
+	@Benchmark
+	public int csvReader() throws IOException
+	{
+		String[] row = csvReader.readNext();
+		if (row == null)
+		{
+			csvReader.close();
+			csvReader = openCSVReader();
+			row = csvReader.readNext();
+		}
+		return row.length;
+	}
+
+	@Benchmark
+	public int tsvReaderRow() throws IOException
+	{
+		String[] row = tsvReader.readNext();
+		if (row == null)
+		{
+			tsvReader.close();
+			tsvReader = new TSVReader(nodeFile.toString());
+			row = tsvReader.readNext();
+		}
+		return row.length;
+	}
+
+	@Benchmark
+	public long tsvReaderSlices() throws IOException
+	{
+		if (!tsvReader.next())
+		{
+			tsvReader.close();
+			tsvReader = new TSVReader(nodeFile.toString());
+			tsvReader.next();
+		}
+		if (!tsvReader.fieldEquals(0, CSVCommands.ADD))
+			return 0;
+		return NodeKeys.pack(tsvReader.getChars(1));
+	}
+
+}
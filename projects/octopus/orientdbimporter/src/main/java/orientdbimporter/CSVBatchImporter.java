@@ -3,7 +3,6 @@ package orientdbimporter;
 import java.io.IOException;
 
 import com.orientechnologies.orient.client.remote.OServerAdmin;
-import com.tinkerpop.blueprints.util.wrappers.batch.BatchGraph;
 
 import orientdbimporter.CSVImporter;
 import orientdbimporter.processors.EdgeProcessor;
@@ -16,7 +15,8 @@ public class CSVBatchImporter extends CSVImporter
 	{
 		isNewDatabase = !databaseExists(dbName);
 		openNoTxForMassiveInsert();
-		graph = BatchGraph.wrap(noTx, 1000);
+		vertexIds = new VertexIds(getTemporaryDirectory());
+		graph = noTx;
 	}
 
 	@Override
@@ -35,7 +35,19 @@ public class CSVBatchImporter extends CSVImporter
 		(new EdgeProcessor(this)).process(filename);
 	}
 
-	private boolean databaseExists(String dbName) throws IOException
+	@Override
+	protected void processNodeRows(RowReader nodeRows) throws IOException
+	{
+		(new NodeProcessor(this)).process(nodeRows);
+	}
+
+	@Override
+	protected void processEdgeRows(RowReader edgeRows) throws IOException
+	{
+		(new EdgeProcessor(this)).process(edgeRows);
+	}
+
+	protected boolean databaseExists(String dbName) throws IOException
 	{
 		return new OServerAdmin("localhost/" + dbName).connect(
 				Constants.DB_USERNAME, Constants.DB_PASSWORD).existsDatabase();
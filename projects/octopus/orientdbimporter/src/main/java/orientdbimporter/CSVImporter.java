@@ -1,42 +1,175 @@
 package orientdbimporter;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
 
 public abstract class CSVImporter
 {
+	private static final Logger logger = LoggerFactory
+			.getLogger(CSVImporter.class);
+
 	protected String dbName;
 	protected Graph graph;
 	protected OrientGraphNoTx noTx;
+	protected VertexIds vertexIds;
 
 	protected String[] VertexKeys;
 	protected String[] EdgeKeys;
 
 	protected boolean isNewDatabase;
+	protected boolean fullTextIndex = true;
+	protected Path temporaryDirectory;
 
 	public void importCSVFiles(String nodeFile, String edgeFile)
 			throws IOException
 	{
-		openDatabase();
-		processNodeFile(nodeFile);
-		processEdgeFile(edgeFile);
-		closeDatabase();
+		boolean finished = false;
+		try
+		{
+			openDatabase();
+			processNodeFile(nodeFile);
+			processEdgeFile(edgeFile);
+			createIndices();
+			finished = true;
+		}
+		finally
+		{
+			closeDatabase(finished);
+		}
+	}
+
+	/**
+	 * Imports the shards of a sharded export, see `ShardManifest`, one
+	 * after the other. The node files of all shards are imported before
+	 * the edge files. `CSVParallelImporter` imports shards concurrently.
+	 */
+
+	public void importShards(String manifestFilename) throws IOException
+	{
+		ShardManifest manifest = ShardManifest.load(Paths.get(manifestFilename));
+
+		boolean finished = false;
+		try
+		{
+			openDatabase();
+			for (ShardManifest.Shard shard : manifest.getShards())
+				processNodeFile(manifest.resolve(shard.nodeFile));
+			for (ShardManifest.Shard shard : manifest.getShards())
+				processEdgeFile(manifest.resolve(shard.edgeFile));
+			createIndices();
+			finished = true;
+		}
+		finally
+		{
+			closeDatabase(finished);
+		}
+	}
+
+	/**
+	 * Imports rows produced in memory, e.g., by an exporter, instead of
+	 * rows read from files. Rows must be ordered as in the files.
+	 */
+
+	public void importRows(RowReader nodeRows, RowReader edgeRows)
+			throws IOException
+	{
+		boolean finished = false;
+		try
+		{
+			openDatabase();
+			processNodeRows(nodeRows);
+			processEdgeRows(edgeRows);
+			createIndices();
+			finished = true;
+		}
+		finally
+		{
+			closeDatabase(finished);
+		}
 	}
 
 	protected abstract void processNodeFile(String nodeFile) throws IOException;
 
 	protected abstract void processEdgeFile(String edgeFile) throws IOException;
 
+	protected abstract void processNodeRows(RowReader nodeRows) throws IOException;
+
+	protected abstract void processEdgeRows(RowReader edgeRows) throws IOException;
+
 	protected abstract void openDatabase() throws IOException;
 
+	/**
+	 * Closes the database and releases the vertex ids, also if opening
+	 * the database has failed halfway.
+	 */
+
 	protected void closeDatabase()
 	{
-		graph.shutdown();
-		noTx.shutdown();
+		try
+		{
+			if (graph != null && graph != noTx)
+				graph.shutdown();
+			if (noTx != null)
+				noTx.shutdown();
+		}
+		finally
+		{
+			if (vertexIds != null)
+				vertexIds.close();
+		}
+	}
+
+	/**
+	 * Closes the database after an import. If the import has failed,
+	 * failures to close are logged, so that they do not hide the failure
+	 * of the import.
+	 */
+
+	protected void closeDatabase(boolean importFinished)
+	{
+		if (importFinished)
+		{
+			closeDatabase();
+			return;
+		}
+
+		try
+		{
+			closeDatabase();
+		}
+		catch (RuntimeException e)
+		{
+			logger.warn("Cannot close database {} after failed import: {}",
+					dbName, e.getMessage());
+		}
+	}
+
+	/**
+	 * Creates the indices of a new database after its vertices have been
+	 * imported, see `VertexIndexes`.
+	 */
+
+	protected void createIndices()
+	{
+		if (!isNewDatabase || VertexKeys == null)
+			return;
+
+		long start = System.currentTimeMillis();
+		noTx.makeActive();
+		VertexIndexes.create(noTx.getVertexType("V"), VertexKeys, fullTextIndex);
+		logger.info("Created indices in {} ms",
+				System.currentTimeMillis() - start);
 	}
 
 	protected void openNoTxForMassiveInsert()
@@ -49,16 +182,65 @@ public abstract class CSVImporter
 		noTx.declareIntent(new OIntentMassiveInsert());
 	}
 
+	/**
+	 * Adds a vertex with the given properties to the database.
+	 */
+
+	public Vertex addVertex(Object[] properties)
+	{
+		return noTx.addVertex(null, properties);
+	}
+
+	/**
+	 * Adds an edge between the vertices with the given ids.
+	 */
+
+	public Edge addEdge(Object outVertexId, Object inVertexId, String label)
+	{
+		return graph.addEdge(null, graph.getVertex(outVertexId),
+				graph.getVertex(inVertexId), label);
+	}
+
 	public void setDbName(String dbName)
 	{
 		this.dbName = dbName;
 	}
 
+	/**
+	 * Sets the directory for files that the import needs only while it
+	 * runs, such as the table of vertex ids, which may be larger than the
+	 * heap. Defaults to the directory holding the databases, as temporary
+	 * directories are often kept in memory.
+	 */
+
+	public void setTemporaryDirectory(Path temporaryDirectory)
+	{
+		this.temporaryDirectory = temporaryDirectory;
+	}
+
+	public Path getTemporaryDirectory()
+	{
+		if (temporaryDirectory != null)
+			return temporaryDirectory;
+		return Paths.get(System.getProperty("ORIENTDB_HOME"), "databases");
+	}
+
 	public Graph getGraph()
 	{
 		return graph;
 	}
 
+	/**
+	 * Returns the ids under which the vertices imported so far can be
+	 * retrieved from the graph, see `getGraph`. The ids are released when
+	 * the import finishes.
+	 */
+
+	public VertexIds getVertexIds()
+	{
+		return vertexIds;
+	}
+
 	public String[] getVertexKeys()
 	{
 		return VertexKeys;
@@ -79,6 +261,16 @@ public abstract class CSVImporter
 		EdgeKeys = edgeKeys;
 	}
 
+	/**
+	 * Sets whether a full-text index is created for a new database. Without
+	 * it, the database can only be queried by key, address and node type.
+	 */
+
+	public void setFullTextIndex(boolean fullTextIndex)
+	{
+		this.fullTextIndex = fullTextIndex;
+	}
+
 	public boolean isNewDatabase()
 	{
 		return isNewDatabase;
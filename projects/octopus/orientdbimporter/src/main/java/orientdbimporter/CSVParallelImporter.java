@@ -0,0 +1,278 @@
+package orientdbimporter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientVertexType;
+
+import orientdbimporter.processors.CSVFileProcessor;
+import orientdbimporter.processors.EdgeProcessor;
+import orientdbimporter.processors.NodeProcessor;
+import orientdbimporter.processors.PartitioningProcessor;
+
+/**
+ * Imports files with several workers, see `ImportWorker`. Rows are
+ * partitioned by the address in their key, see `KeyPartitioner`: node rows
+ * by the key of the node, edge rows by the key of the source node. All rows
+ * of a key are imported by the same worker in file order, so alternative
+ * nodes are created exactly as by `CSVBatchImporter`.
+ *
+ * A file is imported completely before the next file is started, so all
+ * vertices exist before the first edge is added. Vertices are created by
+ * the worker of their partition only, but an edge updates both of its
+ * vertices, so edges are added while holding a lock for each vertex.
+ *
+ * The shards of a sharded export are imported with one worker per shard
+ * instead, each of which reads the files of its shard, see `importShards`.
+ *
+ * The resulting graph is the same as that of a single-threaded import,
+ * except for the ids of vertices and edges and the order of edges at a
+ * vertex.
+ */
+
+public class CSVParallelImporter extends CSVBatchImporter
+{
+	private static final String CLUSTER_PREFIX = "v_import_";
+	private static final int N_VERTEX_LOCKS = 4096;
+
+	private static final int NODE_KEY_COLUMN = 1;
+	private static final int EDGE_SOURCE_COLUMN = 0;
+
+	private KeyPartitioner partitioner;
+	private final Object[] vertexLocks = new Object[N_VERTEX_LOCKS];
+	private final List<ImportWorker> workers = new ArrayList<ImportWorker>();
+	private final Set<String> edgeTypes = ConcurrentHashMap.newKeySet();
+
+	public CSVParallelImporter(int nWorkers)
+	{
+		partitioner = new KeyPartitioner(nWorkers);
+		for (int i = 0; i < vertexLocks.length; i++)
+			vertexLocks[i] = new Object();
+	}
+
+	@Override
+	protected void openDatabase() throws IOException
+	{
+		super.openDatabase();
+		vertexIds = new PartitionedVertexIds(partitioner, getTemporaryDirectory());
+
+		OrientVertexType vType = noTx.getVertexType("V");
+		for (int i = 0; i < partitioner.getNumberOfPartitions(); i++)
+		{
+			String clusterName = CLUSTER_PREFIX + i;
+			noTx.makeActive();
+			int clusterId = noTx.getRawGraph().getClusterIdByName(clusterName);
+			if (clusterId == -1 || !vType.hasClusterId(clusterId))
+				vType.addCluster(clusterName);
+
+			ImportWorker worker = new ImportWorker(this, i, clusterName);
+			worker.openDatabase();
+			workers.add(worker);
+		}
+	}
+
+	/**
+	 * Imports the shards of a sharded export, see `ShardManifest`, each by
+	 * a worker of its own, regardless of the number of workers this
+	 * importer was created with. Node files of different shards hold
+	 * different keys, so each worker keeps the ids of the vertices of its
+	 * shard, see `ShardPartitioner`. All node files are imported before
+	 * the first edge file.
+	 */
+
+	@Override
+	public void importShards(String manifestFilename) throws IOException
+	{
+		ShardManifest manifest = ShardManifest.load(Paths.get(manifestFilename));
+		partitioner = new ShardPartitioner(manifest);
+
+		List<String> nodeFiles = new ArrayList<String>();
+		List<String> edgeFiles = new ArrayList<String>();
+		for (ShardManifest.Shard shard : manifest.getShards())
+		{
+			nodeFiles.add(manifest.resolve(shard.nodeFile));
+			edgeFiles.add(manifest.resolve(shard.edgeFile));
+		}
+
+		boolean finished = false;
+		try
+		{
+			openDatabase();
+			// properties are declared before any worker adds vertices
+			for (String nodeFile : nodeFiles)
+				(new NodeProcessor(this)).processHeader(nodeFile);
+
+			for (int i = 0; i < workers.size(); i++)
+				workers.get(i).start(new NodeProcessor(workers.get(i)),
+						"nodes", nodeFiles.get(i));
+			finishWorkers();
+
+			for (int i = 0; i < workers.size(); i++)
+				workers.get(i).start(new EdgeProcessor(workers.get(i)),
+						"edges", edgeFiles.get(i));
+			finishWorkers();
+
+			createIndices();
+			finished = true;
+		}
+		finally
+		{
+			closeDatabase(finished);
+		}
+	}
+
+	@Override
+	protected void closeDatabase()
+	{
+		try
+		{
+			for (ImportWorker worker : workers)
+				worker.closeDatabase();
+		}
+		finally
+		{
+			workers.clear();
+			super.closeDatabase();
+		}
+	}
+
+	@Override
+	protected void processNodeFile(String filename) throws IOException
+	{
+		if (filename == null)
+			return;
+		CSVFileProcessor processor = startNodePhase();
+		try
+		{
+			processor.process(filename);
+		}
+		finally
+		{
+			finishWorkers();
+		}
+	}
+
+	@Override
+	protected void processEdgeFile(String filename) throws IOException
+	{
+		if (filename == null)
+			return;
+		CSVFileProcessor processor = startEdgePhase();
+		try
+		{
+			processor.process(filename);
+		}
+		finally
+		{
+			finishWorkers();
+		}
+	}
+
+	@Override
+	protected void processNodeRows(RowReader nodeRows) throws IOException
+	{
+		CSVFileProcessor processor = startNodePhase();
+		try
+		{
+			processor.process(nodeRows);
+		}
+		finally
+		{
+			finishWorkers();
+		}
+	}
+
+	@Override
+	protected void processEdgeRows(RowReader edgeRows) throws IOException
+	{
+		CSVFileProcessor processor = startEdgePhase();
+		try
+		{
+			processor.process(edgeRows);
+		}
+		finally
+		{
+			finishWorkers();
+		}
+	}
+
+	private CSVFileProcessor startNodePhase()
+	{
+		for (ImportWorker worker : workers)
+			worker.start(new NodeProcessor(worker), "nodes");
+		return new PartitioningProcessor(this, new NodeProcessor(this),
+				workers, partitioner, NODE_KEY_COLUMN);
+	}
+
+	private CSVFileProcessor startEdgePhase()
+	{
+		for (ImportWorker worker : workers)
+			worker.start(new EdgeProcessor(worker), "edges");
+		return new PartitioningProcessor(this, new EdgeProcessor(this),
+				workers, partitioner, EDGE_SOURCE_COLUMN);
+	}
+
+	/**
+	 * Waits until all workers have processed their rows, even if one of them
+	 * fails. This is the synchronization point between files, and thus
+	 * between vertices and edges.
+	 */
+
+	private void finishWorkers() throws IOException
+	{
+		Exception failure = null;
+		for (ImportWorker worker : workers)
+		{
+			try
+			{
+				worker.finish();
+			}
+			catch (IOException | RuntimeException e)
+			{
+				if (failure == null)
+					failure = e;
+			}
+		}
+
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		if (failure != null)
+			throw (RuntimeException) failure;
+	}
+
+	/**
+	 * Creates the edge class for `label` unless it exists. Edge classes
+	 * are created on the first use of a label, which must not happen in
+	 * several workers at once.
+	 */
+
+	void createEdgeTypeIfMissing(OrientBaseGraph workerGraph, String label)
+	{
+		if (edgeTypes.contains(label))
+			return;
+
+		synchronized (edgeTypes)
+		{
+			String className = OrientBaseGraph.encodeClassName(label);
+			if (workerGraph.getEdgeType(className) == null)
+				workerGraph.createEdgeType(className);
+			edgeTypes.add(label);
+		}
+	}
+
+	/**
+	 * Returns the locks that workers hold while updating vertices. The lock
+	 * of a vertex is selected by the hash code of its id.
+	 */
+
+	Object[] getVertexLocks()
+	{
+		return vertexLocks;
+	}
+
+}
@@ -0,0 +1,265 @@
+package orientdbimporter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
+
+import orientdbimporter.processors.CSVFileProcessor;
+
+/**
+ * A worker of `CSVParallelImporter`. Each worker imports the rows of one
+ * partition through a graph of its own, on a thread of its own, and adds
+ * its vertices to a cluster of its own. Rows are passed to the worker
+ * through a bounded queue and processed in the order they are submitted,
+ * or read by the worker from a file of its own.
+ */
+
+public class ImportWorker extends CSVBatchImporter
+{
+	private static final Logger logger = LoggerFactory
+			.getLogger(ImportWorker.class);
+
+	private static final String[] END_OF_INPUT = new String[0];
+	private static final int QUEUE_CAPACITY = 4096;
+
+	private final CSVParallelImporter parent;
+	private final int index;
+	private final String vertexClusterId;
+
+	private final BlockingQueue<String[]> queue = new ArrayBlockingQueue<String[]>(
+			QUEUE_CAPACITY);
+	private Thread thread;
+	private String filename;
+	private volatile Throwable failure;
+	private boolean endOfInput;
+	private long rows;
+	private long startTime;
+
+	public ImportWorker(CSVParallelImporter parent, int index, String clusterName)
+	{
+		this.parent = parent;
+		this.index = index;
+		this.vertexClusterId = OrientBaseGraph.CLASS_PREFIX + "V,"
+				+ OrientBaseGraph.CLUSTER_PREFIX + clusterName;
+		setDbName(parent.dbName);
+	}
+
+	/**
+	 * Opens the graph of this worker. Properties have been declared and
+	 * indices are created by the parent, so the database is never treated
+	 * as new.
+	 */
+
+	@Override
+	protected void openDatabase()
+	{
+		isNewDatabase = false;
+		openNoTxForMassiveInsert();
+		vertexIds = parent.getVertexIds();
+		graph = noTx;
+	}
+
+	/**
+	 * Closes the graph of this worker. The vertex ids belong to the parent.
+	 */
+
+	@Override
+	protected void closeDatabase()
+	{
+		noTx.shutdown();
+	}
+
+	@Override
+	public Vertex addVertex(Object[] properties)
+	{
+		return noTx.addVertex(vertexClusterId, properties);
+	}
+
+	/**
+	 * Adds an edge while holding the locks of both vertices. Adding an edge
+	 * updates both vertices, which may belong to other partitions, so
+	 * vertices are reloaded under the lock rather than taken from the cache
+	 * of this worker's graph, which may hold outdated versions.
+	 */
+
+	@Override
+	public Edge addEdge(Object outVertexId, Object inVertexId, String label)
+	{
+		parent.createEdgeTypeIfMissing(noTx, label);
+
+		Object[] locks = parent.getVertexLocks();
+		int outLock = Math.floorMod(outVertexId.hashCode(), locks.length);
+		int inLock = Math.floorMod(inVertexId.hashCode(), locks.length);
+
+		synchronized (locks[Math.min(outLock, inLock)])
+		{
+			synchronized (locks[Math.max(outLock, inLock)])
+			{
+				noTx.makeActive();
+				noTx.getRawGraph().getLocalCache().deleteRecord((ORID) outVertexId);
+				noTx.getRawGraph().getLocalCache().deleteRecord((ORID) inVertexId);
+				return super.addEdge(outVertexId, inVertexId, label);
+			}
+		}
+	}
+
+	/**
+	 * Starts a thread that passes the rows submitted to this worker to
+	 * `processor`, starting with the header row.
+	 */
+
+	public void start(CSVFileProcessor processor, String phase)
+	{
+		start(phase, null, () -> processor.process(this::takeRow));
+	}
+
+	/**
+	 * Starts a thread that passes the rows of `filename` to `processor`.
+	 * No rows may be submitted to this worker until it has finished.
+	 */
+
+	public void start(CSVFileProcessor processor, String phase,
+			String filename)
+	{
+		start(phase, filename, () -> processor.process(filename));
+	}
+
+	/**
+	 * The rows a worker processes, see `start`.
+	 */
+
+	private interface Input
+	{
+		void process() throws IOException;
+	}
+
+	private void start(String phase, String filename, Input input)
+	{
+		this.filename = filename;
+		failure = null;
+		endOfInput = false;
+		rows = 0;
+		startTime = System.nanoTime();
+		thread = new Thread(() -> run(input),
+				"import-" + phase + "-" + index);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void submit(String[] row)
+	{
+		throwIfFailed();
+		put(row);
+	}
+
+	/**
+	 * Waits until all submitted rows have been processed and logs the
+	 * throughput of this worker.
+	 */
+
+	public void finish() throws IOException
+	{
+		if (filename == null)
+			put(END_OF_INPUT);
+		try
+		{
+			thread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for import worker " + index);
+		}
+
+		long elapsedMillis = TimeUnit.NANOSECONDS
+				.toMillis(System.nanoTime() - startTime);
+		if (filename == null)
+			logger.info("Import worker {} ({}): {} rows in {} ms ({} rows/s)",
+					index, thread.getName(), rows, elapsedMillis,
+					(elapsedMillis == 0) ? rows : rows * 1000 / elapsedMillis);
+		else
+			logger.info("Import worker {} ({}): {} in {} ms", index,
+					thread.getName(), filename, elapsedMillis);
+
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		throwIfFailed();
+	}
+
+	private void run(Input input)
+	{
+		try
+		{
+			input.process();
+		}
+		catch (Throwable t)
+		{
+			failure = t;
+			// keep draining, so that `submit` does not block forever
+			while (filename == null && !endOfInput)
+				takeRow();
+		}
+	}
+
+	/**
+	 * Returns the next row submitted to this worker, or null once all rows
+	 * have been submitted.
+	 */
+
+	private String[] takeRow()
+	{
+		String[] row;
+		try
+		{
+			row = queue.take();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for rows");
+		}
+
+		if (row == END_OF_INPUT)
+		{
+			endOfInput = true;
+			return null;
+		}
+		rows++;
+		return row;
+	}
+
+	private void put(String[] row)
+	{
+		try
+		{
+			queue.put(row);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while submitting to import worker " + index);
+		}
+	}
+
+	private void throwIfFailed()
+	{
+		Throwable cause = failure;
+		if (cause == null)
+			return;
+		if (cause instanceof RuntimeException)
+			throw (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		throw new RuntimeException(cause);
+	}
+
+}
@@ -0,0 +1,98 @@
+package orientdbimporter;
+
+/**
+ * Assigns node keys to partitions by a hash of their address, i.e., the
+ * part of the key between the first and the second underscore. Nodes at
+ * the same address, including all alternatives of a node, which extend its
+ * key by "_n", are therefore assigned to the same partition. Keys without
+ * underscore are hashed as a whole.
+ */
+
+public class KeyPartitioner
+{
+	private final int nPartitions;
+
+	public KeyPartitioner(int nPartitions)
+	{
+		if (nPartitions < 1)
+			throw new IllegalArgumentException("Need at least one partition");
+		this.nPartitions = nPartitions;
+	}
+
+	public int getNumberOfPartitions()
+	{
+		return nPartitions;
+	}
+
+	/**
+	 * Returns the partition of `key`, a number between 0 and the number of
+	 * partitions. Does not allocate.
+	 */
+
+	public int partition(CharSequence key)
+	{
+		int start = indexOf(key, '_', 0) + 1;
+		int end = (start == 0) ? -1 : indexOf(key, '_', start);
+		if (end == -1)
+			end = key.length();
+
+		int hash = 0;
+		for (int i = start; i < end; i++)
+			hash = 31 * hash + key.charAt(i);
+
+		return partitionOfHash(hash);
+	}
+
+	/**
+	 * Returns the partition of a key packed by `NodeKeys`, which is the
+	 * partition of the key rendered as string. Does not allocate.
+	 */
+
+	public int partition(long packedKey)
+	{
+		return partitionOfHash(hashDecimal(NodeKeys.address(packedKey)));
+	}
+
+	/**
+	 * Hashes the decimal digits of `value` as `partition` hashes the
+	 * characters of a rendered address.
+	 */
+
+	private static int hashDecimal(long value)
+	{
+		int hash = 0;
+		// addresses fit into 48 bits, so negating does not overflow
+		if (value < 0)
+		{
+			hash = '-';
+			value = -value;
+		}
+
+		long divisor = 1;
+		while (divisor <= value / 10)
+			divisor *= 10;
+		for (; divisor > 0; divisor /= 10)
+			hash = 31 * hash + (char) ('0' + (value / divisor) % 10);
+		return hash;
+	}
+
+	private int partitionOfHash(int hash)
+	{
+		// addresses of neighbouring nodes differ in their last digits only
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return Math.floorMod(hash, nPartitions);
+	}
+
+	private static int indexOf(CharSequence str, char c, int from)
+	{
+		for (int i = from; i < str.length(); i++)
+		{
+			if (str.charAt(i) == c)
+				return i;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,222 @@
+package orientdbimporter;
+
+/**
+ * Packs node keys such as "Instr_4198400" or "var_4198400_1" into a single
+ * long: the address in the upper 48 bits, a code for the node type in the
+ * next 8 bits and the counter that distinguishes alternatives of the same
+ * node in the lowest 8 bits.
+ *
+ * Only keys in canonical form can be packed: a known type, an address in
+ * decimal that fits into 48 bits when sign-extended, which holds for the
+ * addresses of 32 bit and 64 bit binaries alike, and an optional counter
+ * between 1 and `MAX_COUNTER`. Rendering a packed key yields the original
+ * string. Type code 0 is never used by packed keys, so neither are values
+ * with zero in the type bits, such as `INVALID`.
+ */
+
+public class NodeKeys
+{
+	public static final long INVALID = 0;
+	public static final int MAX_COUNTER = 0xFF;
+
+	// Type codes are stored in binary graph files, so types may only be
+	// appended to this list. The code of a type is its index plus one.
+	private static final String[] TYPES = { "Root", "Flag", "Func", "BB",
+			"Instr", "var", "arg", "Aloc" };
+
+	private static final int TYPE_SHIFT = 8;
+	private static final int ADDRESS_SHIFT = 16;
+	private static final long TYPE_MASK = 0xFF;
+	private static final long COUNTER_MASK = 0xFF;
+	private static final int MAX_ADDRESS_DIGITS = 15;
+
+	private NodeKeys()
+	{
+	}
+
+	/**
+	 * Packs `key`, or returns `INVALID` if it is not in canonical form.
+	 * Does not allocate.
+	 */
+
+	public static long pack(CharSequence key)
+	{
+		int typeEnd = indexOf(key, '_', 0);
+		if (typeEnd == -1)
+			return INVALID;
+
+		int typeCode = typeCode(key, typeEnd);
+		if (typeCode == 0)
+			return INVALID;
+
+		int addressEnd = indexOf(key, '_', typeEnd + 1);
+		if (addressEnd == -1)
+			addressEnd = key.length();
+
+		int start = typeEnd + 1;
+		boolean negative = start < addressEnd && key.charAt(start) == '-';
+		if (negative)
+			start++;
+		if (!isCanonicalNumber(key, start, addressEnd, MAX_ADDRESS_DIGITS)
+				|| (negative && key.charAt(start) == '0'))
+			return INVALID;
+
+		long address = parseDigits(key, start, addressEnd);
+		if (negative)
+			address = -address;
+		if (!fitsAddress(address))
+			return INVALID;
+
+		int counter = 0;
+		if (addressEnd != key.length())
+		{
+			if (!isCanonicalNumber(key, addressEnd + 1, key.length(), 3))
+				return INVALID;
+			counter = (int) parseDigits(key, addressEnd + 1, key.length());
+			if (counter == 0 || counter > MAX_COUNTER)
+				return INVALID;
+		}
+
+		return (address << ADDRESS_SHIFT) | ((long) typeCode << TYPE_SHIFT)
+				| counter;
+	}
+
+	/**
+	 * Packs the key of type `type` at `address`, with `counter` 0 for the
+	 * first node, or returns `INVALID` if the key cannot be packed. Yields
+	 * the same value as packing the key rendered as string, without
+	 * rendering it.
+	 */
+
+	public static long pack(String type, long address, int counter)
+	{
+		int typeCode = 0;
+		for (int i = 0; i < TYPES.length && typeCode == 0; i++)
+		{
+			if (TYPES[i].equals(type))
+				typeCode = i + 1;
+		}
+
+		if (typeCode == 0 || !fitsAddress(address) || counter < 0
+				|| counter > MAX_COUNTER)
+			return INVALID;
+
+		return (address << ADDRESS_SHIFT) | ((long) typeCode << TYPE_SHIFT)
+				| counter;
+	}
+
+	/**
+	 * Returns the key rendered as string, as it appears in CSV files and
+	 * the `key` property of nodes.
+	 */
+
+	public static String toString(long packedKey)
+	{
+		int typeCode = (int) ((packedKey >>> TYPE_SHIFT) & TYPE_MASK);
+		if (typeCode == 0 || typeCode > TYPES.length)
+			throw new IllegalArgumentException("Not a packed node key: " + packedKey);
+
+		StringBuilder builder = new StringBuilder(24);
+		builder.append(TYPES[typeCode - 1]).append('_')
+				.append(address(packedKey));
+		int counter = (int) (packedKey & COUNTER_MASK);
+		if (counter != 0)
+			builder.append('_').append(counter);
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the address of a packed key.
+	 */
+
+	public static long address(long packedKey)
+	{
+		return packedKey >> ADDRESS_SHIFT;
+	}
+
+	/**
+	 * Returns the type of a packed key. Does not allocate.
+	 */
+
+	public static String type(long packedKey)
+	{
+		int typeCode = (int) ((packedKey >>> TYPE_SHIFT) & TYPE_MASK);
+		if (typeCode == 0 || typeCode > TYPES.length)
+			throw new IllegalArgumentException("Not a packed node key: " + packedKey);
+		return TYPES[typeCode - 1];
+	}
+
+	public static boolean isPacked(long value)
+	{
+		int typeCode = (int) ((value >>> TYPE_SHIFT) & TYPE_MASK);
+		return typeCode != 0 && typeCode <= TYPES.length;
+	}
+
+	private static int typeCode(CharSequence key, int typeEnd)
+	{
+		for (int i = 0; i < TYPES.length; i++)
+		{
+			String type = TYPES[i];
+			if (type.length() == typeEnd && startsWith(key, type))
+				return i + 1;
+		}
+		return 0;
+	}
+
+	private static boolean startsWith(CharSequence str, String prefix)
+	{
+		for (int i = 0; i < prefix.length(); i++)
+		{
+			if (str.charAt(i) != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(CharSequence str, char c, int from)
+	{
+		for (int i = from; i < str.length(); i++)
+		{
+			if (str.charAt(i) == c)
+				return i;
+		}
+		return -1;
+	}
+
+	private static boolean fitsAddress(long address)
+	{
+		return (address << ADDRESS_SHIFT) >> ADDRESS_SHIFT == address;
+	}
+
+	/**
+	 * Checks whether `str` holds a number between `start` and `end` that
+	 * has at most `maxDigits` digits and no leading zeros.
+	 */
+
+	private static boolean isCanonicalNumber(CharSequence str, int start, int end,
+			int maxDigits)
+	{
+		int nDigits = end - start;
+		if (nDigits < 1 || nDigits > maxDigits)
+			return false;
+		if (str.charAt(start) == '0' && nDigits > 1)
+			return false;
+
+		for (int i = start; i < end; i++)
+		{
+			char c = str.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
+	private static long parseDigits(CharSequence str, int start, int end)
+	{
+		long value = 0;
+		for (int i = start; i < end; i++)
+			value = 10 * value + (str.charAt(i) - '0');
+		return value;
+	}
+
+}
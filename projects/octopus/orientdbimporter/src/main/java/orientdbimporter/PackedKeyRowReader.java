@@ -0,0 +1,21 @@
+package orientdbimporter;
+
+import java.io.IOException;
+
+/**
+ * A source of rows that may return node keys packed, see `NodeKeys`, so
+ * that processors can look them up without rendering and parsing them
+ * again. Binary graph files store most keys packed.
+ */
+
+public interface PackedKeyRowReader extends RowReader
+{
+	/**
+	 * Returns the next row like `readNext()`, except that packed keys are
+	 * stored in `keys` at the index of their column and their value in the
+	 * row is null. All other elements of `keys` are `NodeKeys.INVALID`.
+	 */
+
+	public String[] readNext(long[] keys) throws IOException;
+
+}
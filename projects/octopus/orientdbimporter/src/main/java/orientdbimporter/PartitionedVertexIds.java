@@ -0,0 +1,72 @@
+package orientdbimporter;
+
+import java.nio.file.Path;
+
+/**
+ * Vertex ids split into partitions by a `KeyPartitioner`. While vertices
+ * are imported, each partition may be modified by one thread, the thread
+ * that imports the nodes of the partition. Once these threads have
+ * finished, all partitions may be read by any thread.
+ */
+
+public class PartitionedVertexIds extends VertexIds
+{
+	private final KeyPartitioner partitioner;
+	private final VertexIds[] partitions;
+
+	public PartitionedVertexIds(KeyPartitioner partitioner, Path directory)
+	{
+		super(directory);
+		this.partitioner = partitioner;
+		this.partitions = new VertexIds[partitioner.getNumberOfPartitions()];
+		for (int i = 0; i < partitions.length; i++)
+			partitions[i] = new VertexIds(directory);
+	}
+
+	@Override
+	public Object get(CharSequence key)
+	{
+		return partitions[partitioner.partition(key)].get(key);
+	}
+
+	@Override
+	public void put(String key, Object vertexId)
+	{
+		partitions[partitioner.partition(key)].put(key, vertexId);
+	}
+
+	@Override
+	public Object get(long packedKey)
+	{
+		return partitions[partitioner.partition(packedKey)].get(packedKey);
+	}
+
+	@Override
+	public long getRid(long packedKey)
+	{
+		return partitions[partitioner.partition(packedKey)].getRid(packedKey);
+	}
+
+	@Override
+	public void put(long packedKey, Object vertexId)
+	{
+		partitions[partitioner.partition(packedKey)].put(packedKey, vertexId);
+	}
+
+	@Override
+	public int size()
+	{
+		int size = 0;
+		for (VertexIds partition : partitions)
+			size += partition.size();
+		return size;
+	}
+
+	@Override
+	public void close()
+	{
+		for (VertexIds partition : partitions)
+			partition.close();
+	}
+
+}
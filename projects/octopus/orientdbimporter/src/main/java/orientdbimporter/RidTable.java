@@ -0,0 +1,207 @@
+package orientdbimporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An open-addressing hash table from packed node keys, see `NodeKeys`, to
+ * packed record ids. The table is kept in a memory-mapped temporary file
+ * rather than on the heap, so it may grow beyond the size of the heap and
+ * is paged in and out by the operating system.
+ *
+ * Each entry takes two longs, the key and the record id. Packed keys are
+ * never zero, so zero marks a free entry. Collisions are resolved by
+ * linear probing. The file is deleted when the table grows or is closed.
+ *
+ * The file should be placed on a disk rather than in a RAM-backed
+ * temporary directory, or it takes as much memory as the heap would.
+ */
+
+public class RidTable implements Closeable
+{
+	public static final long NO_RID = -1;
+
+	private static final int MAX_CLUSTER_ID = 0x7FFF;
+	private static final int POSITION_BITS = 48;
+	private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+	static final long INITIAL_CAPACITY = 1 << 16;
+	// entries per mapped segment, a single mapping holds at most 2 GiB
+	private static final int MAX_SEGMENT_BITS = 24;
+	private static final int MAX_LOAD_PERCENT = 60;
+
+	private final Path directory;
+	private FileChannel channel;
+	private LongBuffer[] segments;
+	private int segmentBits;
+	private long mask;
+	private long size;
+
+	/**
+	 * Creates a table kept in a file in `directory`.
+	 */
+
+	public RidTable(Path directory) throws IOException
+	{
+		this.directory = directory;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Packs a record id, given by cluster id and position, into a long, or
+	 * returns `NO_RID` if it does not fit.
+	 */
+
+	public static long pack(int clusterId, long clusterPosition)
+	{
+		if (clusterId < 0 || clusterId > MAX_CLUSTER_ID)
+			return NO_RID;
+		if (clusterPosition < 0 || clusterPosition > POSITION_MASK)
+			return NO_RID;
+		return ((long) clusterId << POSITION_BITS) | clusterPosition;
+	}
+
+	public static int clusterId(long rid)
+	{
+		return (int) (rid >>> POSITION_BITS);
+	}
+
+	public static long clusterPosition(long rid)
+	{
+		return rid & POSITION_MASK;
+	}
+
+	/**
+	 * Returns the record id stored for `key`, or `NO_RID`.
+	 */
+
+	public long get(long key)
+	{
+		for (long slot = slotOf(key);; slot = (slot + 1) & mask)
+		{
+			long storedKey = keyAt(slot);
+			if (storedKey == key)
+				return ridAt(slot);
+			if (storedKey == 0)
+				return NO_RID;
+		}
+	}
+
+	public void put(long key, long rid) throws IOException
+	{
+		if (key == 0)
+			throw new IllegalArgumentException("Key must not be zero");
+
+		if (insert(key, rid))
+		{
+			size++;
+			if (size * 100 > (mask + 1) * MAX_LOAD_PERCENT)
+				grow();
+		}
+	}
+
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		segments = null;
+		channel.close();
+	}
+
+	/**
+	 * Stores `rid` for `key` and returns whether the key is new.
+	 */
+
+	private boolean insert(long key, long rid)
+	{
+		for (long slot = slotOf(key);; slot = (slot + 1) & mask)
+		{
+			long storedKey = keyAt(slot);
+			if (storedKey == key || storedKey == 0)
+			{
+				LongBuffer segment = segments[(int) (slot >>> segmentBits)];
+				int index = 2 * (int) (slot & ((1 << segmentBits) - 1));
+				segment.put(index, key);
+				segment.put(index + 1, rid);
+				return storedKey == 0;
+			}
+		}
+	}
+
+	private void grow() throws IOException
+	{
+		FileChannel oldChannel = channel;
+		LongBuffer[] oldSegments = segments;
+
+		allocate(2 * (mask + 1));
+		for (LongBuffer segment : oldSegments)
+		{
+			for (int i = 0; i < segment.limit(); i += 2)
+			{
+				long key = segment.get(i);
+				if (key != 0)
+					insert(key, segment.get(i + 1));
+			}
+		}
+
+		// mappings are released once they are garbage collected
+		oldChannel.close();
+	}
+
+	/**
+	 * Maps a new, empty file holding `capacity` entries, a power of two.
+	 * The file is sparse, so pages are only allocated once written.
+	 */
+
+	private void allocate(long capacity) throws IOException
+	{
+		Path file = Files.createTempFile(directory, "rids", ".tmp");
+		channel = FileChannel.open(file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+
+		segmentBits = Math.min(Long.numberOfTrailingZeros(capacity),
+				MAX_SEGMENT_BITS);
+		long segmentBytes = 16L << segmentBits;
+		segments = new LongBuffer[(int) (capacity >>> segmentBits)];
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = channel.map(MapMode.READ_WRITE, i * segmentBytes,
+					segmentBytes).asLongBuffer();
+
+		mask = capacity - 1;
+	}
+
+	private long slotOf(long key)
+	{
+		return slotOf(key, mask);
+	}
+
+	static long slotOf(long key, long mask)
+	{
+		// keys of neighbouring nodes differ in few bits only
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private long keyAt(long slot)
+	{
+		int index = 2 * (int) (slot & ((1 << segmentBits) - 1));
+		return segments[(int) (slot >>> segmentBits)].get(index);
+	}
+
+	private long ridAt(long slot)
+	{
+		int index = 2 * (int) (slot & ((1 << segmentBits) - 1)) + 1;
+		return segments[(int) (slot >>> segmentBits)].get(index);
+	}
+
+}
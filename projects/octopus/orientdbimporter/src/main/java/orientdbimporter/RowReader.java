@@ -0,0 +1,18 @@
+package orientdbimporter;
+
+import java.io.IOException;
+
+/**
+ * A source of rows to import, such as a CSV file. As in a CSV file, the
+ * first row holds the column names.
+ */
+
+public interface RowReader
+{
+	/**
+	 * Returns the next row or null if there are no more rows.
+	 */
+
+	public String[] readNext() throws IOException;
+
+}
@@ -0,0 +1,284 @@
+package orientdbimporter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes the shards of a sharded export. Each shard consists of a node
+ * file and an edge file. The global shard holds nodes shared by all other
+ * shards, such as root nodes and flags, and comes first. The remaining
+ * shards each hold the nodes in a range of addresses.
+ *
+ * The manifest is stored as a tab-separated file with one line per shard,
+ * giving its name, the first address of its range, the address following
+ * the range, and the paths of its files relative to the manifest. Open
+ * ends of ranges and the range of the global shard are left empty.
+ *
+ * Edges of a shard may point to nodes of any shard, so all node files must
+ * be imported before the first edge file. Node files of different shards
+ * never contain the same key: the shard of a key follows from its type and
+ * address, see `shardOf`.
+ */
+
+public class ShardManifest
+{
+	public static final String FILENAME = "manifest.tsv";
+	public static final String GLOBAL_SHARD = "global";
+
+	/**
+	 * Types of the nodes of the global shard.
+	 */
+
+	public static final String[] GLOBAL_TYPES = { "Root", "Flag" };
+
+	private static final String SEPARATOR = "\t";
+	private static final String HEADER = "shard\tfirstAddr\tendAddr\tnodes\tedges";
+
+	public static class Shard
+	{
+		public final String name;
+		public final Long firstAddress;
+		public final Long endAddress;
+		public final String nodeFile;
+		public final String edgeFile;
+
+		public Shard(String name, Long firstAddress, Long endAddress,
+				String nodeFile, String edgeFile)
+		{
+			this.name = name;
+			this.firstAddress = firstAddress;
+			this.endAddress = endAddress;
+			this.nodeFile = nodeFile;
+			this.edgeFile = edgeFile;
+		}
+	}
+
+	private final List<Shard> shards = new ArrayList<Shard>();
+	private Path directory;
+
+	public void addShard(Shard shard)
+	{
+		shards.add(shard);
+	}
+
+	public List<Shard> getShards()
+	{
+		return Collections.unmodifiableList(shards);
+	}
+
+	/**
+	 * Returns the absolute path of a file of a shard, given the path
+	 * relative to the manifest.
+	 */
+
+	public String resolve(String filename)
+	{
+		if (directory == null)
+			return filename;
+		return directory.resolve(filename).toString();
+	}
+
+	/**
+	 * Returns the index of the shard holding the node with `key`. Keys
+	 * without an address in decimal and keys of `GLOBAL_TYPES` belong to
+	 * the global shard, all others to the shard the range of which holds
+	 * their address as unsigned number. Does not allocate.
+	 */
+
+	public int shardOf(CharSequence key)
+	{
+		int typeEnd = indexOf(key, '_', 0);
+		if (typeEnd == -1 || isGlobalType(key, typeEnd))
+			return globalShard();
+
+		int addressEnd = indexOf(key, '_', typeEnd + 1);
+		if (addressEnd == -1)
+			addressEnd = key.length();
+
+		long address;
+		try
+		{
+			address = parseAddress(key, typeEnd + 1, addressEnd);
+		}
+		catch (NumberFormatException e)
+		{
+			return globalShard();
+		}
+
+		return shardOfAddress(address);
+	}
+
+	/**
+	 * Returns the index of the shard holding the node with a key packed by
+	 * `NodeKeys`, which is the shard of the key rendered as string. Does not
+	 * allocate.
+	 */
+
+	public int shardOf(long packedKey)
+	{
+		if (isGlobalType(NodeKeys.type(packedKey)))
+			return globalShard();
+		return shardOfAddress(NodeKeys.address(packedKey));
+	}
+
+	private int shardOfAddress(long address)
+	{
+		for (int i = 0; i < shards.size(); i++)
+		{
+			Shard shard = shards.get(i);
+			if (shard.name.equals(GLOBAL_SHARD))
+				continue;
+			if (shard.firstAddress != null
+					&& Long.compareUnsigned(address, shard.firstAddress) < 0)
+				continue;
+			if (shard.endAddress != null
+					&& Long.compareUnsigned(address, shard.endAddress) >= 0)
+				continue;
+			return i;
+		}
+		return globalShard();
+	}
+
+	/**
+	 * Returns whether nodes of `type` belong to the global shard.
+	 */
+
+	public static boolean isGlobalType(CharSequence type)
+	{
+		return isGlobalType(type, type.length());
+	}
+
+	private static boolean isGlobalType(CharSequence key, int typeEnd)
+	{
+		for (String type : GLOBAL_TYPES)
+		{
+			if (type.length() == typeEnd && startsWith(key, type))
+				return true;
+		}
+		return false;
+	}
+
+	private int globalShard()
+	{
+		for (int i = 0; i < shards.size(); i++)
+		{
+			if (shards.get(i).name.equals(GLOBAL_SHARD))
+				return i;
+		}
+		return 0;
+	}
+
+	/**
+	 * Parses an address like `Long.parseLong` does, which exporters use to
+	 * assign keys to shards, but without creating a string first.
+	 */
+
+	private static long parseAddress(CharSequence str, int start, int end)
+	{
+		boolean negative = start < end && str.charAt(start) == '-';
+		if (start < end && (negative || str.charAt(start) == '+'))
+			start++;
+		if (start == end)
+			throw new NumberFormatException();
+
+		// accumulated negatively, as the range of negative numbers is larger
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long result = 0;
+		for (int i = start; i < end; i++)
+		{
+			int digit = Character.digit(str.charAt(i), 10);
+			if (digit < 0 || result < limit / 10)
+				throw new NumberFormatException();
+			result *= 10;
+			if (result < limit + digit)
+				throw new NumberFormatException();
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	private static boolean startsWith(CharSequence str, String prefix)
+	{
+		if (str.length() < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+		{
+			if (str.charAt(i) != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(CharSequence str, char c, int from)
+	{
+		for (int i = from; i < str.length(); i++)
+		{
+			if (str.charAt(i) == c)
+				return i;
+		}
+		return -1;
+	}
+
+	public void write(Path path) throws IOException
+	{
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(
+				path, StandardCharsets.UTF_8)))
+		{
+			writer.println(HEADER);
+			for (Shard shard : shards)
+			{
+				writer.println(shard.name + SEPARATOR
+						+ addressToString(shard.firstAddress) + SEPARATOR
+						+ addressToString(shard.endAddress) + SEPARATOR
+						+ shard.nodeFile + SEPARATOR + shard.edgeFile);
+			}
+		}
+	}
+
+	public static ShardManifest load(Path path) throws IOException
+	{
+		ShardManifest manifest = new ShardManifest();
+		manifest.directory = path.toAbsolutePath().getParent();
+
+		try (BufferedReader reader = Files.newBufferedReader(path,
+				StandardCharsets.UTF_8))
+		{
+			String line = reader.readLine();
+			if (!HEADER.equals(line))
+				throw new IOException("Not a shard manifest: " + path);
+
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.isEmpty())
+					continue;
+
+				String[] fields = line.split(SEPARATOR, -1);
+				if (fields.length != 5)
+					throw new IOException("Malformed shard manifest: " + path);
+
+				manifest.addShard(new Shard(fields[0],
+						addressFromString(fields[1]),
+						addressFromString(fields[2]), fields[3], fields[4]));
+			}
+		}
+		return manifest;
+	}
+
+	private static String addressToString(Long address)
+	{
+		return (address == null) ? "" : address.toString();
+	}
+
+	private static Long addressFromString(String str)
+	{
+		return str.isEmpty() ? null : Long.valueOf(str);
+	}
+
+}
@@ -0,0 +1,31 @@
+package orientdbimporter;
+
+/**
+ * Assigns node keys to the shards of a sharded export, see
+ * `ShardManifest.shardOf`. As node files of different shards never contain
+ * the same key, each shard can be imported into a partition of its own.
+ */
+
+public class ShardPartitioner extends KeyPartitioner
+{
+	private final ShardManifest manifest;
+
+	public ShardPartitioner(ShardManifest manifest)
+	{
+		super(manifest.getShards().size());
+		this.manifest = manifest;
+	}
+
+	@Override
+	public int partition(CharSequence key)
+	{
+		return manifest.shardOf(key);
+	}
+
+	@Override
+	public int partition(long packedKey)
+	{
+		return manifest.shardOf(packedKey);
+	}
+
+}
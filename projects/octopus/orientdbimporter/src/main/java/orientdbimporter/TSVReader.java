@@ -0,0 +1,505 @@
+package orientdbimporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the tab-separated files written by the exporter from a
+ * memory-mapped file. Rows are parsed in place: each field is a slice of
+ * the file or, if quotes or escapes had to be removed, of a scratch
+ * buffer, and strings are only created for the fields that are requested.
+ * Fields are valid until the next row is read.
+ *
+ * Files are parsed exactly as `CSVReader` parses them with a tab as
+ * separator and the default quote and escape characters, including its
+ * quirks: a backslash escapes a quote or backslash only inside quotes or
+ * after the first character of a field and is dropped otherwise, a quoted
+ * field continues on the next line, and an unterminated quoted field at
+ * the end of the file is dropped. Files are decoded as UTF-8.
+ *
+ * The file is mapped in windows, so files larger than 2 GiB can be read;
+ * a window is moved forward whenever a row crosses its end.
+ */
+
+public class TSVReader implements RowReader, Closeable
+{
+	private static final byte SEPARATOR = '\t';
+	private static final byte QUOTE = '"';
+	private static final byte ESCAPE = '\\';
+
+	private static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+	// results of parsing a row
+	private static final int ROW = 0;
+	private static final int END_OF_INPUT = 1;
+	private static final int NEED_MORE_INPUT = 2;
+
+	private final FileChannel channel;
+	private final long fileSize;
+
+	private MappedByteBuffer window;
+	private long windowStart;
+	private int windowSize;
+	private int limit;
+	private boolean windowAtEOF;
+	private int rowStart;
+
+	// fields of the current row
+	private int nFields;
+	private int[] fieldOffsets = new int[16];
+	private int[] fieldLengths = new int[16];
+	private boolean[] fieldInScratch = new boolean[16];
+	private byte[] scratch = new byte[1024];
+	private int scratchLength;
+
+	// the field being parsed, a slice of the window unless copied to
+	// scratch
+	private boolean plain;
+	private int start;
+	private int length;
+
+	private byte[] bytes = new byte[256];
+	private final FieldChars chars = new FieldChars();
+
+	public TSVReader(String filename) throws IOException
+	{
+		this(filename, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a reader that maps windows of `windowSize` bytes, which are
+	 * enlarged if a row does not fit.
+	 */
+
+	public TSVReader(String filename, int windowSize) throws IOException
+	{
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		fileSize = channel.size();
+		this.windowSize = windowSize;
+		map(0);
+	}
+
+	/**
+	 * Reads the next row and returns false if there are no more rows.
+	 */
+
+	public boolean next() throws IOException
+	{
+		while (true)
+		{
+			int result = parseRow();
+			if (result != NEED_MORE_INPUT)
+				return result == ROW;
+
+			if (rowStart == 0)
+				windowSize = (int) Math.min(2L * windowSize, Integer.MAX_VALUE);
+			map(windowStart + rowStart);
+		}
+	}
+
+	@Override
+	public String[] readNext() throws IOException
+	{
+		if (!next())
+			return null;
+		return getRow();
+	}
+
+	public int getFieldCount()
+	{
+		return nFields;
+	}
+
+	public String getString(int field)
+	{
+		int length = fieldLengths[field];
+		if (fieldInScratch[field])
+			return new String(scratch, fieldOffsets[field], length,
+					StandardCharsets.UTF_8);
+
+		if (bytes.length < length)
+			bytes = new byte[Math.max(length, 2 * bytes.length)];
+		window.position(fieldOffsets[field]);
+		window.get(bytes, 0, length);
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the characters of a field without creating a string. The
+	 * sequence is reused by the next call.
+	 */
+
+	public CharSequence getChars(int field)
+	{
+		int length = fieldLengths[field];
+		int offset = fieldOffsets[field];
+		chars.reset(length);
+		for (int i = 0; i < length; i++)
+		{
+			byte b = byteOf(field, offset + i);
+			if (b < 0)
+			{
+				chars.set(getString(field));
+				break;
+			}
+			chars.append((char) b);
+		}
+		return chars;
+	}
+
+	/**
+	 * Checks whether a field equals `ascii`, a string of ASCII characters,
+	 * without creating a string.
+	 */
+
+	public boolean fieldEquals(int field, String ascii)
+	{
+		int length = fieldLengths[field];
+		if (length != ascii.length())
+			return false;
+
+		int offset = fieldOffsets[field];
+		for (int i = 0; i < length; i++)
+		{
+			if (byteOf(field, offset + i) != ascii.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	public String[] getRow()
+	{
+		String[] row = new String[nFields];
+		for (int i = 0; i < nFields; i++)
+			row[i] = getString(i);
+		return row;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		window = null;
+		channel.close();
+	}
+
+	private byte byteOf(int field, int index)
+	{
+		if (fieldInScratch[field])
+			return scratch[index];
+		return window.get(index);
+	}
+
+	private void map(long position) throws IOException
+	{
+		long size = Math.min(windowSize, fileSize - position);
+		window = channel.map(MapMode.READ_ONLY, position, size);
+		windowStart = position;
+		limit = (int) size;
+		windowAtEOF = position + size == fileSize;
+		rowStart = 0;
+	}
+
+	/**
+	 * Parses the row at `rowStart` line by line, as `CSVParser` parses the
+	 * lines returned by `BufferedReader.readLine`.
+	 */
+
+	private int parseRow()
+	{
+		if (rowStart == limit)
+			return windowAtEOF ? END_OF_INPUT : NEED_MORE_INPUT;
+
+		nFields = 0;
+		scratchLength = 0;
+		clearField();
+
+		boolean inQuotes = false;
+		boolean inField = false;
+		int lineStart = rowStart;
+
+		while (true)
+		{
+			int lineEnd = findLineEnd(lineStart);
+			if (lineEnd == limit && !windowAtEOF)
+				return NEED_MORE_INPUT;
+
+			for (int p = lineStart; p < lineEnd; p++)
+			{
+				byte c = window.get(p);
+				if (c == ESCAPE)
+				{
+					if ((inQuotes || inField) && p + 1 < lineEnd
+							&& isEscapable(window.get(p + 1)))
+						append(++p);
+				}
+				else if (c == QUOTE)
+				{
+					if ((inQuotes || inField) && p + 1 < lineEnd
+							&& window.get(p + 1) == QUOTE)
+					{
+						append(++p);
+					}
+					else
+					{
+						inQuotes = !inQuotes;
+						// a quote in the middle of a field is kept
+						if (p - lineStart > 2 && window.get(p - 1) != SEPARATOR
+								&& p + 1 < lineEnd && window.get(p + 1) != SEPARATOR
+								&& charIndex(lineStart, p) > 2)
+						{
+							if (length > 0 && isFieldWhitespace())
+								clearField();
+							else
+								append(p);
+						}
+					}
+					inField = !inField;
+				}
+				else if (c == SEPARATOR && !inQuotes)
+				{
+					finishField();
+					inField = false;
+				}
+				else
+				{
+					append(p);
+					inField = true;
+				}
+			}
+
+			// the end of the file ends the last line
+			int nextLine = lineEnd;
+			if (lineEnd < limit)
+			{
+				nextLine++;
+				if (window.get(lineEnd) == '\r')
+				{
+					if (nextLine == limit && !windowAtEOF)
+						return NEED_MORE_INPUT;
+					if (nextLine < limit && window.get(nextLine) == '\n')
+						nextLine++;
+				}
+			}
+
+			if (!inQuotes)
+			{
+				finishField();
+				rowStart = nextLine;
+				return ROW;
+			}
+
+			// a quoted field continues on the next line, if there is one
+			if (nextLine == limit && !windowAtEOF)
+				return NEED_MORE_INPUT;
+			if (nextLine == limit)
+			{
+				rowStart = nextLine;
+				return (nFields == 0) ? END_OF_INPUT : ROW;
+			}
+
+			if (window.get(lineEnd) == '\n')
+				append(lineEnd);
+			else
+				appendToScratch((byte) '\n');
+			lineStart = nextLine;
+		}
+	}
+
+	private int findLineEnd(int from)
+	{
+		for (int p = from; p < limit; p++)
+		{
+			byte c = window.get(p);
+			if (c == '\n' || c == '\r')
+				return p;
+		}
+		return limit;
+	}
+
+	private static boolean isEscapable(byte c)
+	{
+		return c == QUOTE || c == ESCAPE;
+	}
+
+	/**
+	 * Returns the number of UTF-16 characters encoded by the bytes between
+	 * `lineStart` and `end`.
+	 */
+
+	private int charIndex(int lineStart, int end)
+	{
+		int index = 0;
+		for (int p = lineStart; p < end; p++)
+		{
+			byte b = window.get(p);
+			if ((b & 0xC0) != 0x80)
+				index++;
+			// four-byte sequences encode surrogate pairs
+			if ((b & 0xF8) == 0xF0)
+				index++;
+		}
+		return index;
+	}
+
+	private boolean isFieldWhitespace()
+	{
+		String field;
+		if (plain)
+		{
+			if (bytes.length < length)
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			window.position(start);
+			window.get(bytes, 0, length);
+			field = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+		else
+		{
+			field = new String(scratch, start, length, StandardCharsets.UTF_8);
+		}
+
+		for (int i = 0; i < field.length(); i++)
+		{
+			if (!Character.isWhitespace(field.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the byte at `position` of the window to the current field.
+	 * The field remains a slice of the window as long as its bytes are
+	 * contiguous.
+	 */
+
+	private void append(int position)
+	{
+		if (plain)
+		{
+			if (length == 0)
+				start = position;
+			if (start + length == position)
+			{
+				length++;
+				return;
+			}
+			copyFieldToScratch();
+		}
+		appendToScratch(window.get(position));
+	}
+
+	private void appendToScratch(byte b)
+	{
+		if (plain)
+			copyFieldToScratch();
+		ensureScratchCapacity(scratchLength + 1);
+		scratch[scratchLength++] = b;
+		length++;
+	}
+
+	private void copyFieldToScratch()
+	{
+		ensureScratchCapacity(scratchLength + length);
+		window.position(start);
+		window.get(scratch, scratchLength, length);
+		start = scratchLength;
+		scratchLength += length;
+		plain = false;
+	}
+
+	private void ensureScratchCapacity(int capacity)
+	{
+		if (scratch.length < capacity)
+		{
+			byte[] newScratch = new byte[Math.max(capacity, 2 * scratch.length)];
+			System.arraycopy(scratch, 0, newScratch, 0, scratchLength);
+			scratch = newScratch;
+		}
+	}
+
+	private void clearField()
+	{
+		plain = true;
+		start = 0;
+		length = 0;
+	}
+
+	private void finishField()
+	{
+		if (nFields == fieldOffsets.length)
+		{
+			int capacity = 2 * nFields;
+			fieldOffsets = Arrays.copyOf(fieldOffsets, capacity);
+			fieldLengths = Arrays.copyOf(fieldLengths, capacity);
+			fieldInScratch = Arrays.copyOf(fieldInScratch, capacity);
+		}
+
+		fieldOffsets[nFields] = start;
+		fieldLengths[nFields] = length;
+		fieldInScratch[nFields] = !plain;
+		nFields++;
+		clearField();
+	}
+
+	/**
+	 * The characters of a field, see `getChars`.
+	 */
+
+	private static class FieldChars implements CharSequence
+	{
+		private char[] chars = new char[64];
+		private int length;
+
+		void reset(int capacity)
+		{
+			if (chars.length < capacity)
+				chars = new char[Math.max(capacity, 2 * chars.length)];
+			length = 0;
+		}
+
+		void append(char c)
+		{
+			chars[length++] = c;
+		}
+
+		void set(String str)
+		{
+			reset(str.length());
+			str.getChars(0, str.length(), chars, 0);
+			length = str.length();
+		}
+
+		@Override
+		public int length()
+		{
+			return length;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			if (index >= length)
+				throw new IndexOutOfBoundsException();
+			return chars[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString()
+		{
+			return new String(chars, 0, length);
+		}
+	}
+
+}
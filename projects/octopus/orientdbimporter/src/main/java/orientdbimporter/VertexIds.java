@@ -0,0 +1,193 @@
+package orientdbimporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+/**
+ * Maps the keys of the nodes imported so far to the ids of their vertices
+ * in the database, so that edges can be attached to them without querying
+ * the database. Keys that `NodeKeys` can pack, which are nearly all, are
+ * kept with their record ids in a `RidTable` outside the heap, so neither
+ * storing nor looking up a key allocates a string. All other keys and ids
+ * are kept in a hash map.
+ */
+
+public class VertexIds implements Closeable
+{
+	private final Path directory;
+	// created on the first put, so that empty instances need no file
+	private RidTable packedKeys;
+	private final Map<String, Object> otherKeys = new HashMap<String, Object>();
+
+	/**
+	 * Creates an empty map, the packed keys of which are kept in a file in
+	 * `directory`.
+	 */
+
+	public VertexIds(Path directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the vertex id of the node with the given key, or null if no
+	 * such node has been imported.
+	 */
+
+	public Object get(CharSequence key)
+	{
+		long packedKey = NodeKeys.pack(key);
+		if (packedKey != NodeKeys.INVALID)
+		{
+			Object vertexId = getPacked(packedKey);
+			if (vertexId != null)
+				return vertexId;
+		}
+
+		if (otherKeys.isEmpty())
+			return null;
+		return otherKeys.get(key.toString());
+	}
+
+	/**
+	 * Like `get`, but for a key packed by `NodeKeys`. The key is only
+	 * rendered if ids that cannot be packed have been stored.
+	 */
+
+	public Object get(long packedKey)
+	{
+		Object vertexId = getPacked(packedKey);
+		if (vertexId != null || otherKeys.isEmpty())
+			return vertexId;
+		return otherKeys.get(NodeKeys.toString(packedKey));
+	}
+
+	/**
+	 * Returns the vertex id of a node with a packed key, as packed by
+	 * `RidTable.pack`, or `RidTable.NO_RID` if there is none. Ids that
+	 * cannot be packed are not found, see `get`. Does not allocate.
+	 */
+
+	public long getRid(long packedKey)
+	{
+		if (packedKeys == null)
+			return RidTable.NO_RID;
+		return packedKeys.get(packedKey);
+	}
+
+	private Object getPacked(long packedKey)
+	{
+		long rid = getRid(packedKey);
+		if (rid == RidTable.NO_RID)
+			return null;
+		return toRecordId(rid);
+	}
+
+	/**
+	 * Returns the vertex id packed by `RidTable.pack`.
+	 */
+
+	public static ORID toRecordId(long rid)
+	{
+		return new ORecordId(RidTable.clusterId(rid),
+				RidTable.clusterPosition(rid));
+	}
+
+	public boolean contains(CharSequence key)
+	{
+		return get(key) != null;
+	}
+
+	/**
+	 * Like `contains`, but for a key packed by `NodeKeys`. Only allocates
+	 * if ids that cannot be packed have been stored.
+	 */
+
+	public boolean contains(long packedKey)
+	{
+		return getRid(packedKey) != RidTable.NO_RID || get(packedKey) != null;
+	}
+
+	public void put(String key, Object vertexId)
+	{
+		long packedKey = NodeKeys.pack(key);
+		if (packedKey == NodeKeys.INVALID)
+		{
+			otherKeys.put(key, vertexId);
+			return;
+		}
+		put(packedKey, vertexId);
+	}
+
+	/**
+	 * Like `put`, but for a key packed by `NodeKeys`.
+	 */
+
+	public void put(long packedKey, Object vertexId)
+	{
+		long rid = packRid(vertexId);
+		if (rid == RidTable.NO_RID)
+		{
+			otherKeys.put(NodeKeys.toString(packedKey), vertexId);
+			return;
+		}
+
+		try
+		{
+			if (packedKeys == null)
+				packedKeys = new RidTable(directory);
+			packedKeys.put(packedKey, rid);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int size()
+	{
+		long size = otherKeys.size();
+		if (packedKeys != null)
+			size += packedKeys.size();
+		return (int) size;
+	}
+
+	/**
+	 * Releases the file holding the packed keys. Keys can no longer be
+	 * looked up afterwards.
+	 */
+
+	@Override
+	public void close()
+	{
+		if (packedKeys == null)
+			return;
+
+		try
+		{
+			packedKeys.close();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		packedKeys = null;
+	}
+
+	private static long packRid(Object vertexId)
+	{
+		if (!(vertexId instanceof ORID))
+			return RidTable.NO_RID;
+
+		ORID rid = (ORID) vertexId;
+		return RidTable.pack(rid.getClusterId(), rid.getClusterPosition());
+	}
+
+}
@@ -0,0 +1,68 @@
+package orientdbimporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.tinkerpop.blueprints.impls.orient.OrientVertexType;
+
+/**
+ * Creates the indices of vertex properties. Indices are created once all
+ * vertices of a new database have been imported, so that each index is
+ * built in one pass instead of being updated on every insert:
+ *
+ * - a hash index on the key, which is not unique, as alternative nodes
+ *   share the key of the first node,
+ * - SB-tree indices on address and node type, which also support range
+ *   queries, and
+ * - unless disabled, a Lucene full-text index on representation, comment
+ *   and ESIL, which is by far the most expensive to build.
+ *
+ * Indices are only created for properties the vertices have.
+ */
+
+public class VertexIndexes
+{
+	public static final String KEY = "key";
+	public static final String ADDR = "addr";
+	public static final String TYPE = "nodeType";
+
+	public static final String FULLTEXT_INDEX_NAME = "nodeIndex.";
+	public static final String[] FULLTEXT_KEYS = { "comment", "esil", "repr" };
+
+	public static void create(OrientVertexType vType, String[] vertexKeys,
+			boolean fullText)
+	{
+		List<String> keys = Arrays.asList(vertexKeys);
+
+		createIndex(vType, keys, KEY, OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX);
+		createIndex(vType, keys, ADDR, OClass.INDEX_TYPE.NOTUNIQUE);
+		createIndex(vType, keys, TYPE, OClass.INDEX_TYPE.NOTUNIQUE);
+
+		if (!fullText || vType.getClassIndex(FULLTEXT_INDEX_NAME) != null)
+			return;
+
+		List<String> fullTextKeys = new ArrayList<String>();
+		for (String key : FULLTEXT_KEYS)
+		{
+			if (keys.contains(key))
+				fullTextKeys.add(key);
+		}
+		if (fullTextKeys.isEmpty())
+			return;
+
+		vType.createIndex(FULLTEXT_INDEX_NAME, "FULLTEXT", null, null, "LUCENE",
+				fullTextKeys.toArray(new String[fullTextKeys.size()]));
+	}
+
+	private static void createIndex(OrientVertexType vType, List<String> keys,
+			String key, OClass.INDEX_TYPE type)
+	{
+		String name = vType.getName() + "." + key;
+		if (!keys.contains(key) || vType.getClassIndex(name) != null)
+			return;
+		vType.createIndex(name, type, key);
+	}
+
+}
@@ -0,0 +1,74 @@
+package orientdbimporter;
+
+import com.orientechnologies.orient.core.metadata.schema.OProperty;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.tinkerpop.blueprints.impls.orient.OrientVertexType;
+
+/**
+ * The types of vertex properties. Addresses are stored as longs and child
+ * numbers as integers, so that they are compared and indexed as numbers
+ * and take less space than their decimal strings. All other properties
+ * are strings.
+ *
+ * Values are read from files as strings and converted before vertices
+ * are added. Empty numbers are not stored at all.
+ */
+
+public class VertexProperties
+{
+	public static final String ADDR = "addr";
+	public static final String CHILD_NUM = "childNum";
+
+	/**
+	 * Returns the type a property is declared with in a new database.
+	 */
+
+	public static OType typeOf(String key)
+	{
+		switch (key)
+		{
+		case ADDR:
+			return OType.LONG;
+		case CHILD_NUM:
+			return OType.INTEGER;
+		default:
+			return OType.STRING;
+		}
+	}
+
+	/**
+	 * Returns the types of `keys` as declared in the schema of `vType`,
+	 * which may differ from `typeOf` for databases created before
+	 * properties were typed. Undeclared properties are strings.
+	 */
+
+	public static OType[] typesOf(OrientVertexType vType, String[] keys)
+	{
+		OType[] types = new OType[keys.length];
+		for (int i = 0; i < keys.length; i++)
+		{
+			OProperty property = vType.getProperty(keys[i]);
+			types[i] = (property == null) ? OType.STRING : property.getType();
+		}
+		return types;
+	}
+
+	/**
+	 * Converts a value read from a file to `type`. Returns null for empty
+	 * numbers.
+	 */
+
+	public static Object convert(OType type, String value)
+	{
+		switch (type)
+		{
+		case LONG:
+			return value.isEmpty() ? null : Long.valueOf(value);
+		case INTEGER:
+			return value.isEmpty() ? null : Integer.valueOf(value);
+		default:
+			return value;
+		}
+	}
+
+}
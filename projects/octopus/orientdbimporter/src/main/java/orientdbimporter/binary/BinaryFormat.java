@@ -0,0 +1,142 @@
+package orientdbimporter.binary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary graph format, a compact alternative to the CSV files written
+ * by the exporter. Like a CSV file, a binary file holds a table of
+ * strings, the first row of which names the columns.
+ *
+ * Files are gzip-compressed. Decompressed, a file starts with `MAGIC`,
+ * followed by the column names and a dictionary of strings, each a varint
+ * count followed by length-prefixed UTF-8 strings. The remaining file
+ * consists of rows, each prefixed by its length in bytes. A row holds one
+ * value per column, each introduced by a tag:
+ *
+ * - `VALUE_EMPTY`: the empty string.
+ * - `VALUE_COMMAND`: a node command, one byte (`COMMAND_*`).
+ * - `VALUE_NUMBER`: a decimal number, as zigzag-encoded varint.
+ * - `VALUE_BYTES`: a string of hex digits, as raw bytes.
+ * - `VALUE_LITERAL`: a length-prefixed UTF-8 string.
+ * - `VALUE_NODE_KEY`: a node key packed by `NodeKeys`, as zigzag-encoded
+ *   varint.
+ * - `VALUE_TOKENS`: a separator character and a list of tokens, each a
+ *   number (`TOKEN_NUMBER`), a hex number with "0x" prefix
+ *   (`TOKEN_HEX_NUMBER`), a literal (`TOKEN_LITERAL`) or an index into the
+ *   dictionary, offset by `FIRST_DICTIONARY_TOKEN`.
+ *
+ * Encodings are only used if decoding yields the original string, so
+ * every string can be represented.
+ */
+
+public class BinaryFormat
+{
+	public static final String MAGIC = "bjoern-graph-2";
+
+	public static final String NODE_FILENAME = "nodes.bin";
+	public static final String EDGE_FILENAME = "edges.bin";
+	public static final String FILE_EXTENSION = ".bin";
+
+	static final int VALUE_EMPTY = 0;
+	static final int VALUE_COMMAND = 1;
+	static final int VALUE_NUMBER = 2;
+	static final int VALUE_BYTES = 3;
+	static final int VALUE_LITERAL = 4;
+	static final int VALUE_TOKENS = 5;
+	static final int VALUE_NODE_KEY = 6;
+
+	static final int TOKEN_LITERAL = 0;
+	static final int TOKEN_NUMBER = 1;
+	static final int TOKEN_HEX_NUMBER = 2;
+	static final int FIRST_DICTIONARY_TOKEN = 3;
+
+	// Rows are sorted in descending order before they are written, so the
+	// larger code places ANR rows before A rows, as in CSV files.
+	static final int COMMAND_ADD = 1;
+	static final int COMMAND_ADD_NO_REPLACE = 2;
+
+	/**
+	 * Writes `value` as unsigned LEB128 varint.
+	 */
+
+	static void writeVarLong(DataOutput out, long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarLong(DataInput in) throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	static void writeVarInt(DataOutput out, int value) throws IOException
+	{
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static int readVarInt(DataInput in) throws IOException
+	{
+		return (int) readVarLong(in);
+	}
+
+	/**
+	 * Like `readVarInt`, but returns -1 if the input ends before the first
+	 * byte of the varint.
+	 */
+
+	static int readVarIntOrEOF(DataInput in) throws IOException
+	{
+		try
+		{
+			return readVarInt(in);
+		}
+		catch (EOFException e)
+		{
+			return -1;
+		}
+	}
+
+	static void writeSignedVarLong(DataOutput out, long value)
+			throws IOException
+	{
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	static long readSignedVarLong(DataInput in) throws IOException
+	{
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeString(DataOutput out, String str) throws IOException
+	{
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInput in) throws IOException
+	{
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,226 @@
+package orientdbimporter.binary;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import orientdbimporter.CSVCommands;
+import orientdbimporter.NodeKeys;
+
+/**
+ * Decodes single rows of the binary graph format, see `BinaryFormat`.
+ * Empty values are decoded as empty strings, as `CSVReader` returns them.
+ * Decoders are not thread-safe.
+ */
+
+public class BinaryRowDecoder
+{
+	private final int nColumns;
+	private final String[] dictionary;
+
+	private byte[] row;
+	private int rowLength;
+	private int position;
+
+	private final StringBuilder builder = new StringBuilder();
+
+	public BinaryRowDecoder(int nColumns, String[] dictionary)
+	{
+		this.nColumns = nColumns;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Decodes the row stored in the first `length` bytes of `row`.
+	 */
+
+	public String[] decode(byte[] row, int length) throws IOException
+	{
+		return decode(row, length, null);
+	}
+
+	/**
+	 * Like `decode(row, length)`, but stores node keys packed in `keys`
+	 * at the index of their column, leaving their value null, as they are
+	 * passed to `BinaryRowEncoder.encode`. All other elements of `keys` are
+	 * set to `NodeKeys.INVALID`. Keys are rendered if `keys` is null.
+	 */
+
+	public String[] decode(byte[] row, int length, long[] keys)
+			throws IOException
+	{
+		this.row = row;
+		this.rowLength = length;
+		this.position = 0;
+
+		String[] values = new String[nColumns];
+		for (int i = 0; i < values.length; i++)
+		{
+			if (keys == null)
+			{
+				values[i] = readValue();
+				continue;
+			}
+			keys[i] = readPackedKeyOrInvalid();
+			if (keys[i] == NodeKeys.INVALID)
+				values[i] = readValue();
+		}
+
+		if (position != length)
+			throw new IOException("Malformed row");
+		return values;
+	}
+
+	private int readUnsignedByte() throws IOException
+	{
+		if (position == rowLength)
+			throw new IOException("Malformed row");
+		return row[position++] & 0xFF;
+	}
+
+	private long readVarLong() throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	private int readVarInt() throws IOException
+	{
+		return (int) readVarLong();
+	}
+
+	private long readSignedVarLong() throws IOException
+	{
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private String readString() throws IOException
+	{
+		int length = readVarInt();
+		if (length < 0 || length > rowLength - position)
+			throw new IOException("Malformed row");
+		String str = new String(row, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return str;
+	}
+
+	private String readValue() throws IOException
+	{
+		int tag = readUnsignedByte();
+		switch (tag)
+		{
+		case BinaryFormat.VALUE_EMPTY:
+			return "";
+		case BinaryFormat.VALUE_COMMAND:
+			return readCommand();
+		case BinaryFormat.VALUE_NUMBER:
+			return Long.toString(readSignedVarLong());
+		case BinaryFormat.VALUE_BYTES:
+			return readBytes();
+		case BinaryFormat.VALUE_LITERAL:
+			return readString();
+		case BinaryFormat.VALUE_TOKENS:
+			return readTokens();
+		case BinaryFormat.VALUE_NODE_KEY:
+			return readNodeKey();
+		default:
+			throw new IOException("Unknown value tag: " + tag);
+		}
+	}
+
+	private String readNodeKey() throws IOException
+	{
+		return NodeKeys.toString(readPackedKey());
+	}
+
+	private long readPackedKey() throws IOException
+	{
+		long packedKey = readSignedVarLong();
+		if (!NodeKeys.isPacked(packedKey))
+			throw new IOException("Malformed node key");
+		return packedKey;
+	}
+
+	/**
+	 * Reads the next value if it is a packed node key, or returns
+	 * `NodeKeys.INVALID` without reading anything otherwise.
+	 */
+
+	private long readPackedKeyOrInvalid() throws IOException
+	{
+		if (position == rowLength
+				|| (row[position] & 0xFF) != BinaryFormat.VALUE_NODE_KEY)
+			return NodeKeys.INVALID;
+		position++;
+		return readPackedKey();
+	}
+
+	private String readCommand() throws IOException
+	{
+		int command = readUnsignedByte();
+		if (command == BinaryFormat.COMMAND_ADD)
+			return CSVCommands.ADD;
+		if (command == BinaryFormat.COMMAND_ADD_NO_REPLACE)
+			return CSVCommands.ADD_NO_REPLACE;
+		throw new IOException("Unknown command: " + command);
+	}
+
+	private String readBytes() throws IOException
+	{
+		int length = readVarInt();
+		builder.setLength(0);
+		for (int i = 0; i < length; i++)
+		{
+			int b = readUnsignedByte();
+			builder.append(Character.forDigit(b >> 4, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	private String readTokens() throws IOException
+	{
+		char separator = (char) readVarInt();
+		int nTokens = readVarInt();
+
+		builder.setLength(0);
+		for (int i = 0; i < nTokens; i++)
+		{
+			if (i > 0)
+				builder.append(separator);
+			appendToken();
+		}
+		return builder.toString();
+	}
+
+	private void appendToken() throws IOException
+	{
+		int token = readVarInt();
+		switch (token)
+		{
+		case BinaryFormat.TOKEN_LITERAL:
+			builder.append(readString());
+			break;
+		case BinaryFormat.TOKEN_NUMBER:
+			builder.append(readSignedVarLong());
+			break;
+		case BinaryFormat.TOKEN_HEX_NUMBER:
+			builder.append("0x");
+			builder.append(Long.toHexString(readVarLong()));
+			break;
+		default:
+			int index = token - BinaryFormat.FIRST_DICTIONARY_TOKEN;
+			if (index < 0 || index >= dictionary.length)
+				throw new IOException("Invalid dictionary index: " + index);
+			builder.append(dictionary[index]);
+		}
+	}
+
+}
@@ -0,0 +1,365 @@
+package orientdbimporter.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import orientdbimporter.CSVCommands;
+import orientdbimporter.NodeKeys;
+
+/**
+ * Encodes rows of a table in the binary graph format, see `BinaryFormat`.
+ *
+ * Rows are encoded independently of each other, so they can be reordered
+ * before they are written. Tokens are added to the dictionary as they are
+ * first encoded, and the dictionary is written as part of the header
+ * once all rows have been encoded. Encoding is thread-safe.
+ */
+
+public class BinaryRowEncoder
+{
+	private static final int MAX_DICTIONARY_SIZE = 256 * 1024;
+	private static final int MAX_DICTIONARY_TOKEN_LENGTH = 64;
+
+	private final String[] columnNames;
+	private final ColumnType[] columnTypes;
+
+	private final Map<String, Integer> dictionary = new ConcurrentHashMap<String, Integer>();
+	private final List<String> dictionaryTokens = new ArrayList<String>();
+
+	public BinaryRowEncoder(String[] columnNames, ColumnType[] columnTypes)
+	{
+		if (columnNames.length != columnTypes.length)
+			throw new IllegalArgumentException("Need one type per column");
+
+		this.columnNames = columnNames;
+		this.columnTypes = columnTypes;
+	}
+
+	/**
+	 * Encodes a row holding one value per column. Null values are encoded
+	 * as empty strings.
+	 */
+
+	public byte[] encode(String[] values)
+	{
+		return encode(values, null);
+	}
+
+	/**
+	 * Encodes a row like `encode(values)`, except for columns of type
+	 * `KEY` for which `packedKeys` holds a key packed by `NodeKeys`. These
+	 * keys are written as they are, so callers that know the type and
+	 * address of a key need not render it as string. Other elements of
+	 * `packedKeys` must be `NodeKeys.INVALID`.
+	 */
+
+	public byte[] encode(String[] values, long[] packedKeys)
+	{
+		if (values.length != columnTypes.length
+				|| (packedKeys != null && packedKeys.length != columnTypes.length))
+			throw new IllegalArgumentException("Need one value per column");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try
+		{
+			for (int i = 0; i < values.length; i++)
+			{
+				if (packedKeys != null && packedKeys[i] != NodeKeys.INVALID)
+					writePackedKey(out, packedKeys[i], columnTypes[i]);
+				else
+					writeValue(out, values[i], columnTypes[i]);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	public String[] getColumnNames()
+	{
+		return columnNames.clone();
+	}
+
+	/**
+	 * Returns a decoder for rows encoded so far, without writing them to a
+	 * file first.
+	 */
+
+	public BinaryRowDecoder createDecoder()
+	{
+		synchronized (dictionaryTokens)
+		{
+			String[] tokens = dictionaryTokens.toArray(new String[dictionaryTokens.size()]);
+			return new BinaryRowDecoder(columnNames.length, tokens);
+		}
+	}
+
+	/**
+	 * Writes the header, which holds the dictionary. Must be called after
+	 * all rows have been encoded.
+	 */
+
+	public void writeHeader(DataOutput out) throws IOException
+	{
+		out.writeUTF(BinaryFormat.MAGIC);
+
+		BinaryFormat.writeVarInt(out, columnNames.length);
+		for (String name : columnNames)
+			BinaryFormat.writeString(out, name);
+
+		synchronized (dictionaryTokens)
+		{
+			BinaryFormat.writeVarInt(out, dictionaryTokens.size());
+			for (String token : dictionaryTokens)
+				BinaryFormat.writeString(out, token);
+		}
+	}
+
+	public static void writeRow(DataOutput out, byte[] row) throws IOException
+	{
+		BinaryFormat.writeVarInt(out, row.length);
+		out.write(row);
+	}
+
+	private void writeValue(DataOutput out, String value, ColumnType type)
+			throws IOException
+	{
+		if (value == null || value.isEmpty())
+		{
+			out.writeByte(BinaryFormat.VALUE_EMPTY);
+			return;
+		}
+
+		switch (type)
+		{
+		case COMMAND:
+			if (value.equals(CSVCommands.ADD))
+			{
+				writeCommand(out, BinaryFormat.COMMAND_ADD);
+				return;
+			}
+			if (value.equals(CSVCommands.ADD_NO_REPLACE))
+			{
+				writeCommand(out, BinaryFormat.COMMAND_ADD_NO_REPLACE);
+				return;
+			}
+			break;
+		case NUMBER:
+			if (isDecimalNumber(value))
+			{
+				out.writeByte(BinaryFormat.VALUE_NUMBER);
+				BinaryFormat.writeSignedVarLong(out, Long.parseLong(value));
+				return;
+			}
+			break;
+		case BYTES:
+			if (isHexBytes(value))
+			{
+				writeBytes(out, value);
+				return;
+			}
+			break;
+		case LITERAL:
+			break;
+		case KEY:
+			long packedKey = NodeKeys.pack(value);
+			if (packedKey != NodeKeys.INVALID)
+			{
+				writePackedKey(out, packedKey, type);
+				return;
+			}
+			writeTokens(out, value, type.separator);
+			return;
+		default:
+			writeTokens(out, value, type.separator);
+			return;
+		}
+
+		out.writeByte(BinaryFormat.VALUE_LITERAL);
+		BinaryFormat.writeString(out, value);
+	}
+
+	private static void writePackedKey(DataOutput out, long packedKey,
+			ColumnType type) throws IOException
+	{
+		if (type != ColumnType.KEY || !NodeKeys.isPacked(packedKey))
+			throw new IllegalArgumentException("Not a packed node key: " + packedKey);
+
+		out.writeByte(BinaryFormat.VALUE_NODE_KEY);
+		BinaryFormat.writeSignedVarLong(out, packedKey);
+	}
+
+	private void writeCommand(DataOutput out, int command) throws IOException
+	{
+		out.writeByte(BinaryFormat.VALUE_COMMAND);
+		out.writeByte(command);
+	}
+
+	private void writeBytes(DataOutput out, String hex) throws IOException
+	{
+		out.writeByte(BinaryFormat.VALUE_BYTES);
+		BinaryFormat.writeVarInt(out, hex.length() / 2);
+		for (int i = 0; i < hex.length(); i += 2)
+			out.writeByte(Integer.parseInt(hex.substring(i, i + 2), 16));
+	}
+
+	private void writeTokens(DataOutput out, String value, char separator)
+			throws IOException
+	{
+		List<String> tokens = split(value, separator);
+
+		out.writeByte(BinaryFormat.VALUE_TOKENS);
+		BinaryFormat.writeVarInt(out, separator);
+		BinaryFormat.writeVarInt(out, tokens.size());
+		for (String token : tokens)
+			writeToken(out, token);
+	}
+
+	private void writeToken(DataOutput out, String token) throws IOException
+	{
+		if (isDecimalNumber(token))
+		{
+			BinaryFormat.writeVarInt(out, BinaryFormat.TOKEN_NUMBER);
+			BinaryFormat.writeSignedVarLong(out, Long.parseLong(token));
+			return;
+		}
+
+		if (isHexNumber(token))
+		{
+			BinaryFormat.writeVarInt(out, BinaryFormat.TOKEN_HEX_NUMBER);
+			BinaryFormat.writeVarLong(out,
+					Long.parseUnsignedLong(token.substring(2), 16));
+			return;
+		}
+
+		int id = lookupOrAddToDictionary(token);
+		if (id >= 0)
+		{
+			BinaryFormat.writeVarInt(out, BinaryFormat.FIRST_DICTIONARY_TOKEN + id);
+			return;
+		}
+
+		BinaryFormat.writeVarInt(out, BinaryFormat.TOKEN_LITERAL);
+		BinaryFormat.writeString(out, token);
+	}
+
+	/**
+	 * Returns the index of `token` in the dictionary, adding it if there
+	 * is room, or -1 if the token is not in the dictionary.
+	 */
+
+	private int lookupOrAddToDictionary(String token)
+	{
+		Integer id = dictionary.get(token);
+		if (id != null)
+			return id;
+
+		if (token.length() > MAX_DICTIONARY_TOKEN_LENGTH)
+			return -1;
+
+		synchronized (dictionaryTokens)
+		{
+			id = dictionary.get(token);
+			if (id != null)
+				return id;
+
+			if (dictionaryTokens.size() == MAX_DICTIONARY_SIZE)
+				return -1;
+
+			id = dictionaryTokens.size();
+			dictionaryTokens.add(token);
+			dictionary.put(token, id);
+			return id;
+		}
+	}
+
+	/**
+	 * Splits `value` at each occurrence of `separator`, keeping empty
+	 * tokens, so that joining the tokens yields `value`.
+	 */
+
+	static List<String> split(String value, char separator)
+	{
+		List<String> tokens = new ArrayList<String>();
+		if (separator == 0)
+		{
+			tokens.add(value);
+			return tokens;
+		}
+
+		int start = 0;
+		int end;
+		while ((end = value.indexOf(separator, start)) != -1)
+		{
+			tokens.add(value.substring(start, end));
+			start = end + 1;
+		}
+		tokens.add(value.substring(start));
+		return tokens;
+	}
+
+	/**
+	 * Checks whether `str` is a decimal number that `Long.toString` would
+	 * print in exactly this way.
+	 */
+
+	static boolean isDecimalNumber(String str)
+	{
+		int start = str.startsWith("-") ? 1 : 0;
+		int nDigits = str.length() - start;
+		if (nDigits < 1 || nDigits > 18)
+			return false;
+		if (str.charAt(start) == '0' && (nDigits > 1 || start == 1))
+			return false;
+
+		for (int i = start; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether `str` is "0x" followed by a number in lowercase hex
+	 * digits without leading zeros.
+	 */
+
+	static boolean isHexNumber(String str)
+	{
+		int nDigits = str.length() - 2;
+		if (nDigits < 1 || nDigits > 16 || !str.startsWith("0x"))
+			return false;
+		if (str.charAt(2) == '0' && nDigits > 1)
+			return false;
+		return isLowercaseHex(str, 2);
+	}
+
+	static boolean isHexBytes(String str)
+	{
+		return str.length() % 2 == 0 && isLowercaseHex(str, 0);
+	}
+
+	private static boolean isLowercaseHex(String str, int start)
+	{
+		for (int i = start; i < str.length(); i++)
+		{
+			char c = str.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,95 @@
+package orientdbimporter.binary;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import orientdbimporter.NodeKeys;
+import orientdbimporter.PackedKeyRowReader;
+
+/**
+ * Reads files in the binary graph format, see `BinaryFormat`. Rows are
+ * returned as arrays of strings, exactly as `CSVReader` returns the rows
+ * of the corresponding CSV file: the first row holds the column names and
+ * empty values are returned as empty strings. Node keys may also be read
+ * packed, see `PackedKeyRowReader`.
+ */
+
+public class BinaryRowReader implements Closeable, PackedKeyRowReader
+{
+	private final DataInputStream in;
+	private final String[] columnNames;
+	private final BinaryRowDecoder decoder;
+	private boolean columnNamesReturned = false;
+
+	// Rows are read as a whole and decoded from this buffer, which is much
+	// faster than decoding from the stream.
+	private byte[] row = new byte[256];
+
+	public BinaryRowReader(String filename) throws IOException
+	{
+		this(new FileInputStream(filename));
+	}
+
+	public BinaryRowReader(InputStream inputStream) throws IOException
+	{
+		in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(inputStream, 64 * 1024), 64 * 1024));
+
+		if (!BinaryFormat.MAGIC.equals(in.readUTF()))
+			throw new IOException("Not a binary graph file");
+
+		columnNames = new String[BinaryFormat.readVarInt(in)];
+		for (int i = 0; i < columnNames.length; i++)
+			columnNames[i] = BinaryFormat.readString(in);
+
+		String[] dictionary = new String[BinaryFormat.readVarInt(in)];
+		for (int i = 0; i < dictionary.length; i++)
+			dictionary[i] = BinaryFormat.readString(in);
+
+		decoder = new BinaryRowDecoder(columnNames.length, dictionary);
+	}
+
+	/**
+	 * Returns the next row, or null at the end of the file.
+	 */
+
+	@Override
+	public String[] readNext() throws IOException
+	{
+		return readNext(null);
+	}
+
+	@Override
+	public String[] readNext(long[] keys) throws IOException
+	{
+		if (!columnNamesReturned)
+		{
+			columnNamesReturned = true;
+			if (keys != null)
+				Arrays.fill(keys, NodeKeys.INVALID);
+			return columnNames.clone();
+		}
+
+		int length = BinaryFormat.readVarIntOrEOF(in);
+		if (length == -1)
+			return null;
+
+		if (row.length < length)
+			row = new byte[Math.max(length, 2 * row.length)];
+		in.readFully(row, 0, length);
+		return decoder.decode(row, length, keys);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+}
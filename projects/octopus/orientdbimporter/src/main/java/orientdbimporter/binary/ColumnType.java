@@ -0,0 +1,49 @@
+package orientdbimporter.binary;
+
+/**
+ * Selects how the values of a column are encoded in the binary graph
+ * format. Values that cannot be encoded as the column type suggests are
+ * stored as literals.
+ */
+
+public enum ColumnType
+{
+	/** The node command, "A" or "ANR". */
+	COMMAND,
+	/** Decimal numbers such as addresses. */
+	NUMBER,
+	/** Hex strings such as instruction bytes. */
+	BYTES,
+	/** Strings unlikely to repeat, such as comments. */
+	LITERAL,
+	/** Strings from a small set, such as node and edge types. */
+	SYMBOL,
+	/** Node keys such as "Instr_4096", split at underscores. */
+	KEY('_'),
+	/** Text such as disassembly, split at spaces. */
+	TEXT(' '),
+	/** Comma-separated lists such as ESIL expressions. */
+	LIST(',');
+
+	/**
+	 * The character values are split at, or 0 if values are not split.
+	 */
+
+	public final char separator;
+
+	private ColumnType()
+	{
+		this((char) 0);
+	}
+
+	private ColumnType(char separator)
+	{
+		this.separator = separator;
+	}
+
+	public boolean isTokenized()
+	{
+		return this == SYMBOL || separator != 0;
+	}
+
+}
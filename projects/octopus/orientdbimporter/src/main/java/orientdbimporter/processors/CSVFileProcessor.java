@@ -1,12 +1,14 @@
 package orientdbimporter.processors;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
-import com.opencsv.CSVReader;
-
 import orientdbimporter.CSVImporter;
+import orientdbimporter.NodeKeys;
+import orientdbimporter.PackedKeyRowReader;
+import orientdbimporter.RowReader;
+import orientdbimporter.TSVReader;
+import orientdbimporter.binary.BinaryFormat;
+import orientdbimporter.binary.BinaryRowReader;
 
 public abstract class CSVFileProcessor
 {
@@ -17,34 +19,145 @@ public abstract class CSVFileProcessor
 		this.importer = importer;
 	}
 
+	/**
+	 * Processes a CSV file or, if the name of the file ends in
+	 * `BinaryFormat.FILE_EXTENSION`, a binary graph file. CSV files are
+	 * read by a `TSVReader`, whose rows are passed to `processRow` as they
+	 * are, without creating strings for their fields.
+	 */
+
 	public void process(String filename) throws IOException
 	{
-		CSVReader csvReader = getCSVReaderForFile(filename);
+		if (filename.endsWith(BinaryFormat.FILE_EXTENSION))
+		{
+			try (BinaryRowReader binaryReader = new BinaryRowReader(filename))
+			{
+				process(binaryReader);
+			}
+		}
+		else
+		{
+			try (TSVReader tsvReader = new TSVReader(filename))
+			{
+				process(tsvReader);
+			}
+		}
+	}
+
+	/**
+	 * Processes the first row of a file only, e.g., to declare properties
+	 * before the other rows are processed by workers.
+	 */
+
+	public void processHeader(String filename) throws IOException
+	{
+		String[] row;
+		if (filename.endsWith(BinaryFormat.FILE_EXTENSION))
+		{
+			try (BinaryRowReader binaryReader = new BinaryRowReader(filename))
+			{
+				row = binaryReader.readNext();
+			}
+		}
+		else
+		{
+			try (TSVReader tsvReader = new TSVReader(filename))
+			{
+				row = tsvReader.next() ? tsvReader.getRow() : null;
+			}
+		}
+
+		if (row == null)
+			throw new RuntimeException("File must contain at least one line");
+		processFirstRow(row);
+	}
+
+	public void process(RowReader reader) throws IOException
+	{
+		if (reader instanceof PackedKeyRowReader)
+		{
+			process((PackedKeyRowReader) reader);
+			return;
+		}
 
-		String[] row = csvReader.readNext();
+		String[] row = reader.readNext();
 		if (row == null)
 			throw new RuntimeException("File must contain at least one line");
 
-		processFirstRow(csvReader, row);
+		processFirstRow(row);
 
-		while ((row = csvReader.readNext()) != null)
+		while ((row = reader.readNext()) != null)
 		{
 			processRow(row);
 		}
 	}
 
-	protected abstract void processFirstRow(CSVReader csvReader, String[] row)
-			throws IOException;
+	/**
+	 * Processes rows the node keys of which may be packed. Their rows are
+	 * passed to `processRow(row, keys)`.
+	 */
+
+	public void process(PackedKeyRowReader reader) throws IOException
+	{
+		String[] row = reader.readNext();
+		if (row == null)
+			throw new RuntimeException("File must contain at least one line");
+
+		processFirstRow(row);
+
+		long[] keys = new long[row.length];
+		while ((row = reader.readNext(keys)) != null)
+		{
+			processRow(row, keys);
+		}
+	}
+
+	public void process(TSVReader reader) throws IOException
+	{
+		if (!reader.next())
+			throw new RuntimeException("File must contain at least one line");
+
+		processFirstRow(reader.getRow());
+
+		while (reader.next())
+		{
+			processRow(reader);
+		}
+	}
+
+	protected abstract void processFirstRow(String[] row) throws IOException;
 
 	protected abstract void processRow(String[] row);
 
-	private CSVReader getCSVReaderForFile(String filename)
-			throws FileNotFoundException
+	/**
+	 * Processes the current row of `reader`. Processors that do not need
+	 * all fields as strings override this method.
+	 */
+
+	protected void processRow(TSVReader reader)
+	{
+		processRow(reader.getRow());
+	}
+
+	/**
+	 * Processes a row, the node keys of which are packed in `keys` as
+	 * returned by `PackedKeyRowReader`. Processors that can use packed
+	 * keys override this method, by default they are rendered.
+	 */
+
+	protected void processRow(String[] row, long[] keys)
 	{
-		CSVReader reader;
-		FileReader fileReader = new FileReader(filename);
-		reader = new CSVReader(fileReader, '\t');
-		return reader;
+		processRow(renderKeys(row, keys));
+	}
+
+	protected static String[] renderKeys(String[] row, long[] keys)
+	{
+		for (int i = 0; i < row.length; i++)
+		{
+			if (keys[i] != NodeKeys.INVALID)
+				row[i] = NodeKeys.toString(keys[i]);
+		}
+		return row;
 	}
 
 	protected String[] rowToKeys(String[] row)
@@ -5,12 +5,13 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.opencsv.CSVReader;
 import com.tinkerpop.blueprints.Edge;
-import com.tinkerpop.blueprints.Graph;
-import com.tinkerpop.blueprints.Vertex;
 
 import orientdbimporter.CSVImporter;
+import orientdbimporter.NodeKeys;
+import orientdbimporter.RidTable;
+import orientdbimporter.TSVReader;
+import orientdbimporter.VertexIds;
 
 public class EdgeProcessor extends CSVFileProcessor
 {
@@ -23,8 +24,7 @@ public class EdgeProcessor extends CSVFileProcessor
 	}
 
 	@Override
-	protected void processFirstRow(CSVReader csvReader, String[] row)
-			throws IOException
+	protected void processFirstRow(String[] row) throws IOException
 	{
 		initializeEdgeKeys(row);
 	}
@@ -45,26 +45,24 @@ public class EdgeProcessor extends CSVFileProcessor
 		String dstId = row[1];
 		String label = row[2];
 
-		Graph graph = importer.getGraph();
+		Object outVertexId = importer.getVertexIds().get(srcId);
+		Object inVertexId = importer.getVertexIds().get(dstId);
 
-		Vertex outVertex = lookupVertex(srcId, graph);
-		Vertex inVertex = lookupVertex(dstId, graph);
-
-		if (outVertex == null)
+		if (outVertexId == null)
 		{
 			logger.info("Cannot resolve source node {} for {} -> {}", srcId,
 					srcId, dstId);
 			return;
 		}
 
-		if (inVertex == null)
+		if (inVertexId == null)
 		{
 			logger.info("Cannot resolve destination node {} for {} -> {}",
 					dstId, srcId, dstId);
 			return;
 		}
 
-		Edge edge = graph.addEdge(0, outVertex, inVertex, label);
+		Edge edge = importer.addEdge(outVertexId, inVertexId, label);
 
 		for (int i = 3; i < row.length; i++)
 		{
@@ -72,9 +70,70 @@ public class EdgeProcessor extends CSVFileProcessor
 		}
 	}
 
-	protected Vertex lookupVertex(String id, Graph batchGraph)
+	/**
+	 * Resolves the keys of source and destination without creating
+	 * strings for them.
+	 */
+
+	@Override
+	protected void processRow(TSVReader row)
+	{
+		if (row.getFieldCount() < 3)
+			return;
+
+		VertexIds vertexIds = importer.getVertexIds();
+		Object outVertexId = vertexIds.get(row.getChars(0));
+		Object inVertexId = vertexIds.get(row.getChars(1));
+
+		if (outVertexId == null || inVertexId == null)
+		{
+			// logs the keys that cannot be resolved
+			processRow(row.getRow());
+			return;
+		}
+
+		Edge edge = importer.addEdge(outVertexId, inVertexId, row.getString(2));
+
+		for (int i = 3; i < row.getFieldCount(); i++)
+		{
+			edge.setProperty(importer.getEdgeKeys()[i], row.getString(i));
+		}
+	}
+
+	/**
+	 * Resolves packed keys of source and destination without rendering
+	 * them. Record ids are only created for edges that are added.
+	 */
+
+	@Override
+	protected void processRow(String[] row, long[] keys)
 	{
-		return batchGraph.getVertex(id);
+		if (row.length < 3 || keys[0] == NodeKeys.INVALID
+				|| keys[1] == NodeKeys.INVALID)
+		{
+			super.processRow(row, keys);
+			return;
+		}
+
+		VertexIds vertexIds = importer.getVertexIds();
+		long outRid = vertexIds.getRid(keys[0]);
+		long inRid = vertexIds.getRid(keys[1]);
+
+		if (outRid == RidTable.NO_RID || inRid == RidTable.NO_RID)
+		{
+			// resolves ids that cannot be packed, or logs the keys that
+			// cannot be resolved
+			super.processRow(row, keys);
+			return;
+		}
+
+		Edge edge = importer.addEdge(VertexIds.toRecordId(outRid),
+				VertexIds.toRecordId(inRid), row[2]);
+
+		for (int i = 3; i < row.length; i++)
+		{
+			edge.setProperty(importer.getEdgeKeys()[i], row[i]);
+		}
 	}
 
 }
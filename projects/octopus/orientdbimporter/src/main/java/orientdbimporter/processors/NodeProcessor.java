@@ -2,22 +2,23 @@ package orientdbimporter.processors;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 
-import com.opencsv.CSVReader;
 import com.orientechnologies.orient.core.metadata.schema.OType;
-import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientVertexType;
-import com.tinkerpop.blueprints.util.wrappers.batch.BatchGraph;
 
 import orientdbimporter.CSVCommands;
 import orientdbimporter.CSVImporter;
 import orientdbimporter.Constants;
+import orientdbimporter.NodeKeys;
+import orientdbimporter.TSVReader;
+import orientdbimporter.VertexIds;
+import orientdbimporter.VertexProperties;
 
 public class NodeProcessor extends CSVFileProcessor
 {
+	// the types of the vertex properties, in column order
+	private OType[] propertyTypes;
 
 	public NodeProcessor(CSVImporter importer)
 	{
@@ -25,12 +26,13 @@ public class NodeProcessor extends CSVFileProcessor
 	}
 
 	@Override
-	protected void processFirstRow(CSVReader csvReader, String[] row)
-			throws IOException
+	protected void processFirstRow(String[] row) throws IOException
 	{
 
 		initializeVertexKeys(row);
-		createPropertiesAndIndices();
+		createProperties();
+		propertyTypes = VertexProperties.typesOf(
+				importer.getNoTx().getVertexType("V"), importer.getVertexKeys());
 
 	}
 
@@ -43,7 +45,12 @@ public class NodeProcessor extends CSVFileProcessor
 		importer.setVertexKeys(keys);
 	}
 
-	private void createPropertiesAndIndices()
+	/**
+	 * Declares the vertex properties of a new database. Indices are only
+	 * created once all vertices have been imported, see `VertexIndexes`.
+	 */
+
+	private void createProperties()
 	{
 
 		if (!importer.isNewDatabase())
@@ -51,24 +58,12 @@ public class NodeProcessor extends CSVFileProcessor
 
 		OrientVertexType vType = importer.getNoTx().getVertexType("V");
 
-
-		for (String key : importer.getVertexKeys())
-		{
-			vType.createProperty(key, OType.STRING);
-		}
-
-		List<String> keysToIndex = new LinkedList<String>();
 		for (String key : importer.getVertexKeys())
 		{
-			keysToIndex.add(key);
+			// node files of several shards declare the same properties
+			if (vType.getProperty(key) == null)
+				vType.createProperty(key, VertexProperties.typeOf(key));
 		}
-
-		String[] indexKeys = new String[keysToIndex.size()];
-		keysToIndex.sort(null);
-		keysToIndex.toArray(indexKeys);
-
-		vType.createIndex("nodeIndex.", "FULLTEXT", null, null, "LUCENE",
-				indexKeys);
 	}
 
 	@Override
@@ -83,15 +78,12 @@ public class NodeProcessor extends CSVFileProcessor
 
 		// TODO: handling of different commands
 
-		String[] properties = new String[2 * (row.length -1)];
+		Object[] props = new Object[2 * (row.length - 1)];
+		int nProps = 0;
 		for (int i = 1; i < row.length; i++)
-		{
-			// We subtract 1 here when accessing vertex keys because
-			// the first key (command) is discarded.
-			properties[2 *(i-1)] = importer.getVertexKeys()[i - 1];
-			properties[2 *(i-1) + 1] = row[i];
-		}
-		Object[] props = properties;
+			nProps = putProperty(props, nProps, i, row[i]);
+		if (nProps < props.length)
+			props = Arrays.copyOf(props, nProps);
 
 		if(command.equals(CSVCommands.ADD))
 			addNodeToGraph(id, props);
@@ -100,6 +92,93 @@ public class NodeProcessor extends CSVFileProcessor
 
 	}
 
+	/**
+	 * Creates strings only for nodes that are added, not for nodes that
+	 * exist and must not be replaced, which are frequent for root nodes.
+	 */
+
+	@Override
+	protected void processRow(TSVReader row)
+	{
+		boolean add = row.fieldEquals(0, CSVCommands.ADD);
+		if (!add && !row.fieldEquals(0, CSVCommands.ADD_NO_REPLACE))
+			return;
+		if (!add && importer.getVertexIds().contains(row.getChars(1)))
+			return;
+
+		String id = row.getString(1);
+		Object[] props = new Object[2 * (row.getFieldCount() - 1)];
+		int nProps = putProperty(props, 0, 1, id);
+		for (int i = 2; i < row.getFieldCount(); i++)
+			nProps = putProperty(props, nProps, i, row.getString(i));
+		if (nProps < props.length)
+			props = Arrays.copyOf(props, nProps);
+
+		if (add)
+			addNodeToGraph(id, props);
+		else
+			addNodeToGraphNoReplace(id, props);
+	}
+
+	/**
+	 * Looks up and stores packed keys without parsing them. The key is
+	 * only rendered for the key property of a vertex that is added.
+	 */
+
+	@Override
+	protected void processRow(String[] row, long[] keys)
+	{
+		if (row.length < 2 || keys[1] == NodeKeys.INVALID)
+		{
+			super.processRow(row, keys);
+			return;
+		}
+
+		boolean add = row[0].equals(CSVCommands.ADD);
+		if (!add && !row[0].equals(CSVCommands.ADD_NO_REPLACE))
+			return;
+		VertexIds vertexIds = importer.getVertexIds();
+		if (vertexIds.contains(keys[1]))
+		{
+			// alternatives of existing nodes are created as usual
+			if (add)
+				processRow(renderKeys(row, keys));
+			return;
+		}
+
+		Object[] props = new Object[2 * (row.length - 1)];
+		int nProps = 0;
+		for (int i = 1; i < row.length; i++)
+		{
+			String value = (keys[i] == NodeKeys.INVALID) ? row[i]
+					: NodeKeys.toString(keys[i]);
+			nProps = putProperty(props, nProps, i, value);
+		}
+		if (nProps < props.length)
+			props = Arrays.copyOf(props, nProps);
+
+		vertexIds.put(keys[1], importer.addVertex(props).getId());
+	}
+
+	/**
+	 * Adds the key and the converted value of `column` to `props` at
+	 * `nProps`, unless the value is empty, and returns the new number of
+	 * elements of `props`. The first column holds the command, so the key
+	 * of a column is found at the previous index.
+	 */
+
+	private int putProperty(Object[] props, int nProps, int column, String value)
+	{
+		Object converted = VertexProperties.convert(propertyTypes[column - 1],
+				value);
+		if (converted == null)
+			return nProps;
+
+		props[nProps++] = importer.getVertexKeys()[column - 1];
+		props[nProps++] = converted;
+		return nProps;
+	}
+
 	private void addNodeToGraph(String id, Object[] props)
 	{
 		doAddNodeToGraph(id, props, 0);
@@ -107,8 +186,6 @@ public class NodeProcessor extends CSVFileProcessor
 
 	private void doAddNodeToGraph(String baseId, Object[] props, int num)
 	{
-		BatchGraph<?> batchGraph = (BatchGraph<?>) importer.getGraph();
-
 		if(num == Constants.MAX_NODES_FOR_KEY)
 			throw new RuntimeException("Too many nodes with the same key: " + baseId);
 
@@ -118,25 +195,38 @@ public class NodeProcessor extends CSVFileProcessor
 
 		String completeId = createCompleteId(baseId, num);
 
-		try {
-			batchGraph.addVertex(completeId, props);
-
+		if (tryToAddVertex(completeId, props)) {
 			if(num != 0){
 				linkToPreviousNode(baseId, num);
 			}
-
-		} catch (IllegalArgumentException e) {
+		} else {
 			doAddNodeToGraph(baseId, props, num + 1);
 		}
 	}
 
+	/**
+	 * Adds a vertex for the node `id`, unless a vertex for a node of the
+	 * same id has been added before.
+	 */
+
+	private boolean tryToAddVertex(String id, Object[] props)
+	{
+		VertexIds vertexIds = importer.getVertexIds();
+		if (vertexIds.contains(id))
+			return false;
+
+		Vertex vertex = importer.addVertex(props);
+		vertexIds.put(id, vertex.getId());
+		return true;
+	}
+
 	private String createCompleteId(String baseId, int num)
 	{
 		String completeId;
 		if(num == 0)
 			completeId = baseId;
 		else
-			completeId = String.format("%s_%d", baseId, num);
+			completeId = baseId + "_" + num;
 		return completeId;
 	}
 
@@ -145,24 +235,13 @@ public class NodeProcessor extends CSVFileProcessor
 		String previousId = createCompleteId(baseId, num -1);
 		String thisId = createCompleteId(baseId, num);
 
-		Graph graph = importer.getGraph();
-
-		Vertex fromNode = graph.getVertex(previousId);
-		Vertex toNode = graph.getVertex(thisId);
-
-		graph.addEdge(0, fromNode, toNode, "foo");
+		VertexIds vertexIds = importer.getVertexIds();
+		importer.addEdge(vertexIds.get(previousId), vertexIds.get(thisId), "foo");
 	}
 
 	private void addNodeToGraphNoReplace(String id, Object[] props)
 	{
-		String completeId = createCompleteId(id, 0);
-		BatchGraph<?> batchGraph = (BatchGraph<?>) importer.getGraph();
-
-		try{
-			batchGraph.addVertex(completeId, props);
-		}catch (IllegalArgumentException e) {
-			return;
-		}
+		tryToAddVertex(createCompleteId(id, 0), props);
 	}
 
 }
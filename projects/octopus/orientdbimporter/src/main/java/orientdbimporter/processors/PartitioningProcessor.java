@@ -0,0 +1,56 @@
+package orientdbimporter.processors;
+
+import java.io.IOException;
+import java.util.List;
+
+import orientdbimporter.CSVImporter;
+import orientdbimporter.ImportWorker;
+import orientdbimporter.KeyPartitioner;
+
+/**
+ * Passes the rows of a file to the workers of a parallel import, each row
+ * to the worker of the partition of the key in column `keyColumn`, so that
+ * all rows of a key are processed by one worker in file order. The header
+ * row is processed by `headerProcessor`, which declares the properties,
+ * and passed to all workers.
+ */
+
+public class PartitioningProcessor extends CSVFileProcessor
+{
+	private final CSVFileProcessor headerProcessor;
+	private final List<ImportWorker> workers;
+	private final KeyPartitioner partitioner;
+	private final int keyColumn;
+
+	public PartitioningProcessor(CSVImporter importer,
+			CSVFileProcessor headerProcessor, List<ImportWorker> workers,
+			KeyPartitioner partitioner, int keyColumn)
+	{
+		super(importer);
+		this.headerProcessor = headerProcessor;
+		this.workers = workers;
+		this.partitioner = partitioner;
+		this.keyColumn = keyColumn;
+	}
+
+	@Override
+	protected void processFirstRow(String[] row) throws IOException
+	{
+		headerProcessor.processFirstRow(row);
+		for (ImportWorker worker : workers)
+			worker.submit(row);
+	}
+
+	@Override
+	protected void processRow(String[] row)
+	{
+		// rows without key are skipped by the workers
+		if (row.length <= keyColumn)
+		{
+			workers.get(0).submit(row);
+			return;
+		}
+		workers.get(partitioner.partition(row[keyColumn])).submit(row);
+	}
+
+}
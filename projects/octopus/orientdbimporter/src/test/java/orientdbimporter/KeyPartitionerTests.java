@@ -0,0 +1,69 @@
+package orientdbimporter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KeyPartitionerTests
+{
+	private static final String[] TYPES = { "Root", "Func", "BB", "Instr",
+			"var", "arg", "Flag" };
+
+	private static void assertSamePartition(KeyPartitioner partitioner,
+			long packedKey)
+	{
+		String key = NodeKeys.toString(packedKey);
+		assertEquals(key, partitioner.partition(key),
+				partitioner.partition(packedKey));
+	}
+
+	private static void assertPackedKeysArePartitionedAsRenderedKeys(
+			KeyPartitioner partitioner)
+	{
+		Random random = new Random(42);
+
+		for (int i = 0; i < 10000; i++)
+		{
+			String type = TYPES[random.nextInt(TYPES.length)];
+			long address = random.nextLong() >> 16;
+			int counter = random.nextInt(3);
+			assertSamePartition(partitioner,
+					NodeKeys.pack(type, address, counter));
+		}
+
+		for (long address : new long[] { 0, 1, 9, 10, 99, 100, -1, -10,
+				4198400, 4202496, 4206592, (1L << 47) - 1, -(1L << 47) })
+		{
+			assertSamePartition(partitioner, NodeKeys.pack("Instr", address, 0));
+			assertSamePartition(partitioner, NodeKeys.pack("Flag", address, 0));
+		}
+	}
+
+	@Test
+	public void testPackedKeysArePartitionedAsRenderedKeys()
+	{
+		assertPackedKeysArePartitionedAsRenderedKeys(new KeyPartitioner(7));
+	}
+
+	@Test
+	public void testPackedKeysAreAssignedToShardsAsRenderedKeys()
+	{
+		ShardManifest manifest = new ShardManifest();
+		manifest.addShard(new ShardManifest.Shard(ShardManifest.GLOBAL_SHARD,
+				null, null, "global.nodes", "global.edges"));
+		manifest.addShard(new ShardManifest.Shard("0", null, 4202496L,
+				"0.nodes", "0.edges"));
+		manifest.addShard(new ShardManifest.Shard("1", 4202496L, 4206592L,
+				"1.nodes", "1.edges"));
+		manifest.addShard(new ShardManifest.Shard("2", 4206592L, null,
+				"2.nodes", "2.edges"));
+		ShardPartitioner partitioner = new ShardPartitioner(manifest);
+
+		assertPackedKeysArePartitionedAsRenderedKeys(partitioner);
+		assertEquals(0, partitioner.partition(NodeKeys.pack("Flag", 4202496, 0)));
+		assertEquals(2, partitioner.partition(NodeKeys.pack("Instr", 4202496, 0)));
+	}
+
+}
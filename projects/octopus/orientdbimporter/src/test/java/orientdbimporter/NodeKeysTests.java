@@ -0,0 +1,101 @@
+package orientdbimporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NodeKeysTests
+{
+	// the largest and smallest addresses that fit into 48 bits
+	private static final long MAX_ADDRESS = (1L << 47) - 1;
+	private static final long MIN_ADDRESS = -(1L << 47);
+
+	private static void assertRoundTrip(String key)
+	{
+		long packed = NodeKeys.pack(key);
+		assertNotEquals(key, NodeKeys.INVALID, packed);
+		assertTrue(NodeKeys.isPacked(packed));
+		assertEquals(key, NodeKeys.toString(packed));
+	}
+
+	private static void assertNotPacked(String key)
+	{
+		assertEquals(key, NodeKeys.INVALID, NodeKeys.pack(key));
+	}
+
+	@Test
+	public void testKeysRoundTrip()
+	{
+		assertRoundTrip("Instr_4198400");
+		assertRoundTrip("Root_0");
+		assertRoundTrip("var_4198400_1");
+		assertRoundTrip("Aloc_1_255");
+		assertRoundTrip("BB_-1");
+		assertRoundTrip("Func_-4294967296");
+		assertRoundTrip("Flag_" + MAX_ADDRESS);
+		assertRoundTrip("Flag_" + MIN_ADDRESS);
+	}
+
+	@Test
+	public void testNonCanonicalKeysAreNotPacked()
+	{
+		assertNotPacked("Flag_" + (MAX_ADDRESS + 1));
+		assertNotPacked("Flag_" + (MIN_ADDRESS - 1));
+		assertNotPacked("Instr_5_0");
+		assertNotPacked("Instr_5_256");
+		assertNotPacked("Instr_5_01");
+		assertNotPacked("Instr_007");
+		assertNotPacked("Instr_-0");
+		assertNotPacked("Instr_");
+		assertNotPacked("Instr_5_");
+		assertNotPacked("Instr_0x10");
+		assertNotPacked("Instr");
+		assertNotPacked("Other_1");
+		assertNotPacked("instr_1");
+		assertNotPacked("_1");
+	}
+
+	@Test
+	public void testTypeAndAddressPackLikeTheirString()
+	{
+		assertEquals(NodeKeys.pack("Instr_4198400"),
+				NodeKeys.pack("Instr", 4198400, 0));
+		assertEquals(NodeKeys.pack("var_-12_3"), NodeKeys.pack("var", -12, 3));
+		assertEquals(NodeKeys.pack("Aloc_" + MIN_ADDRESS + "_255"),
+				NodeKeys.pack("Aloc", MIN_ADDRESS, 255));
+
+		assertEquals(NodeKeys.INVALID, NodeKeys.pack("Other", 1, 0));
+		assertEquals(NodeKeys.INVALID, NodeKeys.pack("Instr", MAX_ADDRESS + 1, 0));
+		assertEquals(NodeKeys.INVALID, NodeKeys.pack("Instr", 1, 256));
+		assertEquals(NodeKeys.INVALID, NodeKeys.pack("Instr", 1, -1));
+	}
+
+	/**
+	 * Type codes are stored in binary files and must never change.
+	 */
+
+	@Test
+	public void testTypeCodesAreStable()
+	{
+		assertEquals((256L << 16) | (1 << 8), NodeKeys.pack("Root_256"));
+		assertEquals((5L << 16) | (5 << 8) | 2, NodeKeys.pack("Instr_5_2"));
+		assertEquals((1L << 16) | (8 << 8), NodeKeys.pack("Aloc_1"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownTypeCodesCannotBeRendered()
+	{
+		NodeKeys.toString((1L << 16) | (9 << 8));
+	}
+
+	@Test
+	public void testInvalidIsNotPacked()
+	{
+		assertFalse(NodeKeys.isPacked(NodeKeys.INVALID));
+		assertFalse(NodeKeys.isPacked(1L << 16));
+	}
+
+}
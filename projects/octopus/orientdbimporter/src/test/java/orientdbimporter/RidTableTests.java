@@ -0,0 +1,148 @@
+package orientdbimporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RidTableTests
+{
+	private static final int MAX_CLUSTER_ID = 0x7FFF;
+	private static final long MAX_POSITION = (1L << 48) - 1;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path tempDir;
+
+	@Before
+	public void createTempDir() throws IOException
+	{
+		tempDir = tempFolder.newFolder("rids").toPath();
+	}
+
+	private long countFiles() throws IOException
+	{
+		try (Stream<Path> files = Files.list(tempDir))
+		{
+			return files.count();
+		}
+	}
+
+	@Test
+	public void testGetAndPutAcrossGrowth() throws IOException
+	{
+		// grows the table from 2^16 to 2^20 entries
+		int n = 500000;
+		try (RidTable table = new RidTable(tempDir))
+		{
+			for (int i = 1; i <= n; i++)
+				table.put(NodeKeys.pack("Instr", 4198400 + i, 0),
+						RidTable.pack(i % 10, i));
+
+			assertEquals(n, table.size());
+			for (int i = 1; i <= n; i++)
+			{
+				long rid = table.get(NodeKeys.pack("Instr", 4198400 + i, 0));
+				assertEquals(i % 10, RidTable.clusterId(rid));
+				assertEquals(i, RidTable.clusterPosition(rid));
+			}
+			assertEquals(RidTable.NO_RID,
+					table.get(NodeKeys.pack("Instr", 4198400 + n + 1, 0)));
+		}
+		// the files replaced by growing are deleted as well
+		assertEquals(0, countFiles());
+	}
+
+	@Test
+	public void testCollidingKeys() throws IOException
+	{
+		long mask = RidTable.INITIAL_CAPACITY - 1;
+		long first = NodeKeys.pack("BB", 1, 0);
+		long slot = RidTable.slotOf(first, mask);
+
+		long[] colliding = new long[4];
+		colliding[0] = first;
+		int found = 1;
+		for (long address = 2; found < colliding.length; address++)
+		{
+			long key = NodeKeys.pack("BB", address, 0);
+			if (RidTable.slotOf(key, mask) == slot)
+				colliding[found++] = key;
+		}
+
+		try (RidTable table = new RidTable(tempDir))
+		{
+			for (int i = 0; i < colliding.length; i++)
+				table.put(colliding[i], RidTable.pack(9, i));
+			for (int i = 0; i < colliding.length; i++)
+				assertEquals(RidTable.pack(9, i), table.get(colliding[i]));
+
+			// updating a key in the middle of the chain keeps the others
+			table.put(colliding[1], RidTable.pack(10, 1));
+			assertEquals(colliding.length, table.size());
+			assertEquals(RidTable.pack(10, 1), table.get(colliding[1]));
+			assertEquals(RidTable.pack(9, 2), table.get(colliding[2]));
+		}
+	}
+
+	@Test
+	public void testOverwriteKeepsSize() throws IOException
+	{
+		long key = NodeKeys.pack("Func_4198400");
+		try (RidTable table = new RidTable(tempDir))
+		{
+			table.put(key, RidTable.pack(9, 0));
+			table.put(key, RidTable.pack(9, 1));
+			assertEquals(1, table.size());
+			assertEquals(RidTable.pack(9, 1), table.get(key));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroKeyIsRejected() throws IOException
+	{
+		try (RidTable table = new RidTable(tempDir))
+		{
+			table.put(NodeKeys.INVALID, RidTable.pack(9, 0));
+		}
+	}
+
+	@Test
+	public void testPackLimits()
+	{
+		long rid = RidTable.pack(MAX_CLUSTER_ID, MAX_POSITION);
+		assertFalse(rid == RidTable.NO_RID);
+		assertEquals(MAX_CLUSTER_ID, RidTable.clusterId(rid));
+		assertEquals(MAX_POSITION, RidTable.clusterPosition(rid));
+
+		rid = RidTable.pack(0, 0);
+		assertEquals(0, RidTable.clusterId(rid));
+		assertEquals(0, RidTable.clusterPosition(rid));
+
+		assertEquals(RidTable.NO_RID, RidTable.pack(MAX_CLUSTER_ID + 1, 0));
+		assertEquals(RidTable.NO_RID, RidTable.pack(0, MAX_POSITION + 1));
+		assertEquals(RidTable.NO_RID, RidTable.pack(-1, 0));
+		assertEquals(RidTable.NO_RID, RidTable.pack(0, -1));
+	}
+
+	@Test
+	public void testFileIsDeletedOnClose() throws IOException
+	{
+		// on some systems the file is unlinked right after it is opened
+		RidTable table = new RidTable(tempDir);
+		table.put(NodeKeys.pack("Root_0"), RidTable.pack(9, 0));
+		assertEquals(1, table.size());
+		table.close();
+		assertEquals(0, countFiles());
+	}
+
+}
@@ -0,0 +1,134 @@
+package orientdbimporter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.opencsv.CSVReader;
+
+public class TSVReaderTests
+{
+	private static final String[] ALPHABET = { "a", "b", "0", " ", "\t", "\"",
+			"\\", "\r", "\n", "\r\n", "é", "😀" };
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException
+	{
+		file = tempFolder.newFile("tsv.csv").toPath();
+	}
+
+	private void write(String content) throws IOException
+	{
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads the file with both readers and checks that they return the
+	 * same rows.
+	 */
+
+	private void assertReadAsByCSVReader(int windowSize) throws IOException
+	{
+		try (CSVReader expected = new CSVReader(new InputStreamReader(
+				new FileInputStream(file.toFile()), StandardCharsets.UTF_8), '\t');
+				TSVReader actual = new TSVReader(file.toString(), windowSize))
+		{
+			String[] row;
+			while ((row = expected.readNext()) != null)
+				assertArrayEquals(row, actual.readNext());
+			assertNull(actual.readNext());
+		}
+	}
+
+	/**
+	 * Escapes a value as the exporter's `CSVWriter` does: backslashes are
+	 * doubled and values containing commas, quotes or line breaks are
+	 * quoted, with quotes doubled.
+	 */
+
+	private static String escape(String value)
+	{
+		boolean quote = value.matches("(?s).*[,\"\r\n].*");
+		String escaped = value.replace("\\", "\\\\");
+		if (!quote)
+			return escaped;
+		return "\"" + escaped.replace("\"", "\"\"") + "\"";
+	}
+
+	@Test
+	public void testNodeLinesAreReadAsByCSVReader() throws IOException
+	{
+		StringBuilder content = new StringBuilder(
+				"command\tkey\tnodeType\taddr\trepr\tcomment\n");
+		for (String repr : new String[] { "mov eax, 1", "\"quoted\"",
+				"a\\b", "\\start", "end\\", "line\nbreak", "tab\there", "" })
+		{
+			content.append(CSVCommands.ADD).append("\tInstr_").append(repr.length())
+					.append("\tInstr\t").append(repr.length()).append('\t')
+					.append(escape(repr)).append('\t')
+					.append(escape("; é, \"x\"")).append('\n');
+		}
+		write(content.toString());
+
+		assertReadAsByCSVReader(1 << 16);
+	}
+
+	@Test
+	public void testRandomFilesAreReadAsByCSVReader() throws IOException
+	{
+		Random random = new Random(42);
+		for (int n = 0; n < 500; n++)
+		{
+			StringBuilder content = new StringBuilder();
+			int length = random.nextInt(120);
+			for (int i = 0; i < length; i++)
+				content.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+			write(content.toString());
+
+			// small windows make rows cross their ends
+			assertReadAsByCSVReader(1 + random.nextInt(32));
+		}
+	}
+
+	@Test
+	public void testFieldsCanBeReadWithoutStrings() throws IOException
+	{
+		write("A\tInstr_5\t\"x\"\"y\"\nANR\tFlag_é\n");
+
+		try (TSVReader reader = new TSVReader(file.toString()))
+		{
+			assertTrue(reader.next());
+			assertEquals(3, reader.getFieldCount());
+			assertTrue(reader.fieldEquals(0, CSVCommands.ADD));
+			assertFalse(reader.fieldEquals(0, CSVCommands.ADD_NO_REPLACE));
+			assertEquals("Instr_5", reader.getChars(1).toString());
+			assertEquals("x\"y", reader.getString(2));
+
+			assertTrue(reader.next());
+			assertTrue(reader.fieldEquals(0, CSVCommands.ADD_NO_REPLACE));
+			assertEquals("Flag_é", reader.getChars(1).toString());
+			assertFalse(reader.next());
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package bjoern.input.common.outputModules.CSV;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bjoern.input.common.outputModules.NodeRecord;
+import bjoern.structures.BjoernNodeProperties;
+import orientdbimporter.CSVCommands;
+
+/**
+ * Compares the cost of turning an instruction into a line of `nodes.csv`
+ * via a `NodeRecord` with the former approach of a property map per node.
+ * Run with `gradle jmh -Pargs="NodeLineBenchmark -prof gc"` to see the
+ * bytes allocated per node (gc.alloc.rate.norm).
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeLineBenchmark
+{
+	private static final String REPR = "mov dword [ebp - 0xc], eax";
+	private static final String CODE = "8945f4";
+	private static final String COMMENT = "; var int local_c";
+	private static final String ESIL = "eax,0xc,ebp,-,=[4]";
+
+	private Path outputDir;
+	private CSVWriter writer;
+	private NodeRecord record;
+	private long address = 0x8048000;
+	private int childNum = 0;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		outputDir = Files.createTempDirectory("benchmark");
+		writer = new CSVWriter(outputDir.toString());
+		record = new NodeRecord();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		writer.finish();
+		Files.delete(outputDir.resolve("nodes.csv"));
+		Files.delete(outputDir.resolve("edges.csv"));
+		Files.delete(outputDir);
+	}
+
+	@Benchmark
+	public String nodeRecord()
+	{
+		address += 2;
+		record.clear().setNode("Instr", address);
+		record.set(NodeRecord.CHILD_NUM, childNum++ & 0xF);
+		record.set(NodeRecord.REPR, REPR);
+		record.set(NodeRecord.CODE, CODE);
+		record.set(NodeRecord.COMMENT, COMMENT);
+		record.set(NodeRecord.ESIL, ESIL);
+		return writer.generateNodeLine(CSVCommands.ADD, record);
+	}
+
+	/**
+	 * Builds the line as the output module and CSV writer did before
+	 * nodes were written as records.
+	 */
+
+	@Benchmark
+	public String propertyMap()
+	{
+		address += 2;
+		Long instrAddress = address;
+		String key = "Instr" + "_" + instrAddress.toString();
+
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(BjoernNodeProperties.ADDR, instrAddress.toString());
+		properties.put(BjoernNodeProperties.TYPE, "Instr");
+		properties.put(BjoernNodeProperties.REPR, REPR);
+		properties.put(BjoernNodeProperties.CHILD_NUM,
+				String.format("%d", childNum++ & 0xF));
+		properties.put(BjoernNodeProperties.KEY, key);
+		properties.put(BjoernNodeProperties.CODE, CODE);
+		properties.put(BjoernNodeProperties.COMMENT, COMMENT);
+		properties.put(BjoernNodeProperties.ESIL, ESIL);
+
+		String csvLine = CSVCommands.ADD;
+		StringBuilder sb = new StringBuilder();
+		for (String property : CSVWriter.nodeProperties)
+		{
+			sb.append(CSVWriter.SEPARATOR);
+			String propValue = (String) properties.get(property);
+			if (propValue != null)
+				sb.append(StringEscapeUtils.escapeCsv(propValue.replace("\\", "\\\\")));
+		}
+		sb.append("\n");
+		csvLine += sb.toString();
+		return csvLine;
+	}
+
+}
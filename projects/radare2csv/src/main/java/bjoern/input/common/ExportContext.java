@@ -0,0 +1,111 @@
+package bjoern.input.common;
+
+import java.util.Collection;
+
+import bjoern.input.common.outputModules.GraphWriter;
+import bjoern.input.common.outputModules.OutputFormat;
+import bjoern.input.common.outputModules.ShardedWriter;
+import bjoern.nodeStore.NodeStore;
+
+/**
+ * The state of a single export: the node store shared by input and
+ * output module, and the writer for the output files. Exports do not
+ * share any state beyond this object, so several binaries can be exported
+ * concurrently, e.g., by imports running in parallel inside the server.
+ */
+
+public class ExportContext
+{
+	private final String outputDir;
+	private final OutputFormat outputFormat;
+	private final int nShards;
+	private final NodeStore nodeStore = new NodeStore();
+	private GraphWriter graphWriter;
+
+	public ExportContext(String outputDir)
+	{
+		this(outputDir, OutputFormat.CSV);
+	}
+
+	public ExportContext(String outputDir, OutputFormat outputFormat)
+	{
+		this(outputDir, outputFormat, 1);
+	}
+
+	/**
+	 * Creates a context, the output of which is split into `nShards`
+	 * shards if `nShards` is greater than one, see `ShardedWriter`.
+	 */
+
+	public ExportContext(String outputDir, OutputFormat outputFormat,
+			int nShards)
+	{
+		this.outputDir = outputDir;
+		this.outputFormat = outputFormat;
+		this.nShards = nShards;
+	}
+
+	/**
+	 * Creates a context, the output of which is written by `graphWriter`
+	 * rather than to files in one of the output formats.
+	 */
+
+	public ExportContext(String outputDir, GraphWriter graphWriter)
+	{
+		this.outputDir = outputDir;
+		this.outputFormat = null;
+		this.nShards = 1;
+		this.graphWriter = graphWriter;
+	}
+
+	public String getOutputDir()
+	{
+		return outputDir;
+	}
+
+	public NodeStore getNodeStore()
+	{
+		return nodeStore;
+	}
+
+	/**
+	 * Returns the writer for the output files in the output directory,
+	 * which is created on first use.
+	 */
+
+	public GraphWriter getGraphWriter()
+	{
+		if (graphWriter == null)
+		{
+			if (nShards > 1)
+				graphWriter = new ShardedWriter(outputDir, outputFormat, nShards);
+			else
+				graphWriter = outputFormat.createWriter(outputDir);
+		}
+		return graphWriter;
+	}
+
+	/**
+	 * Aborts the writer, if it has been created, after the export has
+	 * failed.
+	 */
+
+	public void abort()
+	{
+		if (graphWriter != null)
+			graphWriter.abort();
+	}
+
+	/**
+	 * Passes the addresses of all functions to the writer, which uses them
+	 * to assign nodes to shards if the output is sharded.
+	 */
+
+	public void setFunctionAddresses(Collection<Long> addresses)
+	{
+		GraphWriter writer = getGraphWriter();
+		if (writer instanceof ShardedWriter)
+			((ShardedWriter) writer).setFunctionAddresses(addresses);
+	}
+
+}
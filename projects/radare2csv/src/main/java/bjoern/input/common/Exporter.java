@@ -6,8 +6,11 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import bjoern.input.common.outputModules.CSV.CSVOutputModule;
+import bjoern.input.common.outputModules.OutputFormat;
+import bjoern.input.common.outputModules.OutputModule;
+import bjoern.input.common.outputModules.database.DatabaseWriter;
 import bjoern.input.radare.CommandLineInterface;
+import octopus.server.components.orientdbImporter.ImportJob;
 
 /**
  * Exporters extract information from binaries and make it available for later
@@ -24,8 +27,13 @@ public abstract class Exporter
 	protected abstract void export() throws IOException;
 
 	protected InputModule inputModule;
-	protected CSVOutputModule outputModule;
+	protected OutputModule outputModule;
 	protected CommandLineInterface cmdLine;
+	protected OutputFormat outputFormat = OutputFormat.CSV;
+	protected int numberOfShards = 1;
+	protected boolean fullTextIndex = true;
+	protected int importWorkers = 1;
+	protected ExportContext context;
 
 	private static final Logger logger = LoggerFactory
 			.getLogger(Exporter.class);
@@ -70,6 +78,42 @@ public abstract class Exporter
 		System.exit(1);
 	}
 
+	public void setOutputFormat(OutputFormat outputFormat)
+	{
+		this.outputFormat = outputFormat;
+	}
+
+	/**
+	 * Sets the number of shards the output files are split into, so that
+	 * they can be imported concurrently. With a single shard, the output
+	 * files are written to the output directory itself.
+	 */
+
+	public void setNumberOfShards(int numberOfShards)
+	{
+		this.numberOfShards = numberOfShards;
+	}
+
+	/**
+	 * Sets whether a database created by `exportToDatabase` gets a
+	 * full-text index, see `VertexIndexes`.
+	 */
+
+	public void setFullTextIndex(boolean fullTextIndex)
+	{
+		this.fullTextIndex = fullTextIndex;
+	}
+
+	/**
+	 * Sets the number of workers that import into a database created by
+	 * `exportToDatabase`, see `CSVParallelImporter`.
+	 */
+
+	public void setImportWorkers(int importWorkers)
+	{
+		this.importWorkers = importWorkers;
+	}
+
 	public void tryToExport(String binaryFilename, String outputDir, String projectFilename)
 	{
 		try
@@ -84,14 +128,89 @@ public abstract class Exporter
 	public void export(String binaryFilename, String outputDir, String projectFilename)
 			throws IOException
 	{
+		export(binaryFilename, projectFilename,
+				new ExportContext(outputDir, outputFormat, numberOfShards));
+	}
+
+	/**
+	 * Exports the binary straight into the database `dbName`, without
+	 * writing output files. `outputDir` only holds temporary files.
+	 */
+
+	public void exportToDatabase(String binaryFilename, String outputDir,
+			String projectFilename, String dbName) throws IOException
+	{
+		export(binaryFilename, projectFilename, new ExportContext(outputDir,
+				new DatabaseWriter(outputDir, createImportJob(dbName))));
+	}
+
+	/**
+	 * Returns the options of the import by `exportToDatabase`.
+	 */
+
+	protected ImportJob createImportJob(String dbName)
+	{
+		return new ImportJob(dbName, importWorkers, fullTextIndex);
+	}
+
+	private void export(String binaryFilename, String projectFilename,
+			ExportContext context) throws IOException
+	{
+		String outputDir = context.getOutputDir();
+		this.context = context;
 
 		logger.info("Exporting: {}", binaryFilename);
 
-		inputModule.initialize(binaryFilename, projectFilename);
-		outputModule.initialize(outputDir);
-		export();
-		outputModule.finish();
+		boolean finished = false;
+		try
+		{
+			runStage("initialization", () -> inputModule.initialize(
+					binaryFilename, projectFilename, context));
+			outputModule.initialize(context);
+			export();
+			runStage("output", outputModule::finish);
+			finished = true;
+		}
+		finally
+		{
+			if (!finished)
+				abort(context);
+		}
 		inputModule.finish(outputDir);
 	}
 
+	/**
+	 * Stops the threads of the writer and deletes its files after the
+	 * export has failed, without hiding the original failure.
+	 */
+
+	private void abort(ExportContext context)
+	{
+		try
+		{
+			context.abort();
+		}
+		catch (RuntimeException e)
+		{
+			logger.warn("Cannot abort export: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * A step of the export, the duration of which is logged.
+	 */
+
+	protected interface Stage
+	{
+		void run() throws IOException;
+	}
+
+	protected void runStage(String name, Stage stage) throws IOException
+	{
+		long start = System.currentTimeMillis();
+		stage.run();
+		logger.info("Stage '{}' took {} ms", name,
+				System.currentTimeMillis() - start);
+	}
+
 }
@@ -2,6 +2,7 @@ package bjoern.input.common;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import bjoern.structures.annotations.Flag;
 import bjoern.structures.edges.Xref;
@@ -9,7 +10,8 @@ import bjoern.structures.interpretations.Function;
 
 public interface InputModule
 {
-	public void initialize(String filename, String projectFilename) throws IOException;
+	public void initialize(String filename, String projectFilename,
+			ExportContext context) throws IOException;
 
 	public List<Function> getFunctions() throws IOException;
 
@@ -18,8 +20,22 @@ public interface InputModule
 	public void initializeFunctionContents(Function function)
 			throws IOException;
 
+	/**
+	 * Initializes the contents of all `functions` and hands each function
+	 * to `consumer` as soon as its content is available. Functions are
+	 * handed to `consumer` in list order, one at a time.
+	 */
+
+	public void initializeFunctionContents(List<Function> functions,
+			Consumer<Function> consumer) throws IOException;
+
 	public void finish(String outputDir);
 
-	public List<Xref> getCrossReferences() throws IOException;
+	/**
+	 * Hands each cross reference to `consumer` as soon as it is available.
+	 * Cross references are not handed out in any particular order.
+	 */
+
+	public void getCrossReferences(Consumer<Xref> consumer) throws IOException;
 
 }
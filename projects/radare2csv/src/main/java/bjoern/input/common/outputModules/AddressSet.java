@@ -0,0 +1,112 @@
+package bjoern.input.common.outputModules;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe set of addresses, organized like a roaring bitmap: the
+ * upper 48 bits of an address select a container holding the lower 16
+ * bits. Containers start out as sorted arrays, which take two bytes per
+ * address, and are converted to bitmaps of 8 KB once they hold more
+ * than `MAX_ARRAY_SIZE` addresses. Instructions, which are dense, thus
+ * take about one bit each, while scattered addresses such as those of
+ * flags take two bytes each plus a small overhead per container.
+ */
+
+public class AddressSet
+{
+	private static final int MAX_ARRAY_SIZE = 4096;
+	private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+	private final ConcurrentHashMap<Long, Container> containers = new ConcurrentHashMap<Long, Container>();
+
+	/**
+	 * Adds `address` and returns true, or returns false if the set already
+	 * contains it.
+	 */
+
+	public boolean add(long address)
+	{
+		Long high = address >>> 16;
+		Container container = containers.get(high);
+		if (container == null)
+			container = containers.computeIfAbsent(high, k -> new Container());
+		return container.add((char) address);
+	}
+
+	public boolean contains(long address)
+	{
+		Container container = containers.get(address >>> 16);
+		return container != null && container.contains((char) address);
+	}
+
+	public long size()
+	{
+		long size = 0;
+		for (Container container : containers.values())
+			size += container.size();
+		return size;
+	}
+
+	private static class Container
+	{
+		private char[] array = new char[4];
+		private long[] bitmap;
+		private int size;
+
+		synchronized boolean add(char low)
+		{
+			if (bitmap != null)
+				return addToBitmap(low);
+
+			int index = Arrays.binarySearch(array, 0, size, low);
+			if (index >= 0)
+				return false;
+
+			if (size == MAX_ARRAY_SIZE)
+			{
+				convertToBitmap();
+				return addToBitmap(low);
+			}
+
+			index = -index - 1;
+			if (size == array.length)
+				array = Arrays.copyOf(array, Math.min(2 * size, MAX_ARRAY_SIZE));
+			System.arraycopy(array, index, array, index + 1, size - index);
+			array[index] = low;
+			size++;
+			return true;
+		}
+
+		synchronized boolean contains(char low)
+		{
+			if (bitmap != null)
+				return (bitmap[low >>> 6] & (1L << low)) != 0;
+			return Arrays.binarySearch(array, 0, size, low) >= 0;
+		}
+
+		synchronized int size()
+		{
+			return size;
+		}
+
+		private boolean addToBitmap(char low)
+		{
+			long bit = 1L << low;
+			if ((bitmap[low >>> 6] & bit) != 0)
+				return false;
+			bitmap[low >>> 6] |= bit;
+			size++;
+			return true;
+		}
+
+		private void convertToBitmap()
+		{
+			bitmap = new long[BITMAP_WORDS];
+			for (int i = 0; i < size; i++)
+				bitmap[array[i] >>> 6] |= 1L << array[i];
+			array = null;
+		}
+	}
+
+}
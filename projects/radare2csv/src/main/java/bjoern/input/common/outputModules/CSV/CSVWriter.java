@@ -2,39 +2,72 @@ package bjoern.input.common.outputModules.CSV;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.Map;
-import java.util.Set;
 
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import bjoern.input.common.outputModules.GraphWriter;
+import bjoern.input.common.outputModules.NodeRecord;
 import bjoern.nodeStore.Node;
-import bjoern.structures.BjoernNodeProperties;
+import bjoern.nodeStore.NodeKey;
 import orientdbimporter.CSVCommands;
 
-public class CSVWriter
+public class CSVWriter implements GraphWriter
 {
 	final static String SEPARATOR = "\t";
 
-	final static String[] nodeProperties = {
-			BjoernNodeProperties.KEY, BjoernNodeProperties.TYPE, BjoernNodeProperties.ADDR, BjoernNodeProperties.CHILD_NUM,
-			BjoernNodeProperties.REPR, BjoernNodeProperties.CODE, BjoernNodeProperties.COMMENT, BjoernNodeProperties.ESIL
-	};
+	private final static char[] CSV_QUOTED_CHARS = { ',', '"', '\r', '\n' };
 
-	final static String[] edgeProperties = {};
+	public final static String[] nodeProperties = NodeRecord.COLUMNS;
 
-	static PrintWriter nodeWriter;
-	static PrintWriter edgeWriter;
+	public final static String[] edgeProperties = {};
 
-	static Set<String> nodeLineSet = new HashSet<String>();
-	static Set<String> edgeLineSet = new HashSet<String>();
+	private final String outputDir;
+	private PrintWriter nodeWriter;
+	private PrintWriter edgeWriter;
 
-	public static void finish()
+	// Lines are written in reverse sorted order without duplicates, which
+	// places ANR lines before A lines for the same node.
+	private final SortedLines nodeLines;
+	private final SortedLines edgeLines;
+
+	// node lines are built in a buffer per thread, reused for all lines
+	private final ThreadLocal<StringBuilder> lineBuilders = ThreadLocal
+			.withInitial(() -> new StringBuilder(256));
+
+	/**
+	 * Creates a writer for the files `nodes.csv` and `edges.csv` in
+	 * `outputDir`. Nothing is written to them before `finish` is called.
+	 */
+
+	public CSVWriter(String outputDir)
+	{
+		this(outputDir, SortedLines.MAX_BUFFERED_CHARS);
+	}
+
+	/**
+	 * Like `CSVWriter(outputDir)`, but each file keeps at most
+	 * `maxBufferedChars` in memory before spilling to disk.
+	 */
+
+	public CSVWriter(String outputDir, long maxBufferedChars)
+	{
+		this.outputDir = outputDir;
+		nodeLines = new SortedLines("write nodes", Paths.get(outputDir),
+				maxBufferedChars);
+		edgeLines = new SortedLines("write edges", Paths.get(outputDir),
+				maxBufferedChars);
+
+		openNodeFile(outputDir);
+		openEdgeFile(outputDir);
+	}
+
+	@Override
+	public void finish()
 	{
 		writeNodeFile();
 		writeEdgeFile();
@@ -42,90 +75,147 @@ public class CSVWriter
 		closeNodeFile();
 	}
 
-	private static void writeNodeFile()
+	@Override
+	public void abort()
 	{
-		List<String> arr = new ArrayList<String>(nodeLineSet);
-		Collections.sort(arr);
-		Collections.reverse(arr);
-		for(String csvLine : arr){
-			nodeWriter.write(csvLine);
+		try
+		{
+			nodeLines.abort();
+			edgeLines.abort();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			closeEdgeFile();
+			closeNodeFile();
+			deleteFile("nodes.csv");
+			deleteFile("edges.csv");
 		}
 	}
 
-	private static void writeEdgeFile()
+	private void deleteFile(String filename)
 	{
-		List<String> arr = new ArrayList<String>(edgeLineSet);
-		Collections.sort(arr);
-		Collections.reverse(arr);
-		for(String csvLine : arr){
-			edgeWriter.write(csvLine);
-		}
-
+		new File(outputDir, filename).delete();
 	}
 
+	private void writeNodeFile()
+	{
+		writeSortedLines(nodeLines, nodeWriter);
+	}
 
-	public static void changeOutputDir(String dirNameForFileNode)
+	private void writeEdgeFile()
 	{
-		finish();
+		writeSortedLines(edgeLines, edgeWriter);
+	}
 
-		openNodeFile(dirNameForFileNode);
-		openEdgeFile(dirNameForFileNode);
+	private void writeSortedLines(SortedLines lines, PrintWriter writer)
+	{
+		try
+		{
+			if (writer == null)
+				lines.discard();
+			else
+				lines.forEachSorted(writer::write);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Cannot write CSV file: " + e.getMessage());
+		}
 	}
 
-	public static void addNode(Node node, Map<String, Object> properties)
+	@Override
+	public void addNode(Node node, NodeRecord record)
 	{
-		String csvLine = CSVCommands.ADD;
-		csvLine += generateNodePropertyString(properties);
-		nodeLineSet.add(csvLine);
+		nodeLines.add(generateNodeLine(CSVCommands.ADD, record));
 	}
 
-	public static void addNoReplaceNode(Node node,
-			Map<String, Object> properties)
+	@Override
+	public void addNoReplaceNode(Node node, NodeRecord record)
 	{
-		String csvLine = CSVCommands.ADD_NO_REPLACE;
-		csvLine += generateNodePropertyString(properties);
-		nodeLineSet.add(csvLine);
+		nodeLines.add(generateNodeLine(CSVCommands.ADD_NO_REPLACE, record));
 	}
 
-	private static String generateNodePropertyString(Map<String, Object> properties)
+	/**
+	 * Returns the line for a node. Lines are built in a buffer that each
+	 * thread reuses, so the line itself is the only allocation.
+	 */
+
+	String generateNodeLine(String command, NodeRecord record)
 	{
-		StringBuilder sb = new StringBuilder();
-		for (String property : nodeProperties)
+		StringBuilder sb = lineBuilders.get();
+		sb.setLength(0);
+		sb.append(command);
+		for (int column = 0; column < nodeProperties.length; column++)
 		{
 			sb.append(SEPARATOR);
-			String propValue = (String) properties.get(property);
-			if (propValue != null)
-			{
-				sb.append(escape(propValue));
-			}
+			if (record.isText(column))
+				appendEscaped(sb, record.get(column));
+			else
+				record.append(sb, column);
 		}
 		sb.append("\n");
 		return sb.toString();
 	}
 
-	private static String escape(String propValue)
+	/**
+	 * Appends `propValue` with backslashes doubled and, if it contains any
+	 * of the characters `CSV_QUOTED_CHARS`, enclosed in quotes with quotes
+	 * doubled, as `StringEscapeUtils.escapeCsv` escapes it.
+	 */
+
+	private static void appendEscaped(StringBuilder sb, String propValue)
 	{
-		return StringEscapeUtils.escapeCsv(propValue.replace("\\", "\\\\"));
+		boolean quote = StringUtils.containsAny(propValue, CSV_QUOTED_CHARS);
+		if (quote)
+			sb.append('"');
+
+		for (int i = 0; i < propValue.length(); i++)
+		{
+			char c = propValue.charAt(i);
+			if (c == '\\')
+				sb.append('\\');
+			else if (c == '"' && quote)
+				sb.append('"');
+			sb.append(c);
+		}
+
+		if (quote)
+			sb.append('"');
 	}
 
 
-	public static void addEdge(String srcKey, String dstKey,
+	@Override
+	public void addEdge(NodeKey srcKey, NodeKey dstKey,
 			Map<String, Object> properties, String edgeType)
 	{
 		StringBuilder sb = new StringBuilder();
 
-		sb.append(srcKey);
+		appendKey(sb, srcKey);
 		sb.append(SEPARATOR);
-		sb.append(dstKey);
+		appendKey(sb, dstKey);
 		sb.append(SEPARATOR);
 		sb.append(edgeType);
 		// TODO: add properties
 		sb.append("\n");
 
-		edgeLineSet.add(sb.toString());
+		edgeLines.add(sb.toString());
+	}
+
+	/**
+	 * Appends `key` as `NodeKey.toString` renders it.
+	 */
+
+	private static void appendKey(StringBuilder sb, NodeKey key)
+	{
+		sb.append(key.getType()).append('_').append(key.getAddress().longValue());
+		if (key.getCounter() != null)
+			sb.append('_').append(key.getCounter().intValue());
 	}
 
-	private static void openNodeFile(String outDir)
+	private void openNodeFile(String outDir)
 	{
 		String path = outDir + File.separator + "nodes.csv";
 		nodeWriter = createWriter(path);
@@ -133,20 +223,20 @@ public class CSVWriter
 		writeNodePropertyNames();
 	}
 
-	private static void writeNodePropertyNames()
+	private void writeNodePropertyNames()
 	{
 		String joined = StringUtils.join(nodeProperties, SEPARATOR);
 		nodeWriter.println(joined);
 	}
 
-	private static void openEdgeFile(String outDir)
+	private void openEdgeFile(String outDir)
 	{
 		String path = outDir + File.separator + "edges.csv";
 		edgeWriter = createWriter(path);
 		writeEdgePropertyNames();
 	}
 
-	private static void writeEdgePropertyNames()
+	private void writeEdgePropertyNames()
 	{
 		String joined = "nodeType_addr"
 				+ SEPARATOR
@@ -158,7 +248,7 @@ public class CSVWriter
 		edgeWriter.println(joined);
 	}
 
-	private static PrintWriter createWriter(String path)
+	private PrintWriter createWriter(String path)
 	{
 		try
 		{
@@ -169,13 +259,13 @@ public class CSVWriter
 		}
 	}
 
-	private static void closeNodeFile()
+	private void closeNodeFile()
 	{
 		if (nodeWriter != null)
 			nodeWriter.close();
 	}
 
-	private static void closeEdgeFile()
+	private void closeEdgeFile()
 	{
 		if (edgeWriter != null)
 			edgeWriter.close();
@@ -0,0 +1,368 @@
+package bjoern.input.common.outputModules.CSV;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts lines in descending order and removes duplicates, using a bounded
+ * amount of memory.
+ *
+ * Lines are buffered until `maxBufferedChars` is reached. The buffer is
+ * then sorted and written to a temporary file (a "run"). When writing the
+ * output, all runs are merged. Since duplicates end up next to each other
+ * in sorted order, they are removed during sorting and merging, so no set
+ * of all lines seen is needed.
+ *
+ * Lines may contain any character including newlines, so runs store each
+ * line prefixed by its length rather than separated by newlines.
+ */
+
+public class ExternalSorter implements Closeable
+{
+	/**
+	 * Maximum number of runs merged at once. If there are more runs, they
+	 * are merged into larger runs first.
+	 */
+
+	private static final int MAX_MERGE_FAN_IN = 128;
+
+	private static final Comparator<String> ORDER = Collections.reverseOrder();
+
+	private final Path tempDir;
+	private final long maxBufferedChars;
+
+	private List<String> buffer = new ArrayList<String>();
+	private long bufferedChars = 0;
+	private final List<Path> runs = new ArrayList<Path>();
+
+	/**
+	 * Runs are created in `tempDir`.
+	 */
+
+	public ExternalSorter(Path tempDir, long maxBufferedChars)
+	{
+		this.tempDir = tempDir;
+		this.maxBufferedChars = maxBufferedChars;
+	}
+
+	public void add(String line)
+	{
+		buffer.add(line);
+		bufferedChars += line.length();
+		if (bufferedChars >= maxBufferedChars)
+			spill();
+	}
+
+	/**
+	 * Writes all lines added so far to `writer` in descending order,
+	 * without duplicates, and resets the sorter.
+	 */
+
+	public void writeTo(Writer writer) throws IOException
+	{
+		forEachSorted(writer::write);
+	}
+
+	/**
+	 * Passes all lines added so far to `consumer` in descending order,
+	 * without duplicates, and resets the sorter.
+	 */
+
+	public void forEachSorted(LineConsumer consumer) throws IOException
+	{
+		try (LineReader reader = openSorted())
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+				consumer.accept(line);
+		}
+	}
+
+	/**
+	 * Returns a reader for all lines added so far in descending order,
+	 * without duplicates. Closing the reader resets the sorter.
+	 */
+
+	public LineReader openSorted() throws IOException
+	{
+		if (runs.isEmpty())
+		{
+			List<String> sorted = sortBuffer();
+			buffer = new ArrayList<String>();
+			bufferedChars = 0;
+			return new ListReader(sorted);
+		}
+
+		spill();
+		while (runs.size() > MAX_MERGE_FAN_IN)
+			mergeOldestRuns();
+		return new MergingReader(runs);
+	}
+
+	/**
+	 * Discards all lines and deletes all runs.
+	 */
+
+	@Override
+	public void close() throws IOException
+	{
+		buffer = new ArrayList<String>();
+		bufferedChars = 0;
+		for (Path run : runs)
+			Files.deleteIfExists(run);
+		runs.clear();
+	}
+
+	private List<String> sortBuffer()
+	{
+		Collections.sort(buffer, ORDER);
+
+		List<String> sorted = new ArrayList<String>(buffer.size());
+		String previous = null;
+		for (String line : buffer)
+		{
+			if (!line.equals(previous))
+				sorted.add(line);
+			previous = line;
+		}
+		return sorted;
+	}
+
+	private void spill()
+	{
+		if (buffer.isEmpty())
+			return;
+
+		try
+		{
+			Path run = Files.createTempFile(tempDir, "run", ".tmp");
+			try (RunWriter runWriter = new RunWriter(run))
+			{
+				for (String line : sortBuffer())
+					runWriter.write(line);
+			}
+			runs.add(run);
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+
+		buffer = new ArrayList<String>();
+		bufferedChars = 0;
+	}
+
+	private void mergeOldestRuns() throws IOException
+	{
+		List<Path> toMerge = new ArrayList<Path>(runs.subList(0, MAX_MERGE_FAN_IN));
+		Path merged = Files.createTempFile(tempDir, "run", ".tmp");
+
+		MergingReader reader = new MergingReader(toMerge);
+		try (RunWriter runWriter = new RunWriter(merged))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+				runWriter.write(line);
+		}
+		finally
+		{
+			reader.closeReaders();
+		}
+
+		for (Path run : toMerge)
+			Files.delete(run);
+		runs.subList(0, MAX_MERGE_FAN_IN).clear();
+		runs.add(merged);
+	}
+
+	public interface LineConsumer
+	{
+		void accept(String line) throws IOException;
+	}
+
+	public interface LineReader extends Closeable
+	{
+		/**
+		 * Returns the next line or null if there are no more lines.
+		 */
+
+		String readLine() throws IOException;
+	}
+
+	private class ListReader implements LineReader
+	{
+		private final Iterator<String> lines;
+
+		ListReader(List<String> lines)
+		{
+			this.lines = lines.iterator();
+		}
+
+		@Override
+		public String readLine()
+		{
+			return lines.hasNext() ? lines.next() : null;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			ExternalSorter.this.close();
+		}
+	}
+
+	/**
+	 * Performs a k-way merge of runs, skipping duplicates.
+	 */
+
+	private class MergingReader implements LineReader
+	{
+		private final List<RunReader> readers = new ArrayList<RunReader>();
+		private final PriorityQueue<RunReader> queue;
+		private String previous = null;
+
+		MergingReader(List<Path> runsToMerge) throws IOException
+		{
+			queue = new PriorityQueue<RunReader>(
+					Math.max(1, runsToMerge.size()),
+					(a, b) -> ORDER.compare(a.current, b.current));
+
+			try
+			{
+				for (Path run : runsToMerge)
+				{
+					RunReader reader = new RunReader(run);
+					readers.add(reader);
+					if (reader.advance())
+						queue.add(reader);
+				}
+			}
+			catch (IOException e)
+			{
+				closeReaders();
+				throw e;
+			}
+		}
+
+		@Override
+		public String readLine() throws IOException
+		{
+			while (!queue.isEmpty())
+			{
+				RunReader reader = queue.poll();
+				String line = reader.current;
+				if (reader.advance())
+					queue.add(reader);
+
+				if (!line.equals(previous))
+				{
+					previous = line;
+					return line;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Closes the runs without deleting them, which is left to the
+		 * sorter.
+		 */
+
+		void closeReaders() throws IOException
+		{
+			for (RunReader reader : readers)
+				reader.close();
+			readers.clear();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			closeReaders();
+			ExternalSorter.this.close();
+		}
+	}
+
+	private static class RunWriter implements Closeable
+	{
+		private final DataOutputStream out;
+
+		RunWriter(Path path) throws IOException
+		{
+			out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(path), 64 * 1024));
+		}
+
+		void write(String line) throws IOException
+		{
+			byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+	private static class RunReader implements Closeable
+	{
+		private final DataInputStream in;
+		String current;
+
+		RunReader(Path path) throws IOException
+		{
+			in = new DataInputStream(new BufferedInputStream(
+					Files.newInputStream(path), 64 * 1024));
+		}
+
+		/**
+		 * Reads the next line into `current`. Returns false at the end of
+		 * the run.
+		 */
+
+		boolean advance() throws IOException
+		{
+			int length;
+			try
+			{
+				length = in.readInt();
+			}
+			catch (EOFException e)
+			{
+				current = null;
+				return false;
+			}
+
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			current = new String(bytes, StandardCharsets.UTF_8);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+}
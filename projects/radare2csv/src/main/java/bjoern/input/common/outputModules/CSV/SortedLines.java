@@ -0,0 +1,103 @@
+package bjoern.input.common.outputModules.CSV;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import bjoern.input.common.pipeline.PipelineStage;
+
+/**
+ * The lines of an output file, which are sorted in descending order and
+ * deduplicated by an `ExternalSorter` before they are written.
+ *
+ * Lines are formatted by the calling threads and handed to a single
+ * thread, which owns the sorter. Callers may therefore add lines
+ * concurrently. Since the output is sorted, the order in which lines
+ * arrive does not matter.
+ */
+
+public class SortedLines
+{
+	/**
+	 * By default, lines are kept in memory up to this number of
+	 * characters. Beyond that, they are sorted and spilled to disk.
+	 */
+
+	public final static long MAX_BUFFERED_CHARS = 32 * 1024 * 1024;
+
+	/**
+	 * Number of lines that may be waiting to be added to the sorter.
+	 */
+
+	final static int QUEUE_CAPACITY = 16 * 1024;
+
+	private final ExternalSorter sorter;
+	private final PipelineStage<String> stage;
+
+	public SortedLines(String name, Path tempDir)
+	{
+		this(name, tempDir, MAX_BUFFERED_CHARS);
+	}
+
+	/**
+	 * Creates the lines of an output file, spilling to `tempDir` beyond
+	 * `maxBufferedChars`. The throughput of the thread feeding the sorter
+	 * is logged under `name`.
+	 */
+
+	public SortedLines(String name, Path tempDir, long maxBufferedChars)
+	{
+		sorter = new ExternalSorter(tempDir, maxBufferedChars);
+		stage = new PipelineStage<String>(name, 1, QUEUE_CAPACITY,
+				sorter::add).start();
+	}
+
+	public void add(String line)
+	{
+		stage.submit(line);
+	}
+
+	/**
+	 * Waits for all lines added so far and passes them to `consumer` in
+	 * descending order without duplicates.
+	 */
+
+	public void forEachSorted(ExternalSorter.LineConsumer consumer)
+			throws IOException
+	{
+		stage.finish();
+		sorter.forEachSorted(consumer);
+	}
+
+	/**
+	 * Waits for all lines added so far and returns a reader for them in
+	 * descending order without duplicates.
+	 */
+
+	public ExternalSorter.LineReader openSorted() throws IOException
+	{
+		stage.finish();
+		return sorter.openSorted();
+	}
+
+	/**
+	 * Discards all lines without waiting for those still queued, and
+	 * deletes the files spilled so far.
+	 */
+
+	public void abort() throws IOException
+	{
+		stage.abort();
+		sorter.close();
+	}
+
+	/**
+	 * Waits for all lines added so far and discards them.
+	 */
+
+	public void discard() throws IOException
+	{
+		stage.finish();
+		sorter.close();
+	}
+
+}
@@ -0,0 +1,323 @@
+package bjoern.input.common.outputModules;
+
+import bjoern.input.common.ExportContext;
+import bjoern.nodeStore.Node;
+import bjoern.nodeStore.NodeKey;
+import bjoern.r2interface.creators.RadareInstructionCreator;
+import bjoern.structures.RootNode;
+import bjoern.structures.annotations.Flag;
+import bjoern.structures.annotations.VariableOrArgument;
+import bjoern.structures.edges.CallRef;
+import bjoern.structures.edges.DirectedEdge;
+import bjoern.structures.edges.EdgeTypes;
+import bjoern.structures.interpretations.*;
+
+import java.util.*;
+
+/**
+ * Writes logical objects as nodes and edges of the code property graph.
+ * The files the graph is written to are determined by the `GraphWriter`
+ * of the export context.
+ */
+
+public class GraphOutputModule implements OutputModule
+{
+
+	private GraphWriter graphWriter;
+
+	// addresses for which a root node has been written
+	private AddressSet rootNodeAddresses;
+
+	// function contents are written by several threads, each of which
+	// reuses its own record for all nodes it writes
+	private final ThreadLocal<NodeRecord> records = ThreadLocal
+			.withInitial(NodeRecord::new);
+
+	@Override
+	public void initialize(ExportContext context)
+	{
+		graphWriter = context.getGraphWriter();
+		rootNodeAddresses = new AddressSet();
+	}
+
+	@Override
+	public void finish()
+	{
+		graphWriter.finish();
+	}
+
+	@Override
+	public void writeFlag(Flag flag)
+	{
+		createRootNodeForNode(flag);
+
+		NodeRecord record = recordForNode(flag);
+		record.set(NodeRecord.CODE, flag.getValue());
+		// Skipping length-field for now, let's see if we need it.
+		graphWriter.addNode(flag, record);
+	}
+
+	/**
+	 * Returns the record of the current thread, emptied and holding the
+	 * key, type and address of `node`.
+	 */
+
+	private NodeRecord recordForNode(Node node)
+	{
+		return records.get().clear().setNode(node);
+	}
+
+	/**
+	 * Writes the root node for the address of `node`, unless it has been
+	 * written before. Most addresses carry several nodes, e.g., a basic
+	 * block, its first instruction and a flag.
+	 */
+
+	private void createRootNodeForNode(Node node)
+	{
+		if (!rootNodeAddresses.add(node.getAddress()))
+			return;
+
+		Node rootNode = new RootNode();
+		rootNode.setAddr(node.getAddress());
+		graphWriter.addNoReplaceNode(rootNode, recordForNode(rootNode));
+	}
+
+	@Override
+	public void writeFunctionNodes(Function function)
+	{
+		createRootNodeForNode(function);
+
+		NodeRecord record = recordForNode(function);
+		record.set(NodeRecord.REPR, function.getName());
+
+		graphWriter.addNoReplaceNode(function, record);
+	}
+
+	/**
+	 * Writes the content of `function`. The module keeps no state per
+	 * function, so the contents of several functions may be written
+	 * concurrently.
+	 */
+
+	@Override
+	public void writeFunctionContent(Function function)
+	{
+		writeArgumentsAndVariables(function);
+		writeBasicBlocks(function);
+		writeCFGEdges(function);
+	}
+
+	private void writeArgumentsAndVariables(Function function)
+	{
+		FunctionContent content = function.getContent();
+		List<VariableOrArgument> varsAndArgs = content
+				.getVariablesAndArguments();
+
+		for (VariableOrArgument varOrArg : varsAndArgs)
+		{
+			createRootNodeForNode(varOrArg);
+			createNodeForVarOrArg(varOrArg);
+			addEdgeFromRootNode(varOrArg, EdgeTypes.ANNOTATION);
+		}
+
+	}
+
+	private void createNodeForVarOrArg(VariableOrArgument varOrArg)
+	{
+		// The type column holds the type of the key, "var" or "arg". The
+		// name is not among the columns of the node files.
+		NodeRecord record = recordForNode(varOrArg);
+		record.set(NodeRecord.REPR, varOrArg.getVarType());
+		record.set(NodeRecord.CODE, varOrArg.getRegPlusOffset());
+
+		graphWriter.addNode(varOrArg, record);
+	}
+
+	private void writeBasicBlocks(Function function)
+	{
+		Collection<BasicBlock> basicBlocks = function.getContent()
+				.getBasicBlocks();
+		for (BasicBlock block : basicBlocks)
+		{
+			writeBasicBlock(function, block);
+			writeEdgeFromFunctionToBasicBlock(function, block);
+		}
+	}
+
+	private void writeEdgeFromFunctionToBasicBlock(Function function, BasicBlock block)
+	{
+
+		Map<String, Object> properties = Collections.emptyMap();
+
+		NodeKey srcKey = function.createKey();
+		NodeKey dstKey = block.createKey();
+
+		graphWriter.addEdge(srcKey, dstKey, properties, EdgeTypes.IS_FUNCTION_OF);
+
+	}
+
+	@Override
+	public void writeBasicBlock(BasicBlock block)
+	{
+		writeBasicBlock(null, block);
+	}
+
+	private void writeBasicBlock(Function function, BasicBlock block)
+	{
+		createRootNodeForNode(block);
+		writeNodeForBasicBlock(block);
+		addEdgeFromRootNode(block, EdgeTypes.INTERPRETATION);
+		writeInstructions(function, block);
+	}
+
+	private void writeInstructions(Function function, BasicBlock block)
+	{
+		Collection<Instruction> instructions = block.getInstructions();
+		Iterator<Instruction> it = instructions.iterator();
+
+
+		int childNum = 0;
+		Instruction instr;
+		while (it.hasNext())
+		{
+			instr = it.next();
+			createRootNodeForNode(instr);
+			writeInstruction(function, instr, childNum);
+			addEdgeFromRootNode(instr, EdgeTypes.INTERPRETATION);
+
+			writeEdgeFromBlockToInstruction(block, instr);
+			childNum++;
+		}
+
+	}
+
+	private void writeEdgeFromBlockToInstruction(BasicBlock block,
+			Instruction instr)
+	{
+		Map<String, Object> properties = Collections.emptyMap();
+
+		NodeKey srcKey = block.createKey();
+		NodeKey dstKey = instr.createKey();
+
+		graphWriter.addEdge(srcKey, dstKey, properties, EdgeTypes.IS_BB_OF);
+	}
+
+	private void writeInstruction(Function function, Instruction instr,
+			int childNum)
+	{
+		NodeRecord record = recordForNode(instr);
+		record.set(NodeRecord.REPR, instr.getStringRepr());
+		record.set(NodeRecord.CHILD_NUM, childNum);
+		record.set(NodeRecord.CODE, instr.getBytes());
+
+		addDisassemblyProperties(record, function, instr.getAddress());
+
+		graphWriter.addNode(instr, record);
+	}
+
+	private void addDisassemblyProperties(NodeRecord record,
+			Function function, Long address)
+	{
+		if (function == null)
+			return;
+		FunctionContent content = function.getContent();
+		if (content == null)
+			return;
+		DisassemblyLine line = content.getDisassemblyLineForAddr(address);
+		if (line == null)
+			return;
+
+		record.set(NodeRecord.COMMENT, line.getComment());
+		record.set(NodeRecord.REPR, line.getInstruction());
+		record.set(NodeRecord.ESIL, line.getEsil());
+
+	}
+
+	private void writeNodeForBasicBlock(BasicBlock block)
+	{
+		NodeRecord record = recordForNode(block);
+		record.set(NodeRecord.REPR, block.getInstructionsStr());
+
+		graphWriter.addNode(block, record);
+	}
+
+	private void writeCFGEdges(Function function)
+	{
+		List<DirectedEdge> edges = function.getContent().getEdges();
+		for (DirectedEdge edge : edges)
+		{
+
+			NodeKey from = edge.getSourceKey();
+			NodeKey to = edge.getDestKey();
+
+			Map<String, Object> properties = Collections.emptyMap();
+			String edgeType = edge.getType();
+			graphWriter.addEdge(from, to, properties, edgeType);
+		}
+	}
+
+	@Override
+	public void writeReferencesToFunction(Function function)
+	{
+		addEdgeFromRootNode(function, EdgeTypes.INTERPRETATION);
+	}
+
+	private void writeEdge(DirectedEdge edge)
+	{
+
+		NodeKey sourceKey = edge.getSourceKey();
+		NodeKey destKey = edge.getDestKey();
+		String type = edge.getType();
+		Map<String, Object> properties = Collections.emptyMap();
+		// TODO: add edge properties.
+		graphWriter.addEdge(sourceKey, destKey, properties, type);
+	}
+
+	@Override
+	public void attachFlagsToRootNodes(Flag flag)
+	{
+		addEdgeFromRootNode(flag, EdgeTypes.ANNOTATION);
+	}
+
+	private void addEdgeFromRootNode(Node node, String type)
+	{
+		NodeKey srcKey = node.createEpsilonKey();
+		NodeKey destKey = node.createKey();
+
+		DirectedEdge newEdge = new DirectedEdge();
+		newEdge.setSourceKey(srcKey);
+		newEdge.setDestKey(destKey);
+		newEdge.setType(type);
+
+		writeEdge(newEdge);
+	}
+
+	@Override
+	public void writeCrossReference(DirectedEdge xref)
+	{
+		writeSourceNode(xref);
+		writeEdge(xref);
+	}
+
+	private void writeSourceNode(DirectedEdge xref)
+	{
+		if(!(xref instanceof CallRef))
+			return;
+
+		CallRef callRef = (CallRef) xref;
+		DisassemblyLine disassemblyLine = callRef.getDisassemblyLine();
+
+		Instruction instruction = RadareInstructionCreator.createFromDisassemblyLine(disassemblyLine);
+
+		NodeRecord record = recordForNode(instruction);
+		record.set(NodeRecord.ADDR, callRef.getSourceKey().getAddress());
+		record.set(NodeRecord.REPR, instruction.getStringRepr());
+		record.set(NodeRecord.CODE, instruction.getBytes());
+		record.set(NodeRecord.COMMENT, disassemblyLine.getComment());
+
+		graphWriter.addNode(instruction, record);
+
+	}
+
+}
@@ -0,0 +1,43 @@
+package bjoern.input.common.outputModules;
+
+import java.util.Map;
+
+import bjoern.nodeStore.Node;
+import bjoern.nodeStore.NodeKey;
+
+/**
+ * Writes nodes and edges to the output files of an export, in one of the
+ * formats of `OutputFormat`. Writers are thread-safe. The order in which
+ * nodes and edges are added does not matter: all nodes added via
+ * `addNoReplaceNode` precede those added via `addNode`, and duplicates
+ * are removed.
+ *
+ * Writers do not keep references to the records passed to them, so
+ * callers may reuse a record once a method has returned. Edges are given
+ * by the keys of their nodes, which writers render as strings only if
+ * their format requires it.
+ *
+ * Writers start threads and open files when they are created. Each writer
+ * must therefore either be finished or, if the export fails, aborted.
+ */
+
+public interface GraphWriter
+{
+	public void addNode(Node node, NodeRecord record);
+
+	public void addNoReplaceNode(Node node, NodeRecord record);
+
+	public void addEdge(NodeKey srcKey, NodeKey dstKey,
+			Map<String, Object> properties, String edgeType);
+
+	public void finish();
+
+	/**
+	 * Discards everything added so far, stops the threads of the writer and
+	 * deletes its incomplete files. May be called at any time, also after
+	 * `finish` has failed, and more than once.
+	 */
+
+	public void abort();
+
+}
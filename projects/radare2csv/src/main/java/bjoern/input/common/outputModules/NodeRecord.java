@@ -0,0 +1,174 @@
+package bjoern.input.common.outputModules;
+
+import bjoern.nodeStore.Node;
+import bjoern.structures.BjoernNodeProperties;
+
+/**
+ * The properties of a node to be written, one value per column of the
+ * node files. Columns are addressed by index rather than by property
+ * name, and numbers and keys are kept unformatted, so that writers can
+ * append them to their output without intermediate strings.
+ *
+ * Records are meant to be reused for many nodes: `GraphWriter`s do not
+ * hold on to records passed to them. Records are not thread-safe.
+ */
+
+public class NodeRecord
+{
+	public static final int KEY = 0;
+	public static final int TYPE = 1;
+	public static final int ADDR = 2;
+	public static final int CHILD_NUM = 3;
+	public static final int REPR = 4;
+	public static final int CODE = 5;
+	public static final int COMMENT = 6;
+	public static final int ESIL = 7;
+
+	/**
+	 * The property names of the columns, in column order.
+	 */
+
+	public static final String[] COLUMNS = {
+			BjoernNodeProperties.KEY, BjoernNodeProperties.TYPE,
+			BjoernNodeProperties.ADDR, BjoernNodeProperties.CHILD_NUM,
+			BjoernNodeProperties.REPR, BjoernNodeProperties.CODE,
+			BjoernNodeProperties.COMMENT, BjoernNodeProperties.ESIL
+	};
+
+	private static final byte EMPTY = 0;
+	private static final byte TEXT = 1;
+	private static final byte NUMBER = 2;
+	// a node key, the text holding the type and the number the address
+	private static final byte NODE_KEY = 3;
+
+	private final byte[] kinds = new byte[COLUMNS.length];
+	private final String[] texts = new String[COLUMNS.length];
+	private final long[] numbers = new long[COLUMNS.length];
+
+	/**
+	 * Empties all columns.
+	 */
+
+	public NodeRecord clear()
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			kinds[i] = EMPTY;
+			texts[i] = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the value of `column`. Null values leave the column empty.
+	 */
+
+	public NodeRecord set(int column, String value)
+	{
+		kinds[column] = (value == null) ? EMPTY : TEXT;
+		texts[column] = value;
+		return this;
+	}
+
+	public NodeRecord set(int column, long value)
+	{
+		kinds[column] = NUMBER;
+		texts[column] = null;
+		numbers[column] = value;
+		return this;
+	}
+
+	/**
+	 * Sets the key, type and address of `node`, the columns every node
+	 * has.
+	 */
+
+	public NodeRecord setNode(Node node)
+	{
+		return setNode(node.getType(), node.getAddress());
+	}
+
+	public NodeRecord setNode(String type, long address)
+	{
+		kinds[KEY] = NODE_KEY;
+		texts[KEY] = type;
+		numbers[KEY] = address;
+		set(TYPE, type);
+		return set(ADDR, address);
+	}
+
+	public boolean isEmpty(int column)
+	{
+		return kinds[column] == EMPTY;
+	}
+
+	/**
+	 * Checks whether `column` has been set as string. Other values, i.e.,
+	 * numbers and node keys, never need escaping.
+	 */
+
+	public boolean isText(int column)
+	{
+		return kinds[column] == TEXT;
+	}
+
+	/**
+	 * Returns the node type of the key or null if the key has been set as
+	 * string.
+	 */
+
+	public String getKeyType()
+	{
+		return (kinds[KEY] == NODE_KEY) ? texts[KEY] : null;
+	}
+
+	/**
+	 * Returns the address of the key, if `getKeyType` is not null.
+	 */
+
+	public long getKeyAddress()
+	{
+		return numbers[KEY];
+	}
+
+	/**
+	 * Returns the value of `column` as string, or null if it is empty.
+	 */
+
+	public String get(int column)
+	{
+		switch (kinds[column])
+		{
+		case TEXT:
+			return texts[column];
+		case NUMBER:
+			return Long.toString(numbers[column]);
+		case NODE_KEY:
+			return texts[column] + "_" + numbers[column];
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Appends the value of `column` to `builder`, as `get` would return it.
+	 */
+
+	public void append(StringBuilder builder, int column)
+	{
+		switch (kinds[column])
+		{
+		case TEXT:
+			builder.append(texts[column]);
+			break;
+		case NUMBER:
+			builder.append(numbers[column]);
+			break;
+		case NODE_KEY:
+			builder.append(texts[column]).append('_').append(numbers[column]);
+			break;
+		default:
+		}
+	}
+
+}
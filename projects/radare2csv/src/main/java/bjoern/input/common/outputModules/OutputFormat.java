@@ -0,0 +1,67 @@
+package bjoern.input.common.outputModules;
+
+import bjoern.input.common.outputModules.CSV.CSVWriter;
+import bjoern.input.common.outputModules.CSV.SortedLines;
+import bjoern.input.common.outputModules.binary.BinaryWriter;
+import orientdbimporter.binary.BinaryFormat;
+
+/**
+ * The format of the files written by an export. CSV files are human
+ * readable, while binary files (see `orientdbimporter.binary.BinaryFormat`)
+ * are several times smaller and faster to import.
+ */
+
+public enum OutputFormat
+{
+	CSV("nodes.csv", "edges.csv"),
+	BINARY(BinaryFormat.NODE_FILENAME, BinaryFormat.EDGE_FILENAME);
+
+	public final String nodeFilename;
+	public final String edgeFilename;
+
+	OutputFormat(String nodeFilename, String edgeFilename)
+	{
+		this.nodeFilename = nodeFilename;
+		this.edgeFilename = edgeFilename;
+	}
+
+	/**
+	 * Creates a writer for the files of this format in `outputDir`.
+	 */
+
+	public GraphWriter createWriter(String outputDir)
+	{
+		return createWriter(outputDir, SortedLines.MAX_BUFFERED_CHARS);
+	}
+
+	/**
+	 * Creates a writer for the files of this format in `outputDir`, which
+	 * keeps at most `maxBufferedChars` per file in memory.
+	 */
+
+	public GraphWriter createWriter(String outputDir, long maxBufferedChars)
+	{
+		switch (this)
+		{
+		case BINARY:
+			return new BinaryWriter(outputDir, maxBufferedChars);
+		default:
+			return new CSVWriter(outputDir, maxBufferedChars);
+		}
+	}
+
+	/**
+	 * Returns the format of the given name, ignoring case.
+	 */
+
+	public static OutputFormat fromName(String name)
+	{
+		for (OutputFormat format : values())
+		{
+			if (format.name().equalsIgnoreCase(name))
+				return format;
+		}
+		throw new IllegalArgumentException("Unknown output format: " + name);
+	}
+
+}
@@ -1,12 +1,14 @@
 package bjoern.input.common.outputModules;
 
+import bjoern.input.common.ExportContext;
 import bjoern.structures.annotations.Flag;
+import bjoern.structures.edges.DirectedEdge;
 import bjoern.structures.interpretations.BasicBlock;
 import bjoern.structures.interpretations.Function;
 
 public interface OutputModule
 {
-	public void initialize(String outputDir);
+	public void initialize(ExportContext context);
 
 	public void finish();
 
@@ -22,4 +24,6 @@ public interface OutputModule
 
 	public void attachFlagsToRootNodes(Flag flag);
 
+	public void writeCrossReference(DirectedEdge xref);
+
 }
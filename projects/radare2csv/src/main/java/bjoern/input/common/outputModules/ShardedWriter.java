@@ -0,0 +1,271 @@
+package bjoern.input.common.outputModules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import bjoern.input.common.outputModules.CSV.SortedLines;
+import bjoern.nodeStore.Node;
+import bjoern.nodeStore.NodeKey;
+import orientdbimporter.ShardManifest;
+
+/**
+ * Splits the output of an export into shards that can be imported
+ * concurrently, see `orientdbimporter.ShardManifest`. Each shard is
+ * written to a subdirectory of the output directory by a writer of its
+ * own.
+ *
+ * Nodes are assigned to shards by the address in their key. The address
+ * ranges of the shards are chosen so that each shard holds about the same
+ * number of functions. Root nodes and flags are shared by all functions
+ * and go to the global shard, as do nodes without address, see
+ * `ShardManifest.shardOf`. Edges go to the shard of their destination
+ * node. Since equal lines always go to the same
+ * shard, each shard is deduplicated and ordered like unsharded output.
+ */
+
+public class ShardedWriter implements GraphWriter
+{
+	private final String outputDir;
+	private final OutputFormat outputFormat;
+	private final GraphWriter globalWriter;
+	private final GraphWriter[] shardWriters;
+
+	// boundaries[i] is the first address of shard i + 1, see `toSortable`
+	private volatile long[] boundaries;
+
+	public ShardedWriter(String outputDir, OutputFormat outputFormat,
+			int nShards)
+	{
+		if (nShards < 1)
+			throw new IllegalArgumentException("Need at least one shard");
+
+		this.outputDir = outputDir;
+		this.outputFormat = outputFormat;
+
+		long maxBufferedChars = SortedLines.MAX_BUFFERED_CHARS / (nShards + 1);
+		globalWriter = outputFormat.createWriter(
+				createShardDirectory(ShardManifest.GLOBAL_SHARD),
+				maxBufferedChars);
+		shardWriters = new GraphWriter[nShards];
+		for (int i = 0; i < nShards; i++)
+		{
+			shardWriters[i] = outputFormat.createWriter(
+					createShardDirectory(shardName(i)), maxBufferedChars);
+		}
+	}
+
+	/**
+	 * Chooses the address ranges of the shards from the addresses of all
+	 * functions of the binary. Must be called before any node with an
+	 * address is added.
+	 */
+
+	public void setFunctionAddresses(Collection<Long> addresses)
+	{
+		long[] sorted = addresses.stream().mapToLong(Long::longValue)
+				.map(ShardedWriter::toSortable).sorted().distinct().toArray();
+
+		long[] newBoundaries = new long[shardWriters.length - 1];
+		for (int i = 0; i < newBoundaries.length; i++)
+		{
+			if (sorted.length == 0)
+				newBoundaries[i] = toSortable(0);
+			else
+				newBoundaries[i] = sorted[(int) ((long) (i + 1) * sorted.length
+						/ shardWriters.length)];
+		}
+		boundaries = newBoundaries;
+	}
+
+	@Override
+	public void addNode(Node node, NodeRecord record)
+	{
+		writerForRecord(record).addNode(node, record);
+	}
+
+	@Override
+	public void addNoReplaceNode(Node node, NodeRecord record)
+	{
+		writerForRecord(record).addNoReplaceNode(node, record);
+	}
+
+	@Override
+	public void addEdge(NodeKey srcKey, NodeKey dstKey,
+			Map<String, Object> properties, String edgeType)
+	{
+		writerForAddress(dstKey.getType(), dstKey.getAddress()).addEdge(srcKey,
+				dstKey, properties, edgeType);
+	}
+
+	/**
+	 * Finishes the files of all shards and writes the manifest.
+	 */
+
+	@Override
+	public void finish()
+	{
+		globalWriter.finish();
+		for (GraphWriter writer : shardWriters)
+			writer.finish();
+
+		try
+		{
+			createManifest().write(Paths.get(outputDir, ShardManifest.FILENAME));
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Aborts the writers of all shards. The manifest is only written once
+	 * all shards are finished, so it does not exist.
+	 */
+
+	@Override
+	public void abort()
+	{
+		RuntimeException failure = null;
+		for (GraphWriter writer : allWriters())
+		{
+			try
+			{
+				writer.abort();
+			}
+			catch (RuntimeException e)
+			{
+				if (failure == null)
+					failure = e;
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	private GraphWriter[] allWriters()
+	{
+		GraphWriter[] writers = new GraphWriter[shardWriters.length + 1];
+		writers[0] = globalWriter;
+		System.arraycopy(shardWriters, 0, writers, 1, shardWriters.length);
+		return writers;
+	}
+
+	private ShardManifest createManifest()
+	{
+		ShardManifest manifest = new ShardManifest();
+		manifest.addShard(createShard(ShardManifest.GLOBAL_SHARD, null, null));
+
+		long[] boundaries = getBoundaries();
+		for (int i = 0; i < shardWriters.length; i++)
+		{
+			Long first = (i == 0) ? null : toSortable(boundaries[i - 1]);
+			Long end = (i == boundaries.length) ? null : toSortable(boundaries[i]);
+			manifest.addShard(createShard(shardName(i), first, end));
+		}
+		return manifest;
+	}
+
+	private ShardManifest.Shard createShard(String name, Long firstAddress,
+			Long endAddress)
+	{
+		return new ShardManifest.Shard(name, firstAddress, endAddress,
+				name + "/" + outputFormat.nodeFilename,
+				name + "/" + outputFormat.edgeFilename);
+	}
+
+	private GraphWriter writerForRecord(NodeRecord record)
+	{
+		String type = record.getKeyType();
+		if (type == null)
+			return writerForKey(record.get(NodeRecord.KEY));
+		return writerForAddress(type, record.getKeyAddress());
+	}
+
+	private GraphWriter writerForKey(String key)
+	{
+		if (key == null)
+			return globalWriter;
+
+		int typeEnd = key.indexOf('_');
+		if (typeEnd == -1)
+			return globalWriter;
+
+		String type = key.substring(0, typeEnd);
+		if (isGlobalType(type))
+			return globalWriter;
+
+		int addressEnd = key.indexOf('_', typeEnd + 1);
+		if (addressEnd == -1)
+			addressEnd = key.length();
+
+		long address;
+		try
+		{
+			address = Long.parseLong(key.substring(typeEnd + 1, addressEnd));
+		}
+		catch (NumberFormatException e)
+		{
+			return globalWriter;
+		}
+
+		return shardWriters[shardOf(address)];
+	}
+
+	private GraphWriter writerForAddress(String type, long address)
+	{
+		if (isGlobalType(type))
+			return globalWriter;
+		return shardWriters[shardOf(address)];
+	}
+
+	private static boolean isGlobalType(String type)
+	{
+		return ShardManifest.isGlobalType(type);
+	}
+
+	private int shardOf(long address)
+	{
+		long[] boundaries = getBoundaries();
+		int index = Arrays.binarySearch(boundaries, toSortable(address));
+		return (index >= 0) ? index + 1 : -index - 1;
+	}
+
+	private long[] getBoundaries()
+	{
+		long[] result = boundaries;
+		if (result == null && shardWriters.length > 1)
+			throw new IllegalStateException("Function addresses must be set before nodes are added");
+		return (result == null) ? new long[0] : result;
+	}
+
+	private String createShardDirectory(String name)
+	{
+		File directory = new File(outputDir, name);
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new UncheckedIOException(new IOException(
+					"Cannot create shard directory " + directory));
+		return directory.getPath();
+	}
+
+	private static String shardName(int index)
+	{
+		return "shard-" + index;
+	}
+
+	/**
+	 * Maps addresses to values that sort as signed longs in the order of
+	 * the addresses as unsigned numbers, and back.
+	 */
+
+	private static long toSortable(long address)
+	{
+		return address ^ Long.MIN_VALUE;
+	}
+
+}
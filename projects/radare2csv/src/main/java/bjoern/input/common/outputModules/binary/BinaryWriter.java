@@ -0,0 +1,242 @@
+package bjoern.input.common.outputModules.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import bjoern.input.common.outputModules.GraphWriter;
+import bjoern.input.common.outputModules.NodeRecord;
+import bjoern.input.common.outputModules.CSV.SortedLines;
+import bjoern.nodeStore.Node;
+import bjoern.nodeStore.NodeKey;
+import bjoern.structures.BjoernNodeProperties;
+import orientdbimporter.CSVCommands;
+import orientdbimporter.NodeKeys;
+import orientdbimporter.binary.BinaryFormat;
+import orientdbimporter.binary.BinaryRowEncoder;
+import orientdbimporter.binary.ColumnType;
+
+/**
+ * Writes nodes and edges to the files `nodes.bin` and `edges.bin` in the
+ * binary graph format (see `BinaryFormat`), holding the same rows as the
+ * CSV files written by `CSVWriter`.
+ *
+ * Encoded rows are sorted and deduplicated like CSV lines. To reuse the
+ * sorter, each row is stored as a string with one character per byte.
+ */
+
+public class BinaryWriter implements GraphWriter
+{
+	private static final String COMMAND = "command";
+
+	private static final String[] edgeColumns = {
+			"nodeType_addr", "nodeType_addr", "type"
+	};
+
+	private static final ColumnType[] edgeColumnTypes = {
+			ColumnType.KEY, ColumnType.KEY, ColumnType.SYMBOL
+	};
+
+	private static final Map<String, ColumnType> nodePropertyTypes = new HashMap<String, ColumnType>();
+
+	static
+	{
+		nodePropertyTypes.put(BjoernNodeProperties.KEY, ColumnType.KEY);
+		nodePropertyTypes.put(BjoernNodeProperties.TYPE, ColumnType.SYMBOL);
+		nodePropertyTypes.put(BjoernNodeProperties.ADDR, ColumnType.NUMBER);
+		nodePropertyTypes.put(BjoernNodeProperties.CHILD_NUM, ColumnType.NUMBER);
+		nodePropertyTypes.put(BjoernNodeProperties.REPR, ColumnType.TEXT);
+		nodePropertyTypes.put(BjoernNodeProperties.CODE, ColumnType.BYTES);
+		nodePropertyTypes.put(BjoernNodeProperties.COMMENT, ColumnType.LITERAL);
+		nodePropertyTypes.put(BjoernNodeProperties.ESIL, ColumnType.LIST);
+	}
+
+	private final String outputDir;
+
+	protected final BinaryRowEncoder nodeEncoder;
+	protected final BinaryRowEncoder edgeEncoder;
+
+	protected final SortedLines nodeRows;
+	protected final SortedLines edgeRows;
+
+	private final ThreadLocal<String[]> nodeValues = ThreadLocal
+			.withInitial(() -> new String[NodeRecord.COLUMNS.length + 1]);
+	private final ThreadLocal<long[]> nodeKeys = ThreadLocal
+			.withInitial(() -> new long[NodeRecord.COLUMNS.length + 1]);
+
+	/**
+	 * Creates a writer for the files `nodes.bin` and `edges.bin` in
+	 * `outputDir`. Nothing is written to them before `finish` is called.
+	 */
+
+	public BinaryWriter(String outputDir)
+	{
+		this(outputDir, SortedLines.MAX_BUFFERED_CHARS);
+	}
+
+	/**
+	 * Like `BinaryWriter(outputDir)`, but each file keeps at most
+	 * `maxBufferedChars` in memory before spilling to disk.
+	 */
+
+	public BinaryWriter(String outputDir, long maxBufferedChars)
+	{
+		this.outputDir = outputDir;
+
+		nodeEncoder = createNodeEncoder();
+		edgeEncoder = new BinaryRowEncoder(edgeColumns, edgeColumnTypes);
+
+		nodeRows = new SortedLines("write nodes", Paths.get(outputDir),
+				maxBufferedChars);
+		edgeRows = new SortedLines("write edges", Paths.get(outputDir),
+				maxBufferedChars);
+	}
+
+	private static BinaryRowEncoder createNodeEncoder()
+	{
+		String[] properties = NodeRecord.COLUMNS;
+		String[] columns = new String[properties.length + 1];
+		ColumnType[] columnTypes = new ColumnType[properties.length + 1];
+
+		columns[0] = COMMAND;
+		columnTypes[0] = ColumnType.COMMAND;
+		for (int i = 0; i < properties.length; i++)
+		{
+			columns[i + 1] = properties[i];
+			columnTypes[i + 1] = nodePropertyTypes.getOrDefault(properties[i],
+					ColumnType.LITERAL);
+		}
+		return new BinaryRowEncoder(columns, columnTypes);
+	}
+
+	@Override
+	public void addNode(Node node, NodeRecord record)
+	{
+		addNode(CSVCommands.ADD, record);
+	}
+
+	@Override
+	public void addNoReplaceNode(Node node, NodeRecord record)
+	{
+		addNode(CSVCommands.ADD_NO_REPLACE, record);
+	}
+
+	/**
+	 * Encodes a node row. Keys set by type and address are packed without
+	 * rendering them as strings.
+	 */
+
+	private void addNode(String command, NodeRecord record)
+	{
+		String[] values = nodeValues.get();
+		long[] keys = nodeKeys.get();
+		values[0] = command;
+		keys[1 + NodeRecord.KEY] = NodeKeys.INVALID;
+		if (record.getKeyType() != null)
+			keys[1 + NodeRecord.KEY] = NodeKeys.pack(record.getKeyType(),
+					record.getKeyAddress(), 0);
+		for (int i = 1; i < values.length; i++)
+		{
+			if (i - 1 == NodeRecord.KEY && keys[i] != NodeKeys.INVALID)
+				values[i] = null;
+			else
+				values[i] = record.get(i - 1);
+		}
+
+		nodeRows.add(toLine(nodeEncoder.encode(values, keys)));
+	}
+
+	@Override
+	public void addEdge(NodeKey srcKey, NodeKey dstKey,
+			Map<String, Object> properties, String edgeType)
+	{
+		long[] keys = { pack(srcKey), pack(dstKey), NodeKeys.INVALID };
+		String[] values = {
+				(keys[0] == NodeKeys.INVALID) ? srcKey.toString() : null,
+				(keys[1] == NodeKeys.INVALID) ? dstKey.toString() : null,
+				edgeType };
+		edgeRows.add(toLine(edgeEncoder.encode(values, keys)));
+	}
+
+	/**
+	 * Packs `key`, or returns `NodeKeys.INVALID` if it must be written as
+	 * string, e.g., because its type has no code.
+	 */
+
+	private static long pack(NodeKey key)
+	{
+		Integer counter = key.getCounter();
+		if (counter == null)
+			return NodeKeys.pack(key.getType(), key.getAddress(), 0);
+		// counter 0 is rendered, so it cannot be packed
+		if (counter < 1)
+			return NodeKeys.INVALID;
+		return NodeKeys.pack(key.getType(), key.getAddress(), counter);
+	}
+
+	private static String toLine(byte[] row)
+	{
+		return new String(row, StandardCharsets.ISO_8859_1);
+	}
+
+	protected static byte[] fromLine(String line)
+	{
+		return line.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	public void finish()
+	{
+		writeFile(BinaryFormat.NODE_FILENAME, nodeEncoder, nodeRows);
+		writeFile(BinaryFormat.EDGE_FILENAME, edgeEncoder, edgeRows);
+	}
+
+	@Override
+	public void abort()
+	{
+		try
+		{
+			nodeRows.abort();
+			edgeRows.abort();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			// files are only created by finish, which may have failed
+			new File(outputDir, BinaryFormat.NODE_FILENAME).delete();
+			new File(outputDir, BinaryFormat.EDGE_FILENAME).delete();
+		}
+	}
+
+	private void writeFile(String filename, BinaryRowEncoder encoder,
+			SortedLines rows)
+	{
+		String path = outputDir + File.separator + filename;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(new FileOutputStream(path), 64 * 1024),
+				64 * 1024)))
+		{
+			// all rows have been encoded, so the dictionary is complete
+			encoder.writeHeader(out);
+			rows.forEachSorted(line -> BinaryRowEncoder.writeRow(out,
+					fromLine(line)));
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Cannot write binary file: " + path, e);
+		}
+	}
+
+}
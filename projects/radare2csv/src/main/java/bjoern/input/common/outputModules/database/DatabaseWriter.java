@@ -0,0 +1,112 @@
+package bjoern.input.common.outputModules.database;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import bjoern.input.common.outputModules.CSV.ExternalSorter.LineReader;
+import bjoern.input.common.outputModules.binary.BinaryWriter;
+import octopus.server.components.orientdbImporter.ImportJob;
+import orientdbimporter.CSVImporter;
+import orientdbimporter.NodeKeys;
+import orientdbimporter.PackedKeyRowReader;
+import orientdbimporter.binary.BinaryRowDecoder;
+import orientdbimporter.binary.BinaryRowEncoder;
+
+/**
+ * Imports nodes and edges into a database instead of writing them to
+ * files, which the importer would have to read and parse again.
+ *
+ * Rows are encoded, sorted and deduplicated exactly as for binary files,
+ * since the importer creates an alternative node for each duplicate and
+ * needs all nodes before the first edge. Nothing reaches the database
+ * before `finish` is called, which imports all rows at once. Sorted rows
+ * that do not fit into memory are spilled to the output directory, which
+ * also holds the table of vertex ids while the import runs.
+ *
+ * The importer is created from an `ImportJob`, as for files. Rows are
+ * decoded for it, but node keys are passed packed, so they are neither
+ * rendered nor parsed again, see `PackedKeyRowReader`.
+ */
+
+public class DatabaseWriter extends BinaryWriter
+{
+	private final String outputDir;
+	private final ImportJob importJob;
+
+	/**
+	 * Creates a writer that imports into the database of `importJob`, the
+	 * files of which are ignored.
+	 */
+
+	public DatabaseWriter(String outputDir, ImportJob importJob)
+	{
+		super(outputDir);
+		this.outputDir = outputDir;
+		this.importJob = importJob;
+	}
+
+	@Override
+	public void finish()
+	{
+		CSVImporter importer = importJob.createImporter();
+		importer.setTemporaryDirectory(Paths.get(outputDir));
+
+		try (LineReader nodeLines = nodeRows.openSorted();
+				LineReader edgeLines = edgeRows.openSorted())
+		{
+			importer.importRows(new DecodingRowReader(nodeEncoder, nodeLines),
+					new DecodingRowReader(edgeEncoder, edgeLines));
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Cannot import into database "
+					+ importJob.getDbName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Decodes sorted rows, preceded by the column names as in a file.
+	 */
+
+	private static class DecodingRowReader implements PackedKeyRowReader
+	{
+		private final String[] columnNames;
+		private final BinaryRowDecoder decoder;
+		private final LineReader lines;
+		private boolean columnNamesReturned = false;
+
+		DecodingRowReader(BinaryRowEncoder encoder, LineReader lines)
+		{
+			this.columnNames = encoder.getColumnNames();
+			this.decoder = encoder.createDecoder();
+			this.lines = lines;
+		}
+
+		@Override
+		public String[] readNext() throws IOException
+		{
+			return readNext(null);
+		}
+
+		@Override
+		public String[] readNext(long[] keys) throws IOException
+		{
+			if (!columnNamesReturned)
+			{
+				columnNamesReturned = true;
+				if (keys != null)
+					Arrays.fill(keys, NodeKeys.INVALID);
+				return columnNames;
+			}
+
+			String line = lines.readLine();
+			if (line == null)
+				return null;
+
+			byte[] row = fromLine(line);
+			return decoder.decode(row, row.length, keys);
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+package bjoern.input.common.pipeline;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A stage of the export pipeline: items submitted to the stage are put
+ * into a bounded queue and processed by a fixed number of threads. When
+ * the queue is full, `submit` blocks, so a slow stage throttles the stages
+ * feeding it instead of letting items pile up in memory.
+ *
+ * Items are processed in submission order only if the stage has a single
+ * thread. The first exception thrown while processing an item stops the
+ * stage and is rethrown by `submit` or `finish`.
+ */
+
+public class PipelineStage<T>
+{
+	private static final Object END_OF_INPUT = new Object();
+
+	private final String name;
+	private final BlockingQueue<Object> queue;
+	private final Consumer<T> consumer;
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private final StageMetrics metrics;
+
+	private volatile Throwable failure;
+
+	public PipelineStage(String name, int nThreads, int queueCapacity,
+			Consumer<T> consumer)
+	{
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+		this.consumer = consumer;
+		this.metrics = new StageMetrics(name);
+
+		for (int i = 0; i < nThreads; i++)
+		{
+			Thread thread = new Thread(this::run, name + "-" + i);
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+	}
+
+	public PipelineStage<T> start()
+	{
+		for (Thread thread : threads)
+			thread.start();
+		return this;
+	}
+
+	public void submit(T item)
+	{
+		throwIfFailed();
+		metrics.sampleQueueDepth(queue.size());
+		put(item);
+	}
+
+	/**
+	 * Waits until all submitted items have been processed and stops the
+	 * threads of this stage.
+	 */
+
+	public void finish() throws IOException
+	{
+		for (int i = 0; i < threads.size(); i++)
+			put(END_OF_INPUT);
+
+		for (Thread thread : threads)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for stage " + name);
+			}
+		}
+
+		metrics.log();
+
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		throwIfFailed();
+	}
+
+	/**
+	 * Stops the threads of this stage without processing the items still
+	 * queued and waits for the item being processed. Used when an earlier
+	 * stage has failed.
+	 *
+	 * Threads are interrupted and additionally told to stop through the
+	 * queue, as the consumer may swallow the interrupt.
+	 */
+
+	public void abort()
+	{
+		for (Thread thread : threads)
+			thread.interrupt();
+		queue.clear();
+		for (int i = 0; i < threads.size(); i++)
+			queue.offer(END_OF_INPUT);
+
+		boolean interrupted = false;
+		for (Thread thread : threads)
+		{
+			while (thread.isAlive())
+			{
+				try
+				{
+					thread.join();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	public StageMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	private void put(Object item)
+	{
+		try
+		{
+			queue.put(item);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while submitting to stage " + name);
+		}
+	}
+
+	private void throwIfFailed()
+	{
+		Throwable cause = failure;
+		if (cause == null)
+			return;
+		if (cause instanceof RuntimeException)
+			throw (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		throw new RuntimeException(cause);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void run()
+	{
+		while (true)
+		{
+			Object item;
+			try
+			{
+				item = queue.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			if (item == END_OF_INPUT)
+				return;
+
+			// after a failure, remaining items are drained but not processed
+			if (failure != null)
+				continue;
+
+			long start = System.nanoTime();
+			try
+			{
+				consumer.accept((T) item);
+			}
+			catch (Throwable t)
+			{
+				failure = t;
+				continue;
+			}
+			metrics.itemProcessed(System.nanoTime() - start);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package bjoern.input.common.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throughput and queue depth of a single stage of the export pipeline.
+ * Busy time is summed over all threads of a stage, so it may exceed the
+ * wall-clock time of a parallel stage.
+ */
+
+public class StageMetrics
+{
+	private static final Logger logger = LoggerFactory
+			.getLogger(StageMetrics.class);
+
+	private final String name;
+	private final long startTime = System.nanoTime();
+
+	private final AtomicLong items = new AtomicLong();
+	private final AtomicLong busyNanos = new AtomicLong();
+	private final AtomicLong queueDepthSum = new AtomicLong();
+	private final AtomicLong queueDepthSamples = new AtomicLong();
+	private final AtomicLong maxQueueDepth = new AtomicLong();
+
+	public StageMetrics(String name)
+	{
+		this.name = name;
+	}
+
+	public void itemProcessed(long nanos)
+	{
+		items.incrementAndGet();
+		busyNanos.addAndGet(nanos);
+	}
+
+	public void sampleQueueDepth(int depth)
+	{
+		queueDepthSum.addAndGet(depth);
+		queueDepthSamples.incrementAndGet();
+		maxQueueDepth.accumulateAndGet(depth, Math::max);
+	}
+
+	public long getItems()
+	{
+		return items.get();
+	}
+
+	public void log()
+	{
+		long elapsedMillis = TimeUnit.NANOSECONDS
+				.toMillis(System.nanoTime() - startTime);
+		long samples = queueDepthSamples.get();
+		double averageQueueDepth = (samples == 0) ? 0
+				: (double) queueDepthSum.get() / samples;
+
+		logger.info("Stage '{}': {} items in {} ms ({} items/s), busy {} ms, queue depth avg {} max {}",
+				name, items.get(), elapsedMillis,
+				(elapsedMillis == 0) ? items.get() : items.get() * 1000 / elapsedMillis,
+				TimeUnit.NANOSECONDS.toMillis(busyNanos.get()),
+				String.format("%.1f", averageQueueDepth), maxQueueDepth.get());
+	}
+
+}
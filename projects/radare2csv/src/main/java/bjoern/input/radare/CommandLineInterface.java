@@ -1,15 +1,30 @@
 package bjoern.input.radare;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.ParseException;
 
+import bjoern.input.common.outputModules.OutputFormat;
+import bjoern.input.radare.inputModule.AnalysisCache;
+import bjoern.r2interface.AnalysisProfile;
+
 public class CommandLineInterface extends CommonCommandLineInterface
 {
 
 	private String binaryFilename;
 	private String outputDir = ".";
 	private String projectFilename;
+	private int numberOfWorkers = 1;
+	private int numberOfSerializers = 1;
+	private int numberOfShards = 1;
+	private OutputFormat outputFormat = OutputFormat.CSV;
+	private AnalysisProfile analysisProfile = AnalysisProfile.FULL;
+	private boolean useAnalysisCache = true;
+	private String analysisCacheDir;
+	private long analysisCacheSize = AnalysisCache.DEFAULT_MAX_SIZE;
 
 	@Override
 	protected void initializeOptions()
@@ -20,7 +35,51 @@ public class CommandLineInterface extends CommonCommandLineInterface
 				.withDescription("the directory the output will be written to")
 				.create("outdir");
 
+		Option format = OptionBuilder.withArgName("format").hasArg()
+				.withDescription("the output format: csv (nodes.csv, edges.csv) or binary (nodes.bin, edges.bin) (default: csv)")
+				.create("format");
+
+		Option workers = OptionBuilder.withArgName("n").hasArg()
+				.withDescription("the number of radare processes used to extract function contents (default: 1)")
+				.create("workers");
+
+		Option serializers = OptionBuilder.withArgName("n").hasArg()
+				.withDescription("the number of threads writing function contents while radare extracts further functions (default: 1)")
+				.create("serializers");
+
+		Option shards = OptionBuilder.withArgName("n").hasArg()
+				.withDescription("the number of shards the output is split into for concurrent import, see manifest.tsv (default: 1)")
+				.create("shards");
+
+		Option analysis = OptionBuilder.withArgName("profile").hasArg()
+				.withDescription("the analysis to perform: quick (aa), full (aaa), deep (aaaa) or lazy (af per function, on demand) (default: full). "
+						+ "lazy only finds functions with symbols, or for stripped binaries those called from the entry points, "
+						+ "still analyzes every exported function and only knows cross references of analyzed functions")
+				.create("analysis");
+
+		Option noCache = OptionBuilder
+				.withDescription("always analyze the binary instead of using the analysis cache")
+				.create("nocache");
+
+		Option cacheDir = OptionBuilder.withArgName("dir").hasArg()
+				.withDescription("the directory of the analysis cache (default: "
+						+ AnalysisCache.DEFAULT_DIRECTORY + ")")
+				.create("cachedir");
+
+		Option cacheSize = OptionBuilder.withArgName("megabytes").hasArg()
+				.withDescription("the maximum size of the analysis cache (default: "
+						+ AnalysisCache.DEFAULT_MAX_SIZE / (1024 * 1024) + ")")
+				.create("cachesize");
+
 		options.addOption(outputDirectory);
+		options.addOption(format);
+		options.addOption(workers);
+		options.addOption(serializers);
+		options.addOption(shards);
+		options.addOption(analysis);
+		options.addOption(noCache);
+		options.addOption(cacheDir);
+		options.addOption(cacheSize);
 	}
 
 	public String getBinaryFilename()
@@ -43,6 +102,31 @@ public class CommandLineInterface extends CommonCommandLineInterface
 		if (cmd.hasOption("outdir"))
 			outputDir = cmd.getOptionValue("outdir");
 
+		if (cmd.hasOption("format"))
+			outputFormat = OutputFormat.fromName(cmd.getOptionValue("format"));
+
+		if (cmd.hasOption("workers"))
+			numberOfWorkers = Integer.parseInt(cmd.getOptionValue("workers"));
+
+		if (cmd.hasOption("serializers"))
+			numberOfSerializers = Integer.parseInt(cmd.getOptionValue("serializers"));
+
+		if (cmd.hasOption("shards"))
+			numberOfShards = Integer.parseInt(cmd.getOptionValue("shards"));
+
+		if (cmd.hasOption("analysis"))
+			analysisProfile = AnalysisProfile.fromName(cmd.getOptionValue("analysis"));
+
+		if (cmd.hasOption("nocache"))
+			useAnalysisCache = false;
+
+		if (cmd.hasOption("cachedir"))
+			analysisCacheDir = cmd.getOptionValue("cachedir");
+
+		if (cmd.hasOption("cachesize"))
+			analysisCacheSize = Long.parseLong(cmd.getOptionValue("cachesize"))
+					* 1024 * 1024;
+
 		String[] arguments = cmd.getArgs();
 		binaryFilename = arguments[0];
 		if(arguments.length > 1)
@@ -60,4 +144,45 @@ public class CommandLineInterface extends CommonCommandLineInterface
 		return outputDir;
 	}
 
+	public OutputFormat getOutputFormat()
+	{
+		return outputFormat;
+	}
+
+	public int getNumberOfWorkers()
+	{
+		return numberOfWorkers;
+	}
+
+	public int getNumberOfSerializers()
+	{
+		return numberOfSerializers;
+	}
+
+	public int getNumberOfShards()
+	{
+		return numberOfShards;
+	}
+
+	public AnalysisProfile getAnalysisProfile()
+	{
+		return analysisProfile;
+	}
+
+	/**
+	 * Returns the analysis cache selected on the command line or null if
+	 * the cache is disabled.
+	 */
+
+	public AnalysisCache getAnalysisCache()
+	{
+		if (!useAnalysisCache)
+			return null;
+
+		Path directory = AnalysisCache.DEFAULT_DIRECTORY;
+		if (analysisCacheDir != null)
+			directory = Paths.get(analysisCacheDir);
+		return new AnalysisCache(directory, analysisCacheSize);
+	}
+
 }
@@ -1,14 +1,18 @@
 package bjoern.input.radare;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import bjoern.input.common.Exporter;
-import bjoern.input.common.outputModules.CSV.CSVOutputModule;
+import bjoern.input.common.outputModules.GraphOutputModule;
+import bjoern.input.common.pipeline.PipelineStage;
+import bjoern.input.radare.inputModule.AnalysisCache;
 import bjoern.input.radare.inputModule.RadareInputModule;
+import bjoern.r2interface.AnalysisProfile;
+import bjoern.r2interface.R2Backend;
+import bjoern.r2interface.R2BackendFactory;
 import bjoern.structures.annotations.Flag;
-import bjoern.structures.edges.DirectedEdge;
-import bjoern.structures.edges.Xref;
 import bjoern.structures.interpretations.Function;
 
 /**
@@ -17,7 +21,7 @@ import bjoern.structures.interpretations.Function;
  *
  * In its current version, it simply executes "analyze all"
  * on the binary and writes out the resulting information
- * in CSV format. In the future, we would like to process
+ * in CSV or binary format. In the future, we would like to process
  * radare2 project files instead, so that any edits users have
  * made to the disassembly can be accounted for.
  * */
@@ -25,40 +29,107 @@ import bjoern.structures.interpretations.Function;
 public class RadareExporter extends Exporter
 {
 
+	/**
+	 * Number of functions per serializer that may wait to be written.
+	 */
+
+	private static final int SERIALIZE_QUEUE_CAPACITY_PER_THREAD = 8;
+
 	List<Function> functions;
+	private int numberOfSerializers = 1;
 
 	@Override
 	protected void initialize()
 	{
 		cmdLine = new CommandLineInterface();
 		inputModule = new RadareInputModule();
-		outputModule = new CSVOutputModule();
+		outputModule = new GraphOutputModule();
 	}
 
 	@Override
-	protected void export() throws IOException
+	protected void parseCommandLine(String[] args)
 	{
-		loadAndOutputFlags();
-		loadAndOutputFunctionInfo();
-		loadAndOutputFunctionContent();
-		loadAndOutputCrossReferences();
+		super.parseCommandLine(args);
+		setNumberOfWorkers(cmdLine.getNumberOfWorkers());
+		setNumberOfSerializers(cmdLine.getNumberOfSerializers());
+		setOutputFormat(cmdLine.getOutputFormat());
+		setNumberOfShards(cmdLine.getNumberOfShards());
+		setAnalysisCache(cmdLine.getAnalysisCache());
+		setAnalysisProfile(cmdLine.getAnalysisProfile());
 	}
 
-	private void loadAndOutputCrossReferences()
+	public void setAnalysisProfile(AnalysisProfile analysisProfile)
 	{
-		List<Xref> xrefs;
-		try {
-			xrefs = inputModule.getCrossReferences();
-			for(DirectedEdge xref: xrefs)
-			{
-				outputModule.writeCrossReference(xref);
-			}
-
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		((RadareInputModule) inputModule).setAnalysisProfile(analysisProfile);
+	}
+
+	/**
+	 * Sets the cache used to skip the analysis of binaries that have been
+	 * analyzed before, or null to disable caching. By default, no cache is
+	 * used, while the command line enables the cache in the user's home
+	 * directory unless `-nocache` is given.
+	 */
 
+	public void setAnalysisCache(AnalysisCache analysisCache)
+	{
+		((RadareInputModule) inputModule).setAnalysisCache(analysisCache);
+	}
+
+	/**
+	 * Exports from `backend` instead of a radare process started for the
+	 * binary, e.g., to replay a recorded session, see `Radare.connect`.
+	 * With several workers, `setWorkerBackendFactory` has to be used as
+	 * well.
+	 */
+
+	public void setBackend(R2Backend backend)
+	{
+		((RadareInputModule) inputModule).setBackend(backend);
+	}
+
+	/**
+	 * Makes workers talk to backends created by `workerBackendFactory`
+	 * instead of radare processes started for the binary.
+	 */
+
+	public void setWorkerBackendFactory(R2BackendFactory workerBackendFactory)
+	{
+		((RadareInputModule) inputModule)
+				.setWorkerBackendFactory(workerBackendFactory);
+	}
+
+	/**
+	 * Sets the number of radare processes used to extract function contents
+	 * in parallel. All processes load the same radare project.
+	 */
+
+	public void setNumberOfWorkers(int numberOfWorkers)
+	{
+		((RadareInputModule) inputModule).setNumberOfWorkers(numberOfWorkers);
+	}
+
+	/**
+	 * Sets the number of threads converting function contents into output
+	 * lines while further functions are extracted.
+	 */
+
+	public void setNumberOfSerializers(int numberOfSerializers)
+	{
+		this.numberOfSerializers = numberOfSerializers;
+	}
+
+	@Override
+	protected void export() throws IOException
+	{
+		runStage("flags", this::loadAndOutputFlags);
+		runStage("function info", this::loadAndOutputFunctionInfo);
+		runStage("function content", this::loadAndOutputFunctionContent);
+		runStage("cross references", this::loadAndOutputCrossReferences);
+	}
+
+	private void loadAndOutputCrossReferences() throws IOException
+	{
+		inputModule.getCrossReferences(outputModule::writeCrossReference);
 	}
 
 	private void loadAndOutputFlags() throws IOException
@@ -74,6 +145,7 @@ public class RadareExporter extends Exporter
 	private void loadAndOutputFunctionInfo() throws IOException
 	{
 		functions = inputModule.getFunctions();
+		context.setFunctionAddresses(functionAddresses());
 		for (Function function : functions)
 		{
 			outputModule.writeFunctionNodes(function);
@@ -81,21 +153,44 @@ public class RadareExporter extends Exporter
 		}
 	}
 
-	private void loadAndOutputFunctionContent() throws IOException
+	private List<Long> functionAddresses()
 	{
+		List<Long> addresses = new ArrayList<Long>();
 		for (Function function : functions)
 		{
-			processFunction(function);
+			if (function != null)
+				addresses.add(function.getAddress());
 		}
+		return addresses;
 	}
 
-	private void processFunction(Function function) throws IOException
-	{
+	/**
+	 * Function contents are extracted and parsed by the input module and
+	 * handed to the serializer threads through a bounded queue, so that
+	 * waiting for radare overlaps with writing. The output module in turn
+	 * queues lines for the writer threads.
+	 */
 
-		if (function == null)
-			return;
+	private void loadAndOutputFunctionContent() throws IOException
+	{
+		PipelineStage<Function> serializer = new PipelineStage<Function>(
+				"serialize", numberOfSerializers,
+				numberOfSerializers * SERIALIZE_QUEUE_CAPACITY_PER_THREAD,
+				this::outputFunction).start();
+		try
+		{
+			inputModule.initializeFunctionContents(functions, serializer::submit);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			serializer.abort();
+			throw e;
+		}
+		serializer.finish();
+	}
 
-		inputModule.initializeFunctionContents(function);
+	private void outputFunction(Function function)
+	{
 		outputModule.writeFunctionContent(function);
 
 		// we clear the function content after writing it to free up some
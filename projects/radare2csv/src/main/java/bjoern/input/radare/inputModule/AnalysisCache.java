@@ -0,0 +1,399 @@
+package bjoern.input.radare.inputModule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import bjoern.r2interface.Radare;
+
+/**
+ * A content-addressed cache of radare projects on disk.
+ *
+ * The key of an entry is the SHA-256 of the binary, radare's version and
+ * the analysis options, so that analysis results are reused whenever the
+ * same binary is analyzed the same way, no matter where it is located.
+ * Each entry is a directory holding the saved project.
+ *
+ * The total size of all entries is bounded. When the bound is exceeded,
+ * the least recently used entries are evicted, where the last use of an
+ * entry is recorded as the modification time of its directory. Numbers
+ * of hits, misses and evictions are kept in the file `stats.properties`
+ * of the cache directory.
+ *
+ * Several imports may use the cache at the same time, and any of them may
+ * evict the entry another one is reading. Entries are therefore never
+ * used in place: a hit is copied into a directory of the caller. Evicted
+ * entries are renamed before they are deleted, so a copy either succeeds
+ * with the complete entry or fails.
+ */
+
+public class AnalysisCache
+{
+	private static final Logger logger = LoggerFactory
+			.getLogger(AnalysisCache.class);
+
+	public static final Path DEFAULT_DIRECTORY = Paths.get(
+			System.getProperty("user.home"), ".bjoern", "analysisCache");
+
+	public static final long DEFAULT_MAX_SIZE = 2L * 1024 * 1024 * 1024;
+
+	private static final String PROJECT_FILENAME = "radareProject";
+	private static final String STATS_FILENAME = "stats.properties";
+	private static final String TEMPORARY_PREFIX = "tmp-";
+
+	private static final String HITS = "hits";
+	private static final String MISSES = "misses";
+	private static final String EVICTIONS = "evictions";
+
+	private final Path directory;
+	private final long maxSize;
+
+	public AnalysisCache(Path directory, long maxSize)
+	{
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the key for the analysis of `binaryFilename` by radare
+	 * version `radareVersion` with `analysisOptions`.
+	 */
+
+	public String computeKey(String binaryFilename, String radareVersion,
+			String analysisOptions) throws IOException
+	{
+		MessageDigest digest = createDigest();
+
+		try (InputStream in = Files.newInputStream(Paths.get(binaryFilename)))
+		{
+			byte[] buffer = new byte[64 * 1024];
+			int nRead;
+			while ((nRead = in.read(buffer)) != -1)
+				digest.update(buffer, 0, nRead);
+		}
+
+		digest.update((byte) 0);
+		digest.update(radareVersion.trim().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(analysisOptions.getBytes(StandardCharsets.UTF_8));
+
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Copies the cached project for `key` into the empty directory
+	 * `targetDir` and returns the filename of the copy, or returns null if
+	 * there is no entry for `key`. The copy belongs to the caller and is
+	 * not affected by later evictions.
+	 */
+
+	public String lookup(String key, Path targetDir) throws IOException
+	{
+		Path entry = directory.resolve(key);
+		Path project = entry.resolve(PROJECT_FILENAME);
+
+		if (!Files.exists(project) || !copyEntry(entry, targetDir))
+		{
+			incrementCounter(MISSES);
+			logger.info("Analysis cache miss for {}", key);
+			return null;
+		}
+
+		Files.setLastModifiedTime(entry,
+				FileTime.fromMillis(System.currentTimeMillis()));
+		incrementCounter(HITS);
+		logger.info("Analysis cache hit for {}", key);
+		return targetDir.resolve(PROJECT_FILENAME).toString();
+	}
+
+	/**
+	 * Copies all files of `entry` to `targetDir`. Returns false and removes
+	 * the files copied so far if the entry is evicted meanwhile.
+	 */
+
+	private static boolean copyEntry(Path entry, Path targetDir)
+			throws IOException
+	{
+		try (Stream<Path> stream = Files.walk(entry))
+		{
+			for (Path path : stream.collect(Collectors.toList()))
+			{
+				Path target = targetDir.resolve(entry.relativize(path).toString());
+				if (Files.isDirectory(path))
+					Files.createDirectories(target);
+				else
+					Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		}
+		catch (NoSuchFileException | UncheckedIOException e)
+		{
+			try (Stream<Path> stream = Files.list(targetDir))
+			{
+				for (Path path : stream.collect(Collectors.toList()))
+					deleteRecursively(path);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Saves the project currently loaded in `radare` as entry for `key`
+	 * and evicts entries as necessary. The entry only becomes visible once
+	 * it has been written completely.
+	 */
+
+	public void store(String key, Radare radare) throws IOException
+	{
+		store(key, radare::saveProject);
+	}
+
+	/**
+	 * Writes a project to the given filename.
+	 */
+
+	interface ProjectWriter
+	{
+		void save(String projectFilename) throws IOException;
+	}
+
+	void store(String key, ProjectWriter projectWriter) throws IOException
+	{
+		Files.createDirectories(directory);
+
+		Path temporaryEntry = Files.createTempDirectory(directory,
+				TEMPORARY_PREFIX);
+		projectWriter.save(temporaryEntry.resolve(PROJECT_FILENAME)
+				.toAbsolutePath().toString());
+
+		Path entry = directory.resolve(key);
+		try
+		{
+			Files.move(temporaryEntry, entry, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e)
+		{
+			// another import has stored the same entry in the meantime
+			deleteRecursively(temporaryEntry);
+		}
+
+		evict(entry);
+	}
+
+	/**
+	 * Deletes least recently used entries other than `entryInUse` until the
+	 * total size of all entries is at most `maxSize`.
+	 */
+
+	private void evict(Path entryInUse) throws IOException
+	{
+		List<Path> entries = listEntries();
+		long totalSize = 0;
+		for (Path entry : entries)
+			totalSize += sizeOf(entry);
+
+		entries.sort(Comparator.comparing(AnalysisCache::lastModified));
+
+		for (Path entry : entries)
+		{
+			if (totalSize <= maxSize)
+				break;
+			if (entry.equals(entryInUse))
+				continue;
+
+			long size = sizeOf(entry);
+			if (!deleteEntry(entry))
+				continue;
+			totalSize -= size;
+			incrementCounter(EVICTIONS);
+			logger.info("Evicted {} from analysis cache", entry.getFileName());
+		}
+	}
+
+	/**
+	 * Moves `entry` out of the way and deletes it. Returns false if another
+	 * import has evicted it first.
+	 */
+
+	private boolean deleteEntry(Path entry) throws IOException
+	{
+		Path evicted = directory.resolve(TEMPORARY_PREFIX + "evicted-"
+				+ UUID.randomUUID());
+		try
+		{
+			Files.move(entry, evicted, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (NoSuchFileException e)
+		{
+			return false;
+		}
+		deleteRecursively(evicted);
+		return true;
+	}
+
+	private List<Path> listEntries() throws IOException
+	{
+		List<Path> entries = new ArrayList<Path>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+		{
+			for (Path path : stream)
+			{
+				String name = path.getFileName().toString();
+				if (Files.isDirectory(path) && !name.startsWith(TEMPORARY_PREFIX))
+					entries.add(path);
+			}
+		}
+		return entries;
+	}
+
+	private static FileTime lastModified(Path path)
+	{
+		try
+		{
+			return Files.getLastModifiedTime(path);
+		}
+		catch (IOException e)
+		{
+			return FileTime.fromMillis(0);
+		}
+	}
+
+	private static long sizeOf(Path entry) throws IOException
+	{
+		try (Stream<Path> paths = Files.walk(entry))
+		{
+			long size = 0;
+			for (Path path : paths.collect(Collectors.toList()))
+			{
+				if (Files.isRegularFile(path))
+					size += Files.size(path);
+			}
+			return size;
+		}
+	}
+
+	private static void deleteRecursively(Path path) throws IOException
+	{
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(path))
+		{
+			paths = stream.sorted(Comparator.reverseOrder())
+					.collect(Collectors.toList());
+		}
+		for (Path p : paths)
+			Files.deleteIfExists(p);
+	}
+
+	/**
+	 * Returns hits, misses and evictions recorded so far.
+	 */
+
+	public Properties getStatistics() throws IOException
+	{
+		Properties stats = new Properties();
+		Path statsFile = directory.resolve(STATS_FILENAME);
+		if (!Files.exists(statsFile))
+			return stats;
+
+		try (InputStream in = Files.newInputStream(statsFile))
+		{
+			stats.load(in);
+		}
+		return stats;
+	}
+
+	/**
+	 * Counters are updated by replacing the statistics file, so that other
+	 * imports never read a partially written file. Updates by imports
+	 * running at the same time may be lost, which is acceptable for
+	 * statistics.
+	 */
+
+	private synchronized void incrementCounter(String name) throws IOException
+	{
+		Files.createDirectories(directory);
+
+		Properties stats = getStatistics();
+		stats.setProperty(name, Long.toString(getCounter(stats, name) + 1));
+
+		Path temporaryFile = Files.createTempFile(directory, TEMPORARY_PREFIX,
+				STATS_FILENAME);
+		try
+		{
+			try (OutputStream out = Files.newOutputStream(temporaryFile))
+			{
+				stats.store(out, "bjoern analysis cache");
+			}
+			Files.move(temporaryFile, directory.resolve(STATS_FILENAME),
+					StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaryFile);
+		}
+
+		logger.info("Analysis cache: {} hits, {} misses, {} evictions",
+				stats.getProperty(HITS, "0"), stats.getProperty(MISSES, "0"),
+				stats.getProperty(EVICTIONS, "0"));
+	}
+
+	/**
+	 * Returns the counter `name` of `stats`, where a malformed value counts
+	 * as 0.
+	 */
+
+	private static long getCounter(Properties stats, String name)
+	{
+		try
+		{
+			return Long.parseLong(stats.getProperty(name, "0"));
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+	private static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+
+}
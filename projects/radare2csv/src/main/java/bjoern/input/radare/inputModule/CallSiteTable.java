@@ -0,0 +1,131 @@
+package bjoern.input.radare.inputModule;
+
+/**
+ * Instructions and comments of call sites by address, implemented as
+ * open-addressing hash table with linear probing on parallel arrays, see
+ * `LongNodeMap`. Only the fields needed to write the source node of a call
+ * reference are kept, so that the call sites of a whole binary take little
+ * memory until cross references are exported.
+ *
+ * Null instructions are not supported: a null instruction marks an empty
+ * slot.
+ */
+
+class CallSiteTable
+{
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private long[] addrs;
+	private String[] instructions;
+	private String[] comments;
+	private int size;
+	private int mask;
+	private int maxSize;
+
+	CallSiteTable()
+	{
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the slot of the call site at `addr` or -1 if there is none.
+	 */
+
+	int find(long addr)
+	{
+		int slot = hash(addr) & mask;
+		while (instructions[slot] != null)
+		{
+			if (addrs[slot] == addr)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	String getInstruction(int slot)
+	{
+		return instructions[slot];
+	}
+
+	String getComment(int slot)
+	{
+		return comments[slot];
+	}
+
+	void put(long addr, String instruction, String comment)
+	{
+		if (instruction == null)
+			throw new IllegalArgumentException("Null instructions are not supported");
+
+		int slot = hash(addr) & mask;
+		while (instructions[slot] != null)
+		{
+			if (addrs[slot] == addr)
+			{
+				instructions[slot] = instruction;
+				comments[slot] = comment;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		addrs[slot] = addr;
+		instructions[slot] = instruction;
+		comments[slot] = comment;
+		if (++size > maxSize)
+			grow();
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Removes all call sites and releases the memory taken by the table.
+	 */
+
+	void clear()
+	{
+		allocate(DEFAULT_CAPACITY);
+		size = 0;
+	}
+
+	private void grow()
+	{
+		long[] oldAddrs = addrs;
+		String[] oldInstructions = instructions;
+		String[] oldComments = comments;
+		allocate(2 * oldInstructions.length);
+
+		for (int i = 0; i < oldInstructions.length; i++)
+		{
+			if (oldInstructions[i] == null)
+				continue;
+			int slot = hash(oldAddrs[i]) & mask;
+			while (instructions[slot] != null)
+				slot = (slot + 1) & mask;
+			addrs[slot] = oldAddrs[i];
+			instructions[slot] = oldInstructions[i];
+			comments[slot] = oldComments[i];
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		addrs = new long[capacity];
+		instructions = new String[capacity];
+		comments = new String[capacity];
+		mask = capacity - 1;
+		// keep the table at most three quarters full
+		maxSize = capacity / 4 * 3;
+	}
+
+	private static int hash(long addr)
+	{
+		long h = addr * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,40 @@
+package bjoern.input.radare.inputModule;
+
+import java.io.IOException;
+
+import bjoern.r2interface.Radare;
+import bjoern.r2interface.exceptions.InvalidRadareFunction;
+import bjoern.structures.interpretations.FunctionContent;
+
+/**
+ * Loads the content of a single function from a radare instance.
+ *
+ * Blocks, instructions, ESIL, comments, variables and arguments are all
+ * obtained from a single JSON reply (see `Radare.getFunctionContentAt`).
+ * The content is created detached from the NodeStore (see
+ * `RadareFunctionContentCreator.createDetachedContentFromJSON`), so that
+ * several instances of radare can be queried in parallel.
+ */
+
+public class FunctionContentLoader
+{
+
+	/**
+	 * Returns the content of the function at `address` or null if radare
+	 * does not consider `address` to be the start of a valid function.
+	 */
+
+	public static FunctionContent loadDetachedContent(Radare radare,
+			Long address) throws IOException
+	{
+		try
+		{
+			return radare.getFunctionContentAt(address);
+		}
+		catch (InvalidRadareFunction e)
+		{
+			return null;
+		}
+	}
+
+}
@@ -2,25 +2,32 @@ package bjoern.input.radare.inputModule;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import bjoern.input.common.ExportContext;
 import bjoern.input.common.InputModule;
+import bjoern.input.common.pipeline.StageMetrics;
+import bjoern.nodeStore.NodeStore;
+import bjoern.r2interface.AnalysisProfile;
+import bjoern.r2interface.R2Backend;
+import bjoern.r2interface.R2BackendFactory;
 import bjoern.r2interface.Radare;
 import bjoern.r2interface.RadareDisassemblyParser;
 import bjoern.r2interface.creators.RadareFunctionContentCreator;
-import bjoern.r2interface.creators.RadareFunctionCreator;
-import bjoern.r2interface.exceptions.EmptyDisassembly;
-import bjoern.r2interface.exceptions.InvalidRadareFunction;
 import bjoern.structures.annotations.Flag;
 import bjoern.structures.edges.CallRef;
 import bjoern.structures.edges.Xref;
-import bjoern.structures.interpretations.DisassembledFunction;
 import bjoern.structures.interpretations.DisassemblyLine;
 import bjoern.structures.interpretations.Function;
 import bjoern.structures.interpretations.FunctionContent;
@@ -28,34 +35,98 @@ import bjoern.structures.interpretations.FunctionContent;
 public class RadareInputModule implements InputModule
 {
 
+	private static final Logger logger = LoggerFactory
+			.getLogger(RadareInputModule.class);
+
+	private static final int CALL_REF_BATCH_SIZE = 4096;
+
 	private Radare radare = new Radare();
+	private String binaryFilename;
+	private String projectFilename;
+	private Path temporaryProjectDir;
+	private int numberOfWorkers = 1;
+	private AnalysisCache analysisCache;
+	private R2Backend backend;
+	private R2BackendFactory workerBackendFactory;
+	private NodeStore nodeStore;
+
+	/**
+	 * Instructions of calls by address, collected while extracting function
+	 * contents and consumed by `getCrossReferences`.
+	 */
+
+	private final CallSiteTable callSites = new CallSiteTable();
 
 	@Override
-	public void initialize(String filename, String projectFilename) throws IOException
+	public void initialize(String filename, String projectFilename,
+			ExportContext context) throws IOException
 	{
-		radare.loadBinary(filename);
+		this.nodeStore = context.getNodeStore();
+		this.binaryFilename = filename;
+		this.projectFilename = projectFilename;
+
+		if (backend != null)
+			radare.connect(backend);
+		else
+			radare.loadBinary(filename);
 
 		if(projectFilename != null){
 			radare.loadProject(projectFilename);
+		}else if(analysisCache != null && !radare.getAnalysisProfile().isLazy()){
+			loadOrAnalyzeBinary(filename);
 		}else{
 			radare.analyzeBinary();
 		}
 	}
 
-	@Override
-	public List<Function> getFunctions() throws IOException
+	/**
+	 * Loads the analysis result for the binary from the analysis cache, or
+	 * analyzes the binary and stores the result in the cache. Problems
+	 * with the cache are logged and otherwise ignored.
+	 */
+
+	private void loadOrAnalyzeBinary(String filename) throws IOException
 	{
-		List<Function> retval = new LinkedList<Function>();
-		JSONArray jsonFunctions = radare.getJSONFunctions();
-		int nFunctions = jsonFunctions.length();
-		for (int i = 0; i < nFunctions; i++)
+		String key = null;
+		try
+		{
+			key = analysisCache.computeKey(filename, radare.getVersion(),
+					radare.getAnalysisProfile().command);
+			// the cached project is copied, as other imports may evict it
+			String cachedProject = analysisCache.lookup(key,
+					getTemporaryProjectDir());
+			if (cachedProject != null)
+			{
+				radare.loadProject(cachedProject);
+				this.projectFilename = cachedProject;
+				return;
+			}
+		}
+		catch (IOException e)
 		{
-			JSONObject jsonFunction = jsonFunctions.getJSONObject(i);
-			Function function = RadareFunctionCreator
-					.createFromJSON(jsonFunction);
-			retval.add(function);
+			logger.warn("Cannot read from analysis cache: {}", e.getMessage());
 		}
 
+		radare.analyzeBinary();
+
+		if (key == null)
+			return;
+
+		try
+		{
+			analysisCache.store(key, radare);
+		}
+		catch (IOException e)
+		{
+			logger.warn("Cannot write to analysis cache: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public List<Function> getFunctions() throws IOException
+	{
+		List<Function> retval = new ArrayList<Function>();
+		radare.forEachFunction(retval::add);
 		return retval;
 	}
 
@@ -77,55 +148,147 @@ public class RadareInputModule implements InputModule
 			throws IOException
 	{
 		Long address = function.getAddress();
-		JSONObject jsonFunctionContent;
-		String disassemblyStr;
-		String esilDisassemblyStr;
+		FunctionContent content = FunctionContentLoader
+				.loadDetachedContent(radare, address);
 
+		if (content == null)
+			return;
+
+		RadareFunctionContentCreator.registerBasicBlocksInNodeStore(content,
+				nodeStore);
+		function.setContent(content);
+		rememberCallSites(function);
+	}
+
+	@Override
+	public void initializeFunctionContents(List<Function> functions,
+			Consumer<Function> consumer) throws IOException
+	{
+		if (numberOfWorkers <= 1)
+		{
+			StageMetrics fetchMetrics = new StageMetrics("fetch and parse");
+			for (Function function : functions)
+			{
+				if (function == null)
+					continue;
+				long start = System.nanoTime();
+				initializeFunctionContents(function);
+				fetchMetrics.itemProcessed(System.nanoTime() - start);
+				consumer.accept(function);
+			}
+			fetchMetrics.log();
+			return;
+		}
+
+		// Workers run in processes of their own, so functions they analyze
+		// lazily would remain unanalyzed in this instance, which provides
+		// cross references and the saved project. Functions are therefore
+		// analyzed here, and workers load the resulting project.
+		AnalysisProfile workerProfile = radare.getAnalysisProfile();
+		if (workerProfile.isLazy())
+		{
+			radare.analyzeFunctionsAt(getAddresses(functions));
+			workerProfile = AnalysisProfile.FULL;
+		}
+
+		RadareWorkerPool pool = new RadareWorkerPool(numberOfWorkers,
+				workerProfile);
+		if (workerBackendFactory != null)
+			pool.setBackendFactory(workerBackendFactory);
 		try
 		{
-			jsonFunctionContent = radare.getJSONFunctionContentAt(address);
-			disassemblyStr = radare.getDisassemblyForFunctionAt(address);
-			radare.enableEsil();
-			esilDisassemblyStr = radare.getDisassemblyForFunctionAt(address);
-			radare.disableEsil();
+			pool.start(binaryFilename, getProjectFilenameForWorkers());
+			pool.processFunctions(functions, nodeStore, function -> {
+				rememberCallSites(function);
+				consumer.accept(function);
+			});
 		}
-		catch (InvalidRadareFunction e)
+		finally
 		{
-			return;
+			pool.shutdown();
+		}
+	}
+
+	private static List<Long> getAddresses(List<Function> functions)
+	{
+		List<Long> addresses = new ArrayList<Long>(functions.size());
+		for (Function function : functions)
+		{
+			if (function != null)
+				addresses.add(function.getAddress());
 		}
+		return addresses;
+	}
 
-		FunctionContent content = RadareFunctionContentCreator
-				.createContentFromJSON(jsonFunctionContent, address);
+	/**
+	 * Workers load the project the binary was initialized from. If the
+	 * binary was analyzed from scratch or functions have been analyzed
+	 * lazily, the analysis result is saved to a temporary project first.
+	 */
 
-		jsonFunctionContent = null;
+	private String getProjectFilenameForWorkers() throws IOException
+	{
+		if (projectFilename != null && !radare.getAnalysisProfile().isLazy())
+			return projectFilename;
 
-		generateDisassembly(address, disassemblyStr, content);
-		generateESILDisassembly(address, esilDisassemblyStr, content);
+		String filename = getTemporaryProjectDir().resolve("radareProject")
+				.toString();
+		radare.saveProject(filename);
+		projectFilename = filename;
+		return filename;
+	}
 
-		function.setContent(content);
+	/**
+	 * Returns the directory for projects that only this import uses, which
+	 * is deleted by `finish`.
+	 */
 
+	private Path getTemporaryProjectDir() throws IOException
+	{
+		if (temporaryProjectDir == null)
+			temporaryProjectDir = Files.createTempDirectory("bjoern-radare");
+		return temporaryProjectDir;
 	}
 
-	private void generateESILDisassembly(Long address, String esilDisassemblyStr, FunctionContent content) {
-		try {
-			RadareDisassemblyParser parser = new RadareDisassemblyParser();
-			DisassembledFunction func = parser.parseFunction(esilDisassemblyStr, address);
-			content.setDisassembledEsilFunction(func);
-		} catch (EmptyDisassembly e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+	/**
+	 * Sets the cache used to skip the analysis of binaries analyzed before,
+	 * or null to always analyze binaries.
+	 */
+
+	public void setAnalysisCache(AnalysisCache analysisCache)
+	{
+		this.analysisCache = analysisCache;
 	}
 
-	private void generateDisassembly(Long address, String disassemblyStr, FunctionContent content) {
-		try {
-			RadareDisassemblyParser parser = new RadareDisassemblyParser();
-			DisassembledFunction func = parser.parseFunction(disassemblyStr, address);
-			content.setDisassembledFunction(func);
-		} catch (EmptyDisassembly e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+	public void setAnalysisProfile(AnalysisProfile analysisProfile)
+	{
+		radare.setAnalysisProfile(analysisProfile);
+	}
+
+	/**
+	 * Makes the radare instance of this module talk to `backend` instead of
+	 * a radare process started for the binary. Workers still start their
+	 * own processes unless `setWorkerBackendFactory` is used as well.
+	 */
+
+	public void setBackend(R2Backend backend)
+	{
+		this.backend = backend;
+	}
+
+	/**
+	 * Makes workers talk to backends created by `workerBackendFactory`
+	 * instead of radare processes started for the binary.
+	 */
+
+	public void setWorkerBackendFactory(R2BackendFactory workerBackendFactory)
+	{
+		this.workerBackendFactory = workerBackendFactory;
+	}
+
+	public void setNumberOfWorkers(int numberOfWorkers)
+	{
+		this.numberOfWorkers = numberOfWorkers;
 	}
 
 	@Override
@@ -135,6 +298,7 @@ public class RadareInputModule implements InputModule
 		{
 			saveRadareProject(outputDir);
 			radare.shutdown();
+			deleteTemporaryProject();
 		}
 		catch (Exception e)
 		{
@@ -142,6 +306,20 @@ public class RadareInputModule implements InputModule
 		}
 	}
 
+	private void deleteTemporaryProject() throws IOException
+	{
+		if (temporaryProjectDir == null)
+			return;
+
+		List<Path> paths = Files.walk(temporaryProjectDir)
+				.sorted(Comparator.reverseOrder())
+				.collect(Collectors.toList());
+		for (Path path : paths)
+			Files.delete(path);
+
+		temporaryProjectDir = null;
+	}
+
 	private void saveRadareProject(String outputDir) throws IOException
 	{
 		Path cwd = Paths.get(outputDir).toAbsolutePath().normalize();
@@ -150,34 +328,124 @@ public class RadareInputModule implements InputModule
 	}
 
 	@Override
-	public List<Xref> getCrossReferences() throws IOException
+	public void getCrossReferences(Consumer<Xref> consumer) throws IOException
 	{
-		List<Xref> crossReferences = new LinkedList<Xref>();
+		List<CallRef> unresolvedCallRefs = new ArrayList<CallRef>();
+		long nResolvedCallRefs = 0;
 		radare.askForCrossReferences();
-		List<Xref> xefs;
+		List<Xref> xrefs;
 
-		while ((xefs = radare.getNextCrossReferences()) != null)
+		while ((xrefs = radare.getNextCrossReferences()) != null)
 		{
-			crossReferences.addAll(xefs);
+			for (Xref xref : xrefs)
+			{
+				if (xref instanceof CallRef)
+				{
+					if (!initializeCallRefFromCache((CallRef) xref))
+					{
+						unresolvedCallRefs.add((CallRef) xref);
+						continue;
+					}
+					nResolvedCallRefs++;
+				}
+				consumer.accept(xref);
+			}
 		}
 
-		for(Xref r : crossReferences)
+		logger.info("Call sites resolved from function contents: {}, disassembled: {}",
+				nResolvedCallRefs, unresolvedCallRefs.size());
+		callSites.clear();
+
+		initializeCallRefInstructions(unresolvedCallRefs, consumer);
+	}
+
+	/**
+	 * Remembers the instructions of all calls in `function`, so that call
+	 * sites of cross references need not be disassembled again.
+	 */
+
+	private void rememberCallSites(Function function)
+	{
+		FunctionContent content = function.getContent();
+		if (content == null)
+			return;
+
+		for (DisassemblyLine line : content.getDisassemblyLines())
 		{
-			if(r instanceof CallRef)
-				initializeCallRefInstruction(r);
+			if (line.isCall() && line.getInstruction() != null)
+				callSites.put(line.getAddr(), line.getInstruction(),
+						line.getComment());
 		}
-
-		return crossReferences;
 	}
 
-	private void initializeCallRefInstruction(Xref xref) throws IOException
+	private boolean initializeCallRefFromCache(CallRef callRef)
 	{
-		CallRef callRef = (CallRef) xref;
 		long addr = callRef.getSourceKey().getAddress();
-		String line = radare.getDisassemblyForInstructionAt(addr);
+		int slot = callSites.find(addr);
+		if (slot == -1)
+			return false;
+
+		callRef.setDisassemblyLine(createCallSiteLine(addr,
+				callSites.getInstruction(slot), callSites.getComment(slot)));
+		return true;
+	}
+
+	/**
+	 * Creates the disassembly line of the source of a call reference. Call
+	 * sites from function contents and call sites disassembled via `pd 1`
+	 * both go through here, so that their source nodes are alike.
+	 * Comments are stored without radare's leading `;`.
+	 */
+
+	private static DisassemblyLine createCallSiteLine(long addr,
+			String instruction, String comment)
+	{
+		DisassemblyLine line = new DisassemblyLine();
+		line.setAddr(addr);
+		line.setInstruction(instruction);
+		if (comment != null)
+		{
+			if (comment.startsWith(";"))
+				comment = comment.substring(1).trim();
+			line.setComment(comment);
+		}
+		return line;
+	}
+
+	/**
+	 * Disassembles the source instructions of all `callRefs` and hands them
+	 * to `consumer`. Instructions are requested in batches, see
+	 * `Radare.cmdBatch`.
+	 */
+
+	private void initializeCallRefInstructions(List<CallRef> callRefs,
+			Consumer<Xref> consumer) throws IOException
+	{
 		RadareDisassemblyParser parser = new RadareDisassemblyParser();
-		DisassemblyLine parsedInstruction = parser.parseInstruction(line);
-		callRef.setDisassemblyLine(parsedInstruction);
+
+		for (int start = 0; start < callRefs.size(); start += CALL_REF_BATCH_SIZE)
+		{
+			List<CallRef> batch = callRefs.subList(start,
+					Math.min(start + CALL_REF_BATCH_SIZE, callRefs.size()));
+
+			List<Long> addrs = new ArrayList<Long>(batch.size());
+			for (CallRef callRef : batch)
+				addrs.add(callRef.getSourceKey().getAddress());
+
+			List<String> lines = radare.getDisassemblyForInstructionsAt(addrs);
+			for (int i = 0; i < batch.size(); i++)
+			{
+				long addr = addrs.get(i);
+				DisassemblyLine parsedInstruction = parser.parseInstruction(lines.get(i));
+				if (parsedInstruction == null)
+					batch.get(i).setDisassemblyLine(createCallSiteLine(addr, null, null));
+				else
+					batch.get(i).setDisassemblyLine(createCallSiteLine(addr,
+							parsedInstruction.getInstruction(),
+							parsedInstruction.getComment()));
+				consumer.accept(batch.get(i));
+			}
+		}
 	}
 
 }
@@ -0,0 +1,254 @@
+package bjoern.input.radare.inputModule;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import bjoern.input.common.pipeline.StageMetrics;
+import bjoern.nodeStore.NodeStore;
+import bjoern.r2interface.AnalysisProfile;
+import bjoern.r2interface.R2BackendFactory;
+import bjoern.r2interface.R2Backends;
+import bjoern.r2interface.Radare;
+import bjoern.r2interface.creators.RadareFunctionContentCreator;
+import bjoern.structures.interpretations.Function;
+import bjoern.structures.interpretations.FunctionContent;
+
+/**
+ * A pool of radare instances, all of which are loaded from the same radare
+ * project, used to extract function contents in parallel.
+ *
+ * Functions are handed out to a work-stealing executor with one thread per
+ * radare instance, so that idle workers pick up the next function as soon
+ * as they are done. Results are merged in list order on the calling thread,
+ * which is also the only thread that touches the node store. The output is
+ * therefore identical to that of a sequential export.
+ *
+ * Radare replies are parsed while they are read, so fetching and parsing
+ * form a single stage, the queue of which is the list of pending results.
+ */
+
+public class RadareWorkerPool
+{
+	private static final Logger logger = LoggerFactory
+			.getLogger(RadareWorkerPool.class);
+
+	/**
+	 * Number of functions per worker that may be extracted ahead of the
+	 * function currently being merged. Bounds the memory occupied by
+	 * function contents waiting to be merged.
+	 */
+
+	private static final int LOOKAHEAD_PER_WORKER = 4;
+
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+	private final List<Radare> instances = new ArrayList<Radare>();
+	private final BlockingQueue<Radare> idleInstances;
+	private final int size;
+	private final AnalysisProfile analysisProfile;
+	private R2BackendFactory backendFactory = R2Backends::create;
+	private ExecutorService executor;
+	private StageMetrics fetchMetrics;
+
+	public RadareWorkerPool(int size, AnalysisProfile analysisProfile)
+	{
+		this.size = size;
+		this.analysisProfile = analysisProfile;
+		this.idleInstances = new ArrayBlockingQueue<Radare>(size);
+	}
+
+	/**
+	 * Makes workers talk to backends created by `backendFactory` instead
+	 * of radare processes started for the binary.
+	 */
+
+	public void setBackendFactory(R2BackendFactory backendFactory)
+	{
+		this.backendFactory = backendFactory;
+	}
+
+	public void start(String binaryFilename, String projectFilename)
+			throws IOException
+	{
+		logger.info("Starting {} radare workers", size);
+
+		for (int i = 0; i < size; i++)
+		{
+			Radare radare = new Radare();
+			radare.setAnalysisProfile(analysisProfile);
+			radare.connect(backendFactory.create(binaryFilename));
+			radare.loadProject(projectFilename);
+			instances.add(radare);
+			idleInstances.add(radare);
+		}
+
+		executor = Executors.newWorkStealingPool(size);
+	}
+
+	public void processFunctions(List<Function> functions,
+			NodeStore nodeStore, Consumer<Function> consumer) throws IOException
+	{
+		Deque<Future<FunctionContent>> pending = new ArrayDeque<Future<FunctionContent>>();
+		Iterator<Function> toSubmit = functions.iterator();
+		int maxPending = size * LOOKAHEAD_PER_WORKER;
+		fetchMetrics = new StageMetrics("fetch and parse");
+		StageMetrics mergeMetrics = new StageMetrics("merge");
+
+		for (Function function : functions)
+		{
+			while (pending.size() < maxPending && toSubmit.hasNext())
+				pending.add(submit(toSubmit.next()));
+
+			fetchMetrics.sampleQueueDepth(countCompleted(pending));
+			FunctionContent content = waitForContent(pending.remove());
+			long start = System.nanoTime();
+			if (function == null)
+				continue;
+
+			if (content != null)
+			{
+				RadareFunctionContentCreator
+						.registerBasicBlocksInNodeStore(content, nodeStore);
+				function.setContent(content);
+			}
+			consumer.accept(function);
+			mergeMetrics.itemProcessed(System.nanoTime() - start);
+		}
+
+		fetchMetrics.log();
+		mergeMetrics.log();
+	}
+
+	/**
+	 * Number of extracted function contents waiting to be merged.
+	 */
+
+	private static int countCompleted(Deque<Future<FunctionContent>> pending)
+	{
+		int completed = 0;
+		for (Future<FunctionContent> future : pending)
+		{
+			if (future.isDone())
+				completed++;
+		}
+		return completed;
+	}
+
+	private Future<FunctionContent> submit(Function function)
+	{
+		if (function == null)
+			return CompletableFuture.completedFuture(null);
+
+		Long address = function.getAddress();
+		return executor.submit(() -> loadContent(address));
+	}
+
+	private FunctionContent loadContent(Long address)
+			throws IOException, InterruptedException
+	{
+		Radare radare = idleInstances.take();
+		long start = System.nanoTime();
+		try
+		{
+			return FunctionContentLoader.loadDetachedContent(radare, address);
+		}
+		finally
+		{
+			fetchMetrics.itemProcessed(System.nanoTime() - start);
+			idleInstances.put(radare);
+		}
+	}
+
+	private FunctionContent waitForContent(Future<FunctionContent> future)
+			throws IOException
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for radare worker");
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Stops the workers and shuts down their radare instances. Interrupting
+	 * a worker does not end a read from its pipe, so workers are given
+	 * `SHUTDOWN_TIMEOUT_SECONDS` to finish their current function. An
+	 * instance still in use after that is left alone rather than being
+	 * sent `q` while a command is in flight.
+	 */
+
+	public void shutdown()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			awaitWorkers();
+		}
+
+		List<Radare> idle = new ArrayList<Radare>();
+		idleInstances.drainTo(idle);
+		for (Radare radare : instances)
+		{
+			if (!idle.contains(radare))
+			{
+				logger.warn("Radare worker still busy, not shutting it down");
+				continue;
+			}
+
+			try
+			{
+				radare.shutdown();
+			}
+			catch (Exception e)
+			{
+				logger.error("Cannot shut down radare worker", e);
+			}
+		}
+		instances.clear();
+	}
+
+	private void awaitWorkers()
+	{
+		try
+		{
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS,
+					TimeUnit.SECONDS))
+				logger.warn("Radare workers did not finish within {} s",
+						SHUTDOWN_TIMEOUT_SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package bjoern.input.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import bjoern.input.radare.RadareExporter;
+import octopus.server.components.orientdbImporter.ImportJob;
+import orientdbimporter.CSVBatchImporter;
+import orientdbimporter.CSVParallelImporter;
+
+public class ExporterTests
+{
+
+	@Test
+	public void testDatabaseIsImportedByOneWorkerByDefault()
+	{
+		ImportJob job = new RadareExporter().createImportJob("db");
+		assertEquals("db", job.getDbName());
+		assertEquals(1, job.getNumberOfWorkers());
+		assertTrue(job.hasFullTextIndex());
+		assertEquals(CSVBatchImporter.class, job.createImporter().getClass());
+	}
+
+	@Test
+	public void testImportOptionsArePassedToImporter()
+	{
+		RadareExporter exporter = new RadareExporter();
+		exporter.setImportWorkers(4);
+		exporter.setFullTextIndex(false);
+
+		ImportJob job = exporter.createImportJob("db");
+		assertEquals(4, job.getNumberOfWorkers());
+		assertFalse(job.hasFullTextIndex());
+		assertTrue(job.createImporter() instanceof CSVParallelImporter);
+	}
+
+}
@@ -0,0 +1,71 @@
+package bjoern.input.common.outputModules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AddressSetTests
+{
+
+	@Test
+	public void testMatchesHashSet()
+	{
+		Random random = new Random(42);
+		AddressSet addresses = new AddressSet();
+		Set<Long> expected = new HashSet<Long>();
+
+		for (int i = 0; i < 200000; i++)
+		{
+			long address;
+			if (random.nextBoolean())
+				// dense code, which turns containers into bitmaps
+				address = 0x8048000L + random.nextInt(0x30000);
+			else
+				// scattered data and high addresses
+				address = random.nextLong();
+			assertEquals(expected.add(address), addresses.add(address));
+		}
+
+		assertEquals(expected.size(), addresses.size());
+		for (long address : expected)
+			assertTrue(addresses.contains(address));
+		assertFalse(addresses.contains(0x8000000L));
+	}
+
+	@Test
+	public void testEachAddressIsAddedOnceAcrossThreads()
+			throws InterruptedException
+	{
+		AddressSet addresses = new AddressSet();
+		AtomicInteger added = new AtomicInteger();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++)
+		{
+			Thread thread = new Thread(() -> {
+				for (long address = 0x400000; address < 0x420000; address++)
+				{
+					if (addresses.add(address))
+						added.incrementAndGet();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(0x20000, added.get());
+		assertEquals(0x20000, addresses.size());
+	}
+
+}
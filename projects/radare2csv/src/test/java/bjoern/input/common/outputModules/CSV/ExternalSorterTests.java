@@ -0,0 +1,85 @@
+package bjoern.input.common.outputModules.CSV;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExternalSorterTests
+{
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path tempDir;
+
+	@Before
+	public void createTempDir() throws IOException
+	{
+		tempDir = tempFolder.newFolder("sorter").toPath();
+	}
+
+	private static String expectedOutput(List<String> lines)
+	{
+		List<String> sorted = new ArrayList<String>(new TreeSet<String>(lines));
+		Collections.reverse(sorted);
+		return String.join("", sorted);
+	}
+
+	private String sort(List<String> lines, long maxBufferedChars)
+			throws IOException
+	{
+		StringWriter writer = new StringWriter();
+		ExternalSorter sorter = new ExternalSorter(tempDir, maxBufferedChars);
+		for (String line : lines)
+			sorter.add(line);
+		sorter.writeTo(writer);
+		return writer.toString();
+	}
+
+	@Test
+	public void testInMemory() throws IOException
+	{
+		List<String> lines = new ArrayList<String>();
+		lines.add("A\tb\n");
+		lines.add("ANR\tb\n");
+		lines.add("A\ta\n");
+		lines.add("A\tb\n");
+
+		assertEquals("ANR\tb\nA\tb\nA\ta\n", sort(lines, 1024));
+	}
+
+	@Test
+	public void testSpilledRunsMatchInMemorySort() throws IOException
+	{
+		Random random = new Random(42);
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 5000; i++)
+		{
+			String command = random.nextBoolean() ? "A" : "ANR";
+			// embedded newlines and non-ASCII characters must survive runs
+			lines.add(command + "\t" + random.nextInt(1000) + "\"x\nyä\"\n");
+		}
+
+		// forces hundreds of runs and thus intermediate merges
+		assertEquals(expectedOutput(lines), sort(lines, 64));
+
+		try (Stream<Path> files = Files.list(tempDir))
+		{
+			assertEquals(0, files.count());
+		}
+	}
+
+}
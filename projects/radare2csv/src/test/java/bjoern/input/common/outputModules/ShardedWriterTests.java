@@ -0,0 +1,165 @@
+package bjoern.input.common.outputModules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bjoern.nodeStore.NodeKey;
+import orientdbimporter.ShardManifest;
+
+public class ShardedWriterTests
+{
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path outputDir;
+
+	@Before
+	public void createOutputDir() throws IOException
+	{
+		outputDir = tempFolder.newFolder("shards").toPath();
+	}
+
+	private static NodeRecord node(String key)
+	{
+		return new NodeRecord().set(NodeRecord.KEY, key);
+	}
+
+	private static NodeRecord node(String type, long address)
+	{
+		return new NodeRecord().setNode(type, address);
+	}
+
+	/**
+	 * Returns the lines of a file of a shard, without header and empty
+	 * trailing columns, separated by ";".
+	 */
+
+	private String lines(ShardManifest manifest, int shard, boolean nodes)
+			throws IOException
+	{
+		ShardManifest.Shard s = manifest.getShards().get(shard);
+		Path path = Paths.get(manifest.resolve(nodes ? s.nodeFile : s.edgeFile));
+		return Files.readAllLines(path).stream().skip(1)
+				.map(line -> line.replaceAll("\t+$", ""))
+				.collect(Collectors.joining(";"));
+	}
+
+	@Test
+	public void testNodesAndEdgesAreRoutedByAddress() throws IOException
+	{
+		ShardedWriter writer = new ShardedWriter(outputDir.toString(),
+				OutputFormat.CSV, 3);
+		writer.setFunctionAddresses(Arrays.asList(600L, 100L, 300L, 200L,
+				500L, 400L, 300L));
+
+		writer.addNoReplaceNode(null, node("Root", 150));
+		writer.addNode(null, node("Flag_150"));
+		writer.addNode(null, node("Func", 100));
+		writer.addNode(null, node("Instr_299_1"));
+		writer.addNode(null, node("BB_300"));
+		writer.addNode(null, node("Instr_500"));
+		writer.addNode(null, node("Instr", -1));
+		writer.addNode(null, node("Instr_500"));
+		writer.addEdge(new NodeKey(100, "Func"), new NodeKey(500, "Instr"),
+				new HashMap<String, Object>(), "IS_FUNC_OF");
+		writer.finish();
+
+		ShardManifest manifest = ShardManifest.load(
+				outputDir.resolve(ShardManifest.FILENAME));
+		List<ShardManifest.Shard> shards = manifest.getShards();
+		assertEquals(4, shards.size());
+		assertEquals(ShardManifest.GLOBAL_SHARD, shards.get(0).name);
+		assertNull(shards.get(1).firstAddress);
+		assertEquals(Long.valueOf(300), shards.get(1).endAddress);
+		assertEquals(Long.valueOf(300), shards.get(2).firstAddress);
+		assertEquals(Long.valueOf(500), shards.get(2).endAddress);
+		assertEquals(Long.valueOf(500), shards.get(3).firstAddress);
+		assertNull(shards.get(3).endAddress);
+
+		assertEquals("ANR\tRoot_150\tRoot\t150;A\tFlag_150", lines(manifest, 0, true));
+		assertEquals("A\tInstr_299_1;A\tFunc_100\tFunc\t100", lines(manifest, 1, true));
+		assertEquals("A\tBB_300", lines(manifest, 2, true));
+		// negative addresses are large unsigned addresses
+		assertEquals("A\tInstr_500;A\tInstr_-1\tInstr\t-1", lines(manifest, 3, true));
+		assertEquals("Func_100\tInstr_500\tIS_FUNC_OF", lines(manifest, 3, false));
+		assertEquals("", lines(manifest, 1, false));
+
+		// the importer finds the shard of each key in the manifest
+		assertEquals(0, manifest.shardOf("Root_150"));
+		assertEquals(0, manifest.shardOf("Flag_150"));
+		assertEquals(1, manifest.shardOf("Instr_299_1"));
+		assertEquals(1, manifest.shardOf("Func_100"));
+		assertEquals(2, manifest.shardOf("BB_300"));
+		assertEquals(3, manifest.shardOf("Instr_500"));
+		assertEquals(3, manifest.shardOf("Instr_-1"));
+	}
+
+	@Test
+	public void testKeysWithoutAddressAreGlobal() throws IOException
+	{
+		ShardedWriter writer = new ShardedWriter(outputDir.toString(),
+				OutputFormat.CSV, 2);
+		writer.setFunctionAddresses(Arrays.asList(100L, 200L));
+		for (String key : Arrays.asList("Root", "Instr_x", "Instr_",
+				"Instr_9223372036854775808", "Instr_-9223372036854775808"))
+			writer.addNode(null, node(key));
+		writer.finish();
+
+		ShardManifest manifest = ShardManifest.load(
+				outputDir.resolve(ShardManifest.FILENAME));
+		assertEquals("A\tRoot;A\tInstr_x;A\tInstr_9223372036854775808;A\tInstr_",
+				lines(manifest, 0, true));
+		assertEquals("A\tInstr_-9223372036854775808", lines(manifest, 2, true));
+
+		assertEquals(0, manifest.shardOf("Root"));
+		assertEquals(0, manifest.shardOf("Instr_x"));
+		assertEquals(0, manifest.shardOf("Instr_"));
+		assertEquals(0, manifest.shardOf("Instr_9223372036854775808"));
+		assertEquals(2, manifest.shardOf("Instr_-9223372036854775808"));
+	}
+
+	@Test
+	public void testAbortDeletesFilesAndStopsThreads() throws IOException
+	{
+		for (OutputFormat format : OutputFormat.values())
+		{
+			ShardedWriter writer = new ShardedWriter(outputDir.toString(),
+					format, 2);
+			writer.setFunctionAddresses(Arrays.asList(100L, 200L));
+			writer.addNode(null, node("Func", 100));
+			writer.addNode(null, node("Func", 200));
+			writer.addEdge(new NodeKey(100, "Func"), new NodeKey(200, "Func"),
+					new HashMap<String, Object>(), "CALLS");
+			writer.abort();
+			// aborting twice does no harm
+			writer.abort();
+
+			try (Stream<Path> files = Files.walk(outputDir))
+			{
+				assertEquals(format.toString(), 0,
+						files.filter(Files::isRegularFile).count());
+			}
+			for (Thread thread : Thread.getAllStackTraces().keySet())
+				assertFalse(thread.getName(),
+						thread.getName().startsWith("write "));
+		}
+	}
+
+}
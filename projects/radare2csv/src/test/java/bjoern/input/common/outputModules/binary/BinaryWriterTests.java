@@ -0,0 +1,208 @@
+package bjoern.input.common.outputModules.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.opencsv.CSVReader;
+
+import bjoern.input.common.outputModules.GraphWriter;
+import bjoern.input.common.outputModules.NodeRecord;
+import bjoern.input.common.outputModules.CSV.CSVWriter;
+import bjoern.nodeStore.NodeKey;
+import bjoern.structures.BjoernNodeProperties;
+import orientdbimporter.CSVCommands;
+import orientdbimporter.NodeKeys;
+import orientdbimporter.binary.BinaryFormat;
+import orientdbimporter.binary.BinaryRowReader;
+
+public class BinaryWriterTests
+{
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path csvDir;
+	private Path binaryDir;
+
+	@Before
+	public void createOutputDirs() throws IOException
+	{
+		csvDir = tempFolder.newFolder("csv").toPath();
+		binaryDir = tempFolder.newFolder("binary").toPath();
+	}
+
+	private static NodeRecord instruction(long addr, String repr,
+			String code, String esil)
+	{
+		NodeRecord record = new NodeRecord().setNode("Instr", addr);
+		record.set(NodeRecord.CHILD_NUM, 0);
+		record.set(NodeRecord.REPR, repr);
+		record.set(NodeRecord.CODE, code);
+		record.set(NodeRecord.ESIL, esil);
+		return record;
+	}
+
+	private static NodeKey key(String type, long address)
+	{
+		return new NodeKey(address, type);
+	}
+
+	private static void writeGraph(GraphWriter writer)
+	{
+		NodeRecord root = new NodeRecord().setNode("Root", 4294967295L);
+		writer.addNoReplaceNode(null, root);
+		writer.addNoReplaceNode(null, root);
+
+		writer.addNode(null, instruction(134528832, "xor eax, eax", "31c0",
+				"eax,eax,^=,$z,zf,=,,0,cf,="));
+		writer.addNode(null, instruction(134528834, "jmp 0x804bf2b", "EBE7",
+				"0x804bf2b,eip,="));
+		writer.addNode(null, instruction(-1, "mov  \"a\\b\"\t\n0x00ff",
+				"c", ""));
+
+		// keys and numbers may also be set as strings
+		NodeRecord flag = new NodeRecord();
+		flag.set(NodeRecord.KEY, "Flag_52");
+		flag.set(NodeRecord.TYPE, "Flag");
+		flag.set(NodeRecord.ADDR, "052");
+		flag.set(NodeRecord.COMMENT, "a comment, with \"quotes\"");
+		writer.addNode(null, flag);
+
+		Map<String, Object> noProperties = new HashMap<String, Object>();
+		writer.addEdge(key("Root", 52), key("Flag", 52), noProperties,
+				"IS_ANNOTATED_BY");
+		writer.addEdge(key("BB", 1), key("Instr", -1), noProperties, "IS_BB_OF");
+		// keys that cannot be packed are stored as tokens
+		writer.addEdge(key("Instr", 1), key("Other", 1), noProperties, "IS_BB_OF");
+		writer.addEdge(key("Instr", 140737488355328L), key("var", 1),
+				noProperties, "IS_BB_OF");
+		writer.addEdge(key("Root", 52), key("Flag", 52), noProperties,
+				"IS_ANNOTATED_BY");
+
+		writer.finish();
+	}
+
+	private static List<String[]> readCSV(Path path) throws IOException
+	{
+		try (CSVReader reader = new CSVReader(new FileReader(path.toFile()), '\t'))
+		{
+			return reader.readAll();
+		}
+	}
+
+	private static List<String[]> readBinary(Path path) throws IOException
+	{
+		List<String[]> rows = new ArrayList<String[]>();
+		try (BinaryRowReader reader = new BinaryRowReader(path.toString()))
+		{
+			String[] row;
+			while ((row = reader.readNext()) != null)
+				rows.add(row);
+			assertNull(reader.readNext());
+		}
+		return rows;
+	}
+
+	/**
+	 * Rows are sorted by their encoding, so only the header and the
+	 * position of ANR rows before A rows are the same as in CSV files.
+	 */
+
+	private static void assertSameRows(List<String[]> expected,
+			List<String[]> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		assertArrayEquals(expected.get(0), actual.get(0));
+
+		for (int i = 1; i < expected.size(); i++)
+			assertEquals(expected.get(i)[0].equals(CSVCommands.ADD_NO_REPLACE),
+					actual.get(i)[0].equals(CSVCommands.ADD_NO_REPLACE));
+
+		assertEquals(sortedRows(expected), sortedRows(actual));
+	}
+
+	private static List<String> sortedRows(List<String[]> rows)
+	{
+		List<String> sorted = new ArrayList<String>();
+		for (String[] row : rows)
+			sorted.add(Arrays.toString(row));
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	@Test
+	public void testBinaryFilesHoldRowsOfCSVFiles() throws IOException
+	{
+		writeGraph(new CSVWriter(csvDir.toString()));
+		writeGraph(new BinaryWriter(binaryDir.toString()));
+
+		assertSameRows(readCSV(csvDir.resolve("nodes.csv")),
+				readBinary(binaryDir.resolve(BinaryFormat.NODE_FILENAME)));
+
+		List<String[]> csvEdges = readCSV(csvDir.resolve("edges.csv"));
+		// the header of edges.csv ends in a separator
+		csvEdges.set(0, Arrays.copyOf(csvEdges.get(0), 3));
+		assertSameRows(csvEdges,
+				readBinary(binaryDir.resolve(BinaryFormat.EDGE_FILENAME)));
+	}
+
+	/**
+	 * Reads rows with packed keys and renders the keys, which must yield
+	 * the rows read without packed keys.
+	 */
+
+	private static List<String[]> readBinaryWithPackedKeys(Path path)
+			throws IOException
+	{
+		List<String[]> rows = new ArrayList<String[]>();
+		try (BinaryRowReader reader = new BinaryRowReader(path.toString()))
+		{
+			long[] keys = new long[NodeRecord.COLUMNS.length + 1];
+			String[] row;
+			while ((row = reader.readNext(keys)) != null)
+			{
+				for (int i = 0; i < row.length; i++)
+				{
+					assertEquals(keys[i] == NodeKeys.INVALID, row[i] != null);
+					if (keys[i] != NodeKeys.INVALID)
+						row[i] = NodeKeys.toString(keys[i]);
+				}
+				rows.add(row);
+			}
+		}
+		return rows;
+	}
+
+	@Test
+	public void testKeysMayBeReadPacked() throws IOException
+	{
+		writeGraph(new BinaryWriter(binaryDir.toString()));
+
+		for (String filename : Arrays.asList(BinaryFormat.NODE_FILENAME,
+				BinaryFormat.EDGE_FILENAME))
+		{
+			List<String[]> expected = readBinary(binaryDir.resolve(filename));
+			List<String[]> actual = readBinaryWithPackedKeys(
+					binaryDir.resolve(filename));
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++)
+				assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
+
+}
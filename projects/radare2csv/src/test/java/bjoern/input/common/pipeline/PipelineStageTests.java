@@ -0,0 +1,147 @@
+package bjoern.input.common.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class PipelineStageTests
+{
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	@Test(timeout = TIMEOUT_MILLIS)
+	public void testFinishWaitsForItemsInOrder() throws IOException
+	{
+		List<Integer> processed = new ArrayList<Integer>();
+		PipelineStage<Integer> stage = new PipelineStage<Integer>("test", 1,
+				4, processed::add).start();
+
+		for (int i = 0; i < 1000; i++)
+			stage.submit(i);
+		stage.finish();
+
+		assertEquals(1000, processed.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(Integer.valueOf(i), processed.get(i));
+		assertEquals(1000, stage.getMetrics().getItems());
+	}
+
+	@Test(timeout = TIMEOUT_MILLIS)
+	public void testFinishWaitsForItemsOfAllThreads() throws IOException
+	{
+		Set<Integer> processed = Collections
+				.synchronizedSet(new HashSet<Integer>());
+		PipelineStage<Integer> stage = new PipelineStage<Integer>("test", 4,
+				4, processed::add).start();
+
+		for (int i = 0; i < 1000; i++)
+			stage.submit(i);
+		stage.finish();
+
+		assertEquals(1000, processed.size());
+	}
+
+	@Test(timeout = TIMEOUT_MILLIS)
+	public void testConsumerFailureIsRethrownToProducer() throws IOException
+	{
+		IllegalStateException failure = new IllegalStateException("item 3");
+		PipelineStage<Integer> stage = new PipelineStage<Integer>("test", 1,
+				100, item -> {
+					if (item == 3)
+						throw failure;
+				}).start();
+
+		// depending on timing, either `submit` or `finish` rethrows
+		try
+		{
+			for (int i = 0; i < 10; i++)
+				stage.submit(i);
+			stage.finish();
+		}
+		catch (IllegalStateException e)
+		{
+			assertSame(failure, e);
+			return;
+		}
+		throw new AssertionError("Failure of consumer was not rethrown");
+	}
+
+	@Test(timeout = TIMEOUT_MILLIS)
+	public void testFailedConsumerDoesNotBlockProducer()
+	{
+		IllegalStateException failure = new IllegalStateException();
+		PipelineStage<Integer> stage = new PipelineStage<Integer>("test", 1,
+				1, item -> {
+					throw failure;
+				}).start();
+
+		// far more items than the queue holds: the failed stage keeps
+		// draining the queue until `submit` notices the failure
+		try
+		{
+			for (int i = 0; i < 100000; i++)
+				stage.submit(i);
+		}
+		catch (IllegalStateException e)
+		{
+			assertSame(failure, e);
+			return;
+		}
+		throw new AssertionError("Failure of consumer was not rethrown");
+	}
+
+	@Test(timeout = TIMEOUT_MILLIS)
+	public void testAbortStopsBlockedConsumerWithFullQueue()
+	{
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch never = new CountDownLatch(1);
+		List<Integer> processed = Collections
+				.synchronizedList(new ArrayList<Integer>());
+
+		PipelineStage<Integer> stage = new PipelineStage<Integer>("test", 1,
+				2, item -> {
+					processed.add(item);
+					started.countDown();
+					try
+					{
+						never.await();
+					}
+					catch (InterruptedException e)
+					{
+						// swallows the interrupt, as consumers may do
+						throw new RuntimeException(e);
+					}
+				}).start();
+
+		stage.submit(0);
+		awaitUninterruptibly(started);
+		stage.submit(1);
+		stage.submit(2);
+
+		// the producer has failed, e.g., while extracting a function
+		stage.abort();
+
+		assertEquals(Collections.singletonList(0), processed);
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+		}
+		catch (InterruptedException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+}
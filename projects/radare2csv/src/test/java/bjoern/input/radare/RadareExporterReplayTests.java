@@ -0,0 +1,149 @@
+package bjoern.input.radare;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bjoern.r2interface.AnalysisProfile;
+import bjoern.r2interface.R2ReplayBackend;
+import bjoern.r2interface.R2Session;
+
+/**
+ * Exports a recorded session of a small binary, in which `main` at
+ * 0x400500 has three basic blocks, a local variable and a call to `sub`
+ * at 0x400520.
+ */
+
+public class RadareExporterReplayTests
+{
+	private static final String SESSION = "tiny.r2session.gz";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path outputDir;
+
+	@Before
+	public void createOutputDir() throws IOException
+	{
+		outputDir = tempFolder.newFolder("export").toPath();
+	}
+
+	private static R2Session loadSession() throws IOException,
+			URISyntaxException
+	{
+		return R2Session.load(Paths.get(RadareExporterReplayTests.class
+				.getResource(SESSION).toURI()));
+	}
+
+	private List<String> lines(String filename) throws IOException
+	{
+		return Files.readAllLines(outputDir.resolve(filename)).stream()
+				.skip(1).map(line -> line.replaceAll("\t+$", ""))
+				.collect(Collectors.toList());
+	}
+
+	private static long count(List<String> lines, String prefix)
+	{
+		return lines.stream().filter(line -> line.startsWith(prefix)).count();
+	}
+
+	private void export() throws Exception
+	{
+		RadareExporter exporter = new RadareExporter();
+		exporter.setBackend(new R2ReplayBackend(loadSession()));
+		exporter.export("tiny", outputDir.toString(), null);
+	}
+
+	@Test
+	public void testExportFromRecordedSession() throws Exception
+	{
+		export();
+
+		List<String> nodes = lines("nodes.csv");
+		assertEquals(2, count(nodes, "ANR\tFunc_"));
+		assertEquals(4, count(nodes, "A\tBB_"));
+		assertEquals(3, count(nodes, "A\tFlag_"));
+		assertEquals(1, count(nodes, "A\tvar_"));
+		// the call is written again along with its cross reference
+		assertEquals(10, nodes.stream().filter(line -> line.startsWith("A\tInstr_"))
+				.map(line -> line.split("\t")[1]).distinct().count());
+		assertTrue(nodes.contains("ANR\tFunc_4195584\tFunc\t4195584\t\tsym.main"));
+		assertTrue(nodes.contains("A\tvar_4195584\tvar\t4195584\t\tint\trbp-0x4"));
+
+		List<String> edges = lines("edges.csv");
+		assertTrue(edges.contains("Instr_4195588\tInstr_4195616\tCALL"));
+		assertTrue(edges.contains("BB_4195584\tBB_4195597\tCFLOW_FALSE"));
+		assertTrue(edges.contains("BB_4195584\tBB_4195602\tCFLOW_TRUE"));
+		assertTrue(edges.contains("BB_4195597\tBB_4195602\tCFLOW_ALWAYS"));
+		assertTrue(edges.contains("Func_4195616\tBB_4195616\tIS_FUNC_OF"));
+	}
+
+	@Test
+	public void testWorkersProduceSameOutputAsSingleInstance() throws Exception
+	{
+		Path singleDir = Files.createDirectory(outputDir.resolve("single"));
+		Path poolDir = Files.createDirectory(outputDir.resolve("pool"));
+
+		RadareExporter exporter = new RadareExporter();
+		exporter.setBackend(new R2ReplayBackend(loadSession()));
+		exporter.export("tiny", singleDir.toString(), null);
+
+		// workers load the project saved by the main instance
+		R2Session session = loadSession();
+		session.addReply("Po", new byte[0]);
+		session.addReply("e scr.interactive = false", new byte[0]);
+		session.addReply("e scr.prompt = false", new byte[0]);
+
+		RadareExporter poolExporter = new RadareExporter();
+		poolExporter.setBackend(new R2ReplayBackend(session));
+		poolExporter.setWorkerBackendFactory(
+				filename -> new R2ReplayBackend(session));
+		poolExporter.setNumberOfWorkers(2);
+		poolExporter.export("tiny", poolDir.toString(), null);
+
+		for (String filename : Arrays.asList("nodes.csv", "edges.csv"))
+		{
+			assertArrayEquals(filename,
+					Files.readAllBytes(singleDir.resolve(filename)),
+					Files.readAllBytes(poolDir.resolve(filename)));
+		}
+	}
+
+	@Test
+	public void testUnrecordedCommandFailsExport() throws Exception
+	{
+		RadareExporter exporter = new RadareExporter();
+		exporter.setBackend(new R2ReplayBackend(loadSession()));
+		// the session has been recorded with the full analysis only
+		exporter.setAnalysisProfile(AnalysisProfile.QUICK);
+
+		try
+		{
+			exporter.export("tiny", outputDir.toString(), null);
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("aa"));
+			assertFalse(Files.exists(outputDir.resolve("nodes.csv")));
+			return;
+		}
+		throw new AssertionError("Export of unrecorded commands succeeded");
+	}
+
+}
@@ -0,0 +1,148 @@
+package bjoern.input.radare.inputModule;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisCacheTests
+{
+	private static final int ENTRY_SIZE = 100;
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private Path cacheDir;
+	private Path targetDir;
+
+	@Before
+	public void createTempDirs() throws IOException
+	{
+		cacheDir = tempFolder.newFolder("cache").toPath();
+		targetDir = tempFolder.newFolder("project").toPath();
+	}
+
+	/**
+	 * Stores an entry of `ENTRY_SIZE` bytes, all set to `content`, and
+	 * marks it as used at `lastUse` seconds after the epoch.
+	 */
+
+	private void store(AnalysisCache cache, String key, int content,
+			long lastUse) throws IOException
+	{
+		cache.store(key, filename -> Files.write(Paths.get(filename),
+				entryContent(content)));
+		Files.setLastModifiedTime(cacheDir.resolve(key),
+				FileTime.fromMillis(lastUse * 1000));
+	}
+
+	private static byte[] entryContent(int content)
+	{
+		byte[] bytes = new byte[ENTRY_SIZE];
+		Arrays.fill(bytes, (byte) content);
+		return bytes;
+	}
+
+	private List<String> entries() throws IOException
+	{
+		try (Stream<Path> paths = Files.list(cacheDir))
+		{
+			return paths.filter(Files::isDirectory)
+					.map(path -> path.getFileName().toString()).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException
+	{
+		AnalysisCache cache = new AnalysisCache(cacheDir, 2 * ENTRY_SIZE);
+		store(cache, "a", 1, 1000);
+		store(cache, "b", 2, 2000);
+		assertEquals(Arrays.asList("a", "b"), entries());
+
+		store(cache, "c", 3, 3000);
+		assertEquals(Arrays.asList("b", "c"), entries());
+
+		// a hit makes "b" the most recently used entry
+		assertNotNull(cache.lookup("b", targetDir));
+		targetDir = tempFolder.newFolder().toPath();
+		store(cache, "d", 4, 4000);
+		assertEquals(Arrays.asList("b", "d"), entries());
+
+		Properties stats = cache.getStatistics();
+		assertEquals("2", stats.getProperty("evictions"));
+		assertEquals("1", stats.getProperty("hits"));
+	}
+
+	@Test
+	public void testNewEntryIsKeptIfLargerThanCache() throws IOException
+	{
+		AnalysisCache cache = new AnalysisCache(cacheDir, ENTRY_SIZE / 2);
+		store(cache, "a", 1, 1000);
+		assertEquals(Arrays.asList("a"), entries());
+
+		store(cache, "b", 2, 2000);
+		assertEquals(Arrays.asList("b"), entries());
+	}
+
+	@Test
+	public void testHitIsCopiedAndSurvivesEviction() throws IOException
+	{
+		AnalysisCache cache = new AnalysisCache(cacheDir, ENTRY_SIZE);
+		store(cache, "a", 1, 1000);
+
+		String project = cache.lookup("a", targetDir);
+		assertNotNull(project);
+		assertTrue(Paths.get(project).startsWith(targetDir));
+
+		// another import evicts the entry while the copy is in use
+		store(cache, "b", 2, 2000);
+		assertEquals(Arrays.asList("b"), entries());
+		assertArrayEquals(entryContent(1), Files.readAllBytes(Paths.get(project)));
+	}
+
+	@Test
+	public void testMissLeavesTargetEmpty() throws IOException
+	{
+		AnalysisCache cache = new AnalysisCache(cacheDir, ENTRY_SIZE);
+		assertNull(cache.lookup("a", targetDir));
+		try (Stream<Path> paths = Files.list(targetDir))
+		{
+			assertFalse(paths.findAny().isPresent());
+		}
+		assertEquals("1", cache.getStatistics().getProperty("misses"));
+	}
+
+	@Test
+	public void testMalformedCounterCountsAsZero() throws IOException
+	{
+		// e.g., written by an older version that did not replace the file
+		Files.write(cacheDir.resolve("stats.properties"),
+				"misses=12x\n".getBytes(StandardCharsets.ISO_8859_1));
+
+		AnalysisCache cache = new AnalysisCache(cacheDir, ENTRY_SIZE);
+		assertNull(cache.lookup("a", targetDir));
+		assertEquals("1", cache.getStatistics().getProperty("misses"));
+	}
+
+}
@@ -0,0 +1,56 @@
+package bjoern.input.radare.inputModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CallSiteTableTests
+{
+
+	@Test
+	public void testFindsCallSitesAfterGrowing()
+	{
+		CallSiteTable table = new CallSiteTable();
+		for (long addr = 0; addr < 1000; addr++)
+			table.put(0x400000L + 16 * addr, "call 0x" + Long.toHexString(addr),
+					addr % 2 == 0 ? null : "comment");
+
+		assertEquals(1000, table.size());
+		for (long addr = 0; addr < 1000; addr++)
+		{
+			int slot = table.find(0x400000L + 16 * addr);
+			assertEquals("call 0x" + Long.toHexString(addr),
+					table.getInstruction(slot));
+			if (addr % 2 == 0)
+				assertNull(table.getComment(slot));
+			else
+				assertEquals("comment", table.getComment(slot));
+		}
+		assertEquals(-1, table.find(0x400001L));
+	}
+
+	@Test
+	public void testPutReplacesCallSite()
+	{
+		CallSiteTable table = new CallSiteTable();
+		table.put(1, "call 2", "old");
+		table.put(1, "call 3", null);
+
+		assertEquals(1, table.size());
+		assertEquals("call 3", table.getInstruction(table.find(1)));
+		assertNull(table.getComment(table.find(1)));
+	}
+
+	@Test
+	public void testClearRemovesCallSites()
+	{
+		CallSiteTable table = new CallSiteTable();
+		table.put(1, "call 2", null);
+		table.clear();
+
+		assertEquals(0, table.size());
+		assertEquals(-1, table.find(1));
+	}
+
+}
@@ -0,0 +1,206 @@
+package bjoern.input.radare.inputModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bjoern.input.common.ExportContext;
+import bjoern.r2interface.AnalysisProfile;
+import bjoern.r2interface.R2Backend;
+import bjoern.r2interface.R2Session;
+
+/**
+ * Extracts the functions of the recorded session of a small binary, see
+ * `RadareExporterReplayTests`, with the lazy analysis profile.
+ */
+
+public class RadareInputModuleTests
+{
+	private static final String SESSION = "/bjoern/input/radare/tiny.r2session.gz";
+
+	private static final String SYMBOLS = "[{\"name\":\"sym.main\",\"type\":\"FUNC\",\"vaddr\":4195584},"
+			+ "{\"name\":\"sym.sub\",\"type\":\"FUNC\",\"vaddr\":4195616}]";
+
+	/**
+	 * Calls of the binary: call site, function of the call site and target.
+	 */
+
+	private static final long[][] CALLS = { { 0x400504L, 0x400500L, 0x400520L } };
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private final Map<String, Set<Long>> projects = new HashMap<String, Set<Long>>();
+
+	private List<String> extractCrossReferences(int numberOfWorkers)
+			throws Exception
+	{
+		R2Session session = R2Session.load(Paths.get(
+				RadareInputModuleTests.class.getResource(SESSION).toURI()));
+		String outputDir = tempFolder.newFolder().toString();
+
+		RadareInputModule module = new RadareInputModule();
+		module.setAnalysisProfile(AnalysisProfile.LAZY);
+		module.setNumberOfWorkers(numberOfWorkers);
+		module.setBackend(new LazyAnalysisBackend(session));
+		module.setWorkerBackendFactory(
+				filename -> new LazyAnalysisBackend(session));
+		module.initialize("tiny", null, new ExportContext(outputDir));
+		module.initializeFunctionContents(module.getFunctions(),
+				function -> {
+				});
+
+		List<String> xrefs = new ArrayList<String>();
+		module.getCrossReferences(xref -> xrefs.add(xref.getSourceKey()
+				+ " -> " + xref.getDestKey()));
+		module.finish(outputDir);
+
+		assertEquals(new HashSet<Long>(Arrays.asList(0x400500L, 0x400520L)),
+				projects.get(Paths.get(outputDir, "radareProject").toString()));
+		return xrefs;
+	}
+
+	@Test
+	public void testWorkersFindSameCrossReferencesAsSingleInstance()
+			throws Exception
+	{
+		List<String> xrefs = extractCrossReferences(1);
+		assertFalse(xrefs.isEmpty());
+		assertEquals(xrefs, extractCrossReferences(2));
+	}
+
+	/**
+	 * Stands in for radare analyzing lazily: replies are taken from the
+	 * session, except that `ax` only lists the calls of functions analyzed
+	 * via `af`, either by this instance or by the instance that saved the
+	 * project it has loaded.
+	 */
+
+	private class LazyAnalysisBackend implements R2Backend
+	{
+		private final R2Session session;
+		private final Set<Long> analyzedFunctions = new HashSet<Long>();
+
+		private final ByteArrayOutputStream currentCommand = new ByteArrayOutputStream();
+		private byte[] pendingReplies = new byte[0];
+		private int position = 0;
+
+		LazyAnalysisBackend(R2Session session)
+		{
+			this.session = session;
+			reply("");
+		}
+
+		private void commandReceived(String cmd) throws IOException
+		{
+			if (cmd.startsWith("af @"))
+			{
+				analyzedFunctions.add(Long.parseUnsignedLong(cmd.substring(4)));
+				reply("");
+			}
+			else if (cmd.startsWith("Ps "))
+			{
+				projects.put(cmd.substring(3), new HashSet<Long>(analyzedFunctions));
+				reply("");
+			}
+			else if (cmd.startsWith("Po "))
+			{
+				analyzedFunctions.addAll(projects.get(cmd.substring(3)));
+				reply("");
+			}
+			else if (cmd.equals("ax"))
+				reply(crossReferences());
+			else if (cmd.equals("isj"))
+				reply(SYMBOLS);
+			else if (cmd.equals("q") || cmd.startsWith("e "))
+				reply("");
+			else if (!session.getReplies(cmd).isEmpty())
+				reply(new String(session.getReplies(cmd).get(0),
+						StandardCharsets.UTF_8));
+			else
+				throw new IOException("No reply for r2 command: " + cmd);
+		}
+
+		private String crossReferences()
+		{
+			StringBuilder sb = new StringBuilder("# ref.code.call\n");
+			for (long[] call : CALLS)
+			{
+				if (analyzedFunctions.contains(call[1]))
+					sb.append(String.format("ref.code.call.0x%x=0x%x\n",
+							call[0], call[2]));
+			}
+			return sb.toString();
+		}
+
+		private void reply(String reply)
+		{
+			ByteArrayOutputStream replies = new ByteArrayOutputStream();
+			replies.write(pendingReplies, position,
+					pendingReplies.length - position);
+			byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+			replies.write(bytes, 0, bytes.length);
+			replies.write(0);
+			pendingReplies = replies.toByteArray();
+			position = 0;
+		}
+
+		@Override
+		public OutputStream getCommandStream()
+		{
+			return new OutputStream()
+			{
+				@Override
+				public void write(int b) throws IOException
+				{
+					if (b != '\n')
+					{
+						currentCommand.write(b);
+						return;
+					}
+					commandReceived(new String(currentCommand.toByteArray(),
+							StandardCharsets.UTF_8));
+					currentCommand.reset();
+				}
+			};
+		}
+
+		@Override
+		public InputStream getReplyStream()
+		{
+			return new InputStream()
+			{
+				@Override
+				public int read()
+				{
+					if (position == pendingReplies.length)
+						return -1;
+					return pendingReplies[position++] & 0xff;
+				}
+			};
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+
+}
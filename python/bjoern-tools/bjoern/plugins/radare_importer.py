@@ -10,5 +10,11 @@ class RadareImporter(OctopusPlugin):
     def __setattr__(self, key, value):
         if key == "project":
             self._settings["projectName"] = value
+        elif key == "write_csv":
+            self._settings["writeCSV"] = value
+        elif key == "analysis_cache":
+            self._settings["analysisCache"] = value
+        elif key == "import_workers":
+            self._settings["importWorkers"] = value
         else:
             super().__setattr__(key, value)